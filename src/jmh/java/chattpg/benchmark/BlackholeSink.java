@@ -0,0 +1,44 @@
+package chattpg.benchmark;
+
+import chattpg.ui.OutputSink;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Output sink that hands everything printed to a JMH {@link Blackhole}, so
+ * the code under test cannot skip building its output and the terminal does
+ * not dominate the measurement.
+ */
+final class BlackholeSink implements OutputSink {
+    private final Blackhole blackhole;
+
+    BlackholeSink(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public OutputSink print(String text) {
+        blackhole.consume(text);
+        return this;
+    }
+
+    @Override
+    public OutputSink print(char c) {
+        blackhole.consume(c);
+        return this;
+    }
+
+    @Override
+    public OutputSink print(int value) {
+        blackhole.consume(value);
+        return this;
+    }
+
+    @Override
+    public OutputSink newLine() {
+        return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+}
@@ -0,0 +1,41 @@
+package chattpg.benchmark;
+
+import chattpg.logic.Command;
+import chattpg.logic.CommandParser;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tokenizing one command line with the batch-mode {@link CommandParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommandParserBenchmark {
+    @Param({
+        "todo read chapter of the book",
+        "deadline submit report /by 2025-10-01",
+        "event project meeting /from 2025-10-03 1400 /to 2025-10-03 1600",
+        "delete 10-500",
+    })
+    private String line;
+
+    private final CommandParser parser = CommandParser.forBatch();
+
+    @Benchmark
+    public Command parse() {
+        return parser.parse(line);
+    }
+}
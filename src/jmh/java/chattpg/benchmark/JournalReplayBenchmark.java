@@ -0,0 +1,112 @@
+package chattpg.benchmark;
+
+import chattpg.logic.LazyTaskStore;
+import chattpg.logic.TaskActions;
+import chattpg.storage.Storage;
+import chattpg.storage.StorageOptions;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Replaying the journal of a grouped undo: up to 3,000 {@code I} records at
+ * ascending positions, applied to a lazy store, which replays record by
+ * record into the store itself. One operation is one whole replay.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JournalReplayBenchmark {
+    private static final int INSERT_RUN = 3_000;
+    private static final String LINE = "---------------------------------------------";
+
+    @Param({"1000", "100000", "1000000"})
+    private int taskCount;
+
+    private Path dir;
+    private Path undone;
+    private Path inserted;
+    private BlackholeSink out;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws IOException {
+        dir = Files.createTempDirectory("chattpg-bench");
+        Path sample = dir.resolve("tasks.txt");
+        SampleTasks.write(sample, taskCount);
+        int run = Math.min(INSERT_RUN, taskCount / 2);
+        undone = writeUndoneRun(sample, dir.resolve("undone.txt"), taskCount / 4, run, true);
+        inserted = writeUndoneRun(sample, dir.resolve("inserted.txt"), taskCount / 4, run, false);
+        out = new BlackholeSink(blackhole);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SampleTasks.deleteRecursively(dir);
+    }
+
+    /** The journal also holds the deletion, so the undone tasks' IDs are free again. */
+    @Benchmark
+    public TaskActions replayUndo() {
+        return loadLazily(undone);
+    }
+
+    /** The snapshot was written after the deletion, so the neighbours' IDs are consecutive. */
+    @Benchmark
+    public TaskActions replayInserts() {
+        return loadLazily(inserted);
+    }
+
+    /**
+     * Writes a task file whose journal holds the records of undoing the
+     * deletion of {@code count} tasks from {@code start}: one {@code I} record
+     * per task, at ascending positions. If {@code journalDelete} is set the
+     * snapshot still has the tasks and the journal starts with their deletion,
+     * otherwise the snapshot was written after it.
+     */
+    private static Path writeUndoneRun(Path sample, Path target, int start, int count, boolean journalDelete)
+            throws IOException {
+        List<String> lines = Files.readAllLines(sample, StandardCharsets.UTF_8);
+        List<String> journal = new ArrayList<>();
+        if (journalDelete) {
+            journal.add("- | " + start + "-" + (start + count - 1));
+        }
+        for (int i = start; i < start + count; i++) {
+            journal.add("I | " + i + " | " + lines.get(i));
+        }
+        if (!journalDelete) {
+            lines.subList(start, start + count).clear();
+        }
+        Files.write(target, lines, StandardCharsets.UTF_8);
+        Files.write(Path.of(target + ".journal"), journal, StandardCharsets.UTF_8);
+        return target;
+    }
+
+    private TaskActions loadLazily(Path file) {
+        TaskActions actions = new TaskActions(new LazyTaskStore(), new Storage(file.toString(),
+                StorageOptions.defaults()), LINE, out);
+        actions.loadFromFile();
+        actions.close();
+        return actions;
+    }
+}
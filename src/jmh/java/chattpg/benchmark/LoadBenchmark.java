@@ -0,0 +1,128 @@
+package chattpg.benchmark;
+
+import chattpg.model.Deadline;
+import chattpg.model.Event;
+import chattpg.model.Task;
+import chattpg.model.Todo;
+import chattpg.storage.BinarySnapshot;
+import chattpg.storage.ShardedSnapshot;
+import chattpg.storage.StorageStats;
+import chattpg.storage.TaskFileParser;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The ways of turning a large task file into tasks: the original
+ * {@link Scanner} + {@code String.split} loader, {@link TaskFileParser}, a
+ * {@link BinarySnapshot} and a {@link ShardedSnapshot} with one shard per core.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int taskCount;
+
+    private Path dir;
+    private Path text;
+    private File binary;
+    private File manifest;
+    private BlackholeSink out;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws IOException {
+        dir = Files.createTempDirectory("chattpg-bench");
+        text = dir.resolve("tasks.txt");
+        binary = dir.resolve("tasks.bin").toFile();
+        manifest = dir.resolve("tasks.shards").toFile();
+        out = new BlackholeSink(blackhole);
+        SampleTasks.write(text, taskCount);
+        List<Task> tasks = parser();
+        BinarySnapshot.write(tasks, binary);
+        ShardedSnapshot.write(tasks, manifest, Runtime.getRuntime().availableProcessors(), new StorageStats(), out);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SampleTasks.deleteRecursively(dir);
+    }
+
+    /** The original loading loop, kept as the baseline. */
+    @Benchmark
+    public List<Task> scanner() throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        try (Scanner scanner = new Scanner(text.toFile(), StandardCharsets.UTF_8.name())) {
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine();
+                if (line.trim().isEmpty()) continue;
+                tasks.add(decodeParts(line.split(" \\| ")));
+            }
+        }
+        return tasks;
+    }
+
+    @Benchmark
+    public List<Task> parser() throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        try (Reader reader = new InputStreamReader(new FileInputStream(text.toFile()), StandardCharsets.UTF_8)) {
+            new TaskFileParser().parse(reader, text.toString(), tasks::add, out);
+        }
+        return tasks;
+    }
+
+    @Benchmark
+    public List<Task> binary() throws IOException {
+        return BinarySnapshot.read(binary, out);
+    }
+
+    @Benchmark
+    public List<Task> sharded() throws IOException {
+        return ShardedSnapshot.read(manifest, new StorageStats(), out);
+    }
+
+    private static Task decodeParts(String[] parts) {
+        Task task;
+        switch (parts[0]) {
+        case "T":
+            task = new Todo(parts[2]);
+            break;
+        case "D":
+            task = new Deadline(parts[2], parts[3]);
+            break;
+        default:
+            task = new Event(parts[2], parts[3], parts[4]);
+            break;
+        }
+        if (parts[1].equals("1")) {
+            task.markTaskAsDone();
+        }
+        return task;
+    }
+}
@@ -0,0 +1,59 @@
+package chattpg.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Generates the task files the benchmarks work on: a realistic mix of todos,
+ * deadlines and events, a third of them done.
+ */
+final class SampleTasks {
+    private SampleTasks() {
+    }
+
+    /**
+     * Writes {@code count} task lines cycling through todo, deadline and event.
+     *
+     * @param file  destination file, overwritten
+     * @param count number of tasks to write
+     * @throws IOException if writing fails
+     */
+    static void write(Path file, int count) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < count; i++) {
+                String done = i % 3 == 0 ? "1" : "0";
+                switch (i % 3) {
+                case 0:
+                    writer.write("T | " + done + " | read chapter " + i + " of the book");
+                    break;
+                case 1:
+                    writer.write("D | " + done + " | submit report " + i + " | 2025-10-" + (1 + i % 28));
+                    break;
+                default:
+                    writer.write("E | " + done + " | project meeting " + i + " | 2025-10-03 1400 | 2025-10-03 1600");
+                    break;
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Deletes a directory and everything in it.
+     *
+     * @param dir the directory
+     * @throws IOException if something cannot be deleted
+     */
+    static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package chattpg.benchmark;
+
+import chattpg.model.Task;
+import chattpg.storage.Storage;
+import chattpg.storage.StorageOptions;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Loading and saving a whole task file with {@link Storage}, without a
+ * journal so every operation reads or writes the full snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StorageBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int taskCount;
+
+    private Path dir;
+    private Storage source;
+    private Storage target;
+    private List<Task> loaded;
+    private BlackholeSink out;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws IOException {
+        dir = Files.createTempDirectory("chattpg-bench");
+        Path file = dir.resolve("tasks.txt");
+        SampleTasks.write(file, taskCount);
+        StorageOptions unjournaled = StorageOptions.defaults().withJournaled(false);
+        out = new BlackholeSink(blackhole);
+        source = new Storage(file.toString(), unjournaled);
+        target = new Storage(dir.resolve("save.txt").toString(), unjournaled);
+        loaded = source.load(out);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SampleTasks.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public List<Task> load() {
+        return source.load(out);
+    }
+
+    @Benchmark
+    public void save() {
+        target.save(loaded, out);
+    }
+}
@@ -0,0 +1,115 @@
+package chattpg.benchmark;
+
+import chattpg.logic.IndexedTaskStore;
+import chattpg.logic.TaskActions;
+import chattpg.logic.exceptions.InvalidCommandException;
+import chattpg.storage.Storage;
+import chattpg.storage.StorageOptions;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Keyword search, listing and adding tasks through {@link TaskActions}, over
+ * a journaled copy of the sample file. Everything the commands print goes to
+ * a {@link Blackhole}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TaskActionsBenchmark {
+    private static final String LINE = "---------------------------------------------";
+    private static final String[] COMMANDS = {
+        "todo read chapter of the book",
+        "deadline submit report /by 2025-10-01",
+        "event project meeting /from 2025-10-03 1400 /to 2025-10-03 1600",
+    };
+
+    @Param({"1000", "100000", "1000000"})
+    private int taskCount;
+
+    private Path dir;
+    private Path sample;
+    private BlackholeSink out;
+    private TaskActions reader;
+    private TaskActions adder;
+    private int added;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws IOException {
+        dir = Files.createTempDirectory("chattpg-bench");
+        sample = dir.resolve("tasks.txt");
+        SampleTasks.write(sample, taskCount);
+        out = new BlackholeSink(blackhole);
+        reader = newLoadedActions();
+    }
+
+    /** Starts every iteration of {@link #addTask()} from the sample list. */
+    @Setup(Level.Iteration)
+    public void setUpAdder() throws IOException {
+        adder = newLoadedActions();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownAdder() {
+        adder.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        SampleTasks.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public void findTask() throws InvalidCommandException {
+        reader.findTask("report");
+    }
+
+    @Benchmark
+    public void findTaskEither() throws InvalidCommandException {
+        reader.findTask("chapter OR meet*");
+    }
+
+    @Benchmark
+    public void listTasks() {
+        reader.listTasks();
+    }
+
+    @Benchmark
+    public void addTask() throws InvalidCommandException {
+        adder.addTask(COMMANDS[added++ % COMMANDS.length]);
+    }
+
+    /**
+     * Creates a TaskActions over a journaled copy of the sample file so that
+     * mutations do not disturb the file the other benchmarks read.
+     */
+    private TaskActions newLoadedActions() throws IOException {
+        Path copy = Files.createTempFile(dir, "actions", ".txt");
+        Files.copy(sample, copy, StandardCopyOption.REPLACE_EXISTING);
+        TaskActions actions = new TaskActions(new IndexedTaskStore(), new Storage(copy.toString(),
+                StorageOptions.defaults()), LINE, out);
+        actions.loadFromFile();
+        return actions;
+    }
+}
@@ -0,0 +1,379 @@
+package chattpg.logic;
+
+import chattpg.logic.exceptions.InvalidCommandException;
+import chattpg.logic.exceptions.TaskIndexOutOfBoundsException;
+import chattpg.ui.OutputSink;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.UnaryOperator;
+
+/**
+ * Non-interactive executor for a stream of single-line commands, one per line:
+ * <pre>
+ *   todo read book
+ *   deadline return book /by 2025-10-01
+ *   event meeting /from 2pm /to 4pm
+ *   mark 5          (or mark 3,7,9 / mark 1-100 / mark find book)
+ *   unmark 5        (or unmark done)
+ *   delete 7        (or delete 10-500 / delete done)
+ *   undo            (or redo)
+ *   list            (or list 1-100)
+ *   find book
+ *   due 2025-10-01
+ *   upcoming 10
+ *   between 2025-10-01 2025-10-07
+ *   stats
+ *   open list work  (later commands apply to the list "work")
+ *   lists
+ *   help
+ *   bye             (stops reading; later lines are ignored)
+ * </pre>
+ * Blank lines and lines starting with {@code #} are ignored.
+ * <p>
+ * Reading and tokenizing (with {@link CommandParser}) run on a separate thread that hands chunks of parsed
+ * commands to the executing thread through a bounded queue, so file I/O
+ * overlaps with execution. Persistence is deferred for the whole batch and
+ * flushed once at the end. Failing lines are reported with their line number
+ * and do not stop the batch. Every command is timed for the {@code stats} report.
+ */
+public class BatchRunner {
+    private static final int CHUNK_SIZE = 512;
+    private static final int QUEUE_CHUNKS = 16;
+    private static final List<BatchCommand> END_OF_INPUT = new ArrayList<>();
+    private static final CommandParser PARSER = CommandParser.forBatch();
+    /** What {@code help} prints: the commands accepted one per line. */
+    static final String COMMANDS = """
+            Send one command per line:
+              todo <desc> | deadline <desc> /by <when> | event <desc> /from <start> /to <end>
+                (deadlines and events may end with /every <rule>, e.g. /every week)
+              mark <n> | unmark <n> | delete <n> | undo | redo
+                (<n> may also be 1-5,9 | done | undone | find <keywords>)
+              list | list <from>-<to> | find <keywords> | search <words>
+              due <date> | upcoming <count> | between <date> <date>
+              open list <name> | lists
+              stats | help | bye""";
+
+    private final TaskLists lists;
+    private final UnaryOperator<TaskActions> view;
+    private final OutputSink report;
+    private TaskActions shared;
+    private TaskActions actions;
+    private String listName;
+    private boolean batching;
+    private volatile IOException readFailure;
+
+    /**
+     * Creates a batch runner over a single task list; {@code open list} is
+     * reported as unavailable.
+     *
+     * @param actions task operations to execute the commands against
+     * @param report  sink for error lines and the final throughput summary
+     */
+    public BatchRunner(TaskActions actions, OutputSink report) {
+        this(null, null, actions, report, list -> list);
+    }
+
+    /**
+     * Creates a batch runner that can switch between named lists. It takes
+     * over the caller's hold on the current list (see {@link TaskLists#acquire})
+     * and gives up the list it ends on in {@link #close()}.
+     *
+     * @param lists    the named lists
+     * @param listName name of the current list
+     * @param shared   the current list's shared task operations, as returned by {@link TaskLists}
+     * @param report   sink for error lines and the final throughput summary
+     * @param view     turns a list's shared task operations into the ones commands run against,
+     *                 e.g. {@code list -> list.forSession(out)}
+     */
+    public BatchRunner(TaskLists lists, String listName, TaskActions shared, OutputSink report,
+            UnaryOperator<TaskActions> view) {
+        this.lists = lists;
+        this.listName = listName;
+        this.shared = shared;
+        this.view = view;
+        this.actions = view.apply(shared);
+        this.report = report;
+    }
+
+    /**
+     * @return the task operations of the current list
+     */
+    public TaskActions getActions() {
+        return actions;
+    }
+
+    /**
+     * Gives up the current list, so it may be evicted from memory.
+     */
+    public void close() {
+        if (lists != null) {
+            lists.release(shared);
+        }
+    }
+
+    /**
+     * Executes every command read from the input, then persists once.
+     *
+     * @param input source of commands; read up to the end or a {@code bye} line, but not closed
+     * @throws IOException if reading the input fails
+     */
+    public void run(BufferedReader input) throws IOException {
+        BlockingQueue<List<BatchCommand>> queue = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+        Thread reader = new Thread(() -> readCommands(input, queue), "chattpg-batch-reader");
+        reader.setDaemon(true);
+        long start = System.nanoTime();
+        reader.start();
+
+        int executed = 0;
+        int failed = 0;
+        actions.beginBatch();
+        batching = true;
+        try {
+            while (true) {
+                List<BatchCommand> chunk = take(queue);
+                if (chunk == END_OF_INPUT) {
+                    break;
+                }
+                for (BatchCommand command : chunk) {
+                    executed++;
+                    if (!execute(command)) {
+                        failed++;
+                    }
+                }
+            }
+        } finally {
+            batching = false;
+            actions.endBatch();
+        }
+        if (readFailure != null) {
+            throw readFailure;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        report.printf("Batch complete: %,d commands (%,d failed) in %.3f s (%,.0f commands/s).%n",
+                executed, failed, seconds, executed / Math.max(seconds, 1e-9));
+        report.flush();
+    }
+
+    /**
+     * Runs a single command line outside a batch, e.g. one sent by a server
+     * session. Failures are reported to the report sink like batch errors.
+     *
+     * @param lineNumber number used to identify the line in error messages
+     * @param line       the command, e.g. {@code mark 5}
+     * @return true if the command succeeded
+     */
+    public boolean execute(int lineNumber, String line) {
+        return execute(lineNumber, PARSER.parse(line));
+    }
+
+    /**
+     * Runs a single command tokenized by a {@link CommandParser#forBatch()} parser.
+     *
+     * @param lineNumber number used to identify the line in error messages
+     * @param command    the tokenized command
+     * @return true if the command succeeded
+     */
+    public boolean execute(int lineNumber, Command command) {
+        return execute(new BatchCommand(lineNumber, command));
+    }
+
+    /**
+     * Runs one command and records its latency.
+     *
+     * @return true if the command succeeded
+     */
+    private boolean execute(BatchCommand command) {
+        long start = System.nanoTime();
+        try {
+            return dispatch(command);
+        } finally {
+            actions.recordCommand(command.command.getType().getName(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs one command, reporting failures instead of propagating them.
+     *
+     * @return true if the command succeeded
+     */
+    private boolean dispatch(BatchCommand batchCommand) {
+        Command command = batchCommand.command;
+        try {
+            switch (command.getType()) {
+            case MARK:
+                actions.markTasks(command.getArgument(), true);
+                break;
+            case UNMARK:
+                actions.markTasks(command.getArgument(), false);
+                break;
+            case DELETE:
+                actions.deleteTasks(command.getArgument());
+                break;
+            case UNDO:
+                actions.undo();
+                break;
+            case REDO:
+                actions.redo();
+                break;
+            case LIST: {
+                String range = command.getArgument();
+                if (range.isEmpty()) {
+                    actions.listTasks();
+                } else {
+                    int dash = range.indexOf('-');
+                    if (dash < 0) {
+                        throw new InvalidCommandException("list format: list <from>-<to>");
+                    }
+                    actions.listTasks(Integer.parseInt(range.substring(0, dash).trim()),
+                            Integer.parseInt(range.substring(dash + 1).trim()));
+                }
+                break;
+            }
+            case FIND:
+                actions.findTask(command.getArgument());
+                break;
+            case SEARCH:
+                actions.searchTasks(command.getArgument());
+                break;
+            case DUE:
+                actions.dueOn(command.getArgument());
+                break;
+            case UPCOMING:
+                actions.upcoming(Integer.parseInt(command.getArgument()));
+                break;
+            case BETWEEN:
+                actions.between(command.getArgument());
+                break;
+            case STATS:
+                actions.printStats();
+                break;
+            case OPEN:
+                openList(command.getArgument());
+                break;
+            case LISTS:
+                if (lists == null) {
+                    throw new InvalidCommandException("Named lists are not available here.");
+                }
+                lists.printLists(actions.getOutput(), listName);
+                break;
+            case HELP:
+                actions.getOutput().println(COMMANDS);
+                break;
+            case BYE:
+                // The reader stops at bye, so nothing follows it.
+                break;
+            default:
+                actions.addTask(command);
+                break;
+            }
+            return true;
+        } catch (InvalidCommandException | TaskIndexOutOfBoundsException | IllegalStateException e) {
+            reportFailure(batchCommand, e.getMessage());
+        } catch (NumberFormatException e) {
+            reportFailure(batchCommand, "Please enter a valid number.");
+        } catch (IllegalArgumentException e) {
+            reportFailure(batchCommand, e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Switches to another named list. Inside a batch the current list's
+     * deferred changes are persisted first and the new list is batched from
+     * here on.
+     */
+    private void openList(String argument) throws InvalidCommandException {
+        if (lists == null) {
+            throw new InvalidCommandException("Named lists are not available here.");
+        }
+        String name = lists.parseOpen(argument);
+        TaskActions next = lists.switchTo(shared, name);
+        if (batching) {
+            actions.endBatch();
+        }
+        shared = next;
+        actions = view.apply(next);
+        listName = name;
+        actions.getOutput().println("Opened task list '" + name + "'.");
+        actions.loadFromFile();
+        lists.trim();
+        if (batching) {
+            actions.beginBatch();
+        }
+    }
+
+    private void reportFailure(BatchCommand command, String message) {
+        int end = message.indexOf(System.lineSeparator());
+        report.printf("Line %d (%s): %s%n", command.lineNumber, command.command.getLine(),
+                end < 0 ? message : message.substring(0, end));
+    }
+
+    /**
+     * Producer side of the pipeline: reads and tokenizes lines into chunks.
+     */
+    private void readCommands(BufferedReader input, BlockingQueue<List<BatchCommand>> queue) {
+        List<BatchCommand> chunk = new ArrayList<>(CHUNK_SIZE);
+        int lineNumber = 0;
+        try {
+            String line;
+            while ((line = input.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.charAt(0) == '#') {
+                    continue;
+                }
+                Command command = PARSER.parse(trimmed);
+                chunk.add(new BatchCommand(lineNumber, command));
+                if (command.getType() == CommandType.BYE) {
+                    break;
+                }
+                if (chunk.size() == CHUNK_SIZE) {
+                    put(queue, chunk);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+        } catch (IOException e) {
+            readFailure = e;
+        } finally {
+            if (!chunk.isEmpty()) {
+                put(queue, chunk);
+            }
+            put(queue, END_OF_INPUT);
+        }
+    }
+
+    private static void put(BlockingQueue<List<BatchCommand>> queue, List<BatchCommand> chunk) {
+        try {
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<BatchCommand> take(BlockingQueue<List<BatchCommand>> queue) throws IOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch interrupted", e);
+        }
+    }
+
+    /**
+     * One tokenized input line and where it came from.
+     */
+    private static final class BatchCommand {
+        final int lineNumber;
+        final Command command;
+
+        BatchCommand(int lineNumber, Command command) {
+            this.lineNumber = lineNumber;
+            this.command = command;
+        }
+    }
+}
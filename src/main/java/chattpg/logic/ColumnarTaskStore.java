@@ -0,0 +1,351 @@
+package chattpg.logic;
+
+import chattpg.model.Deadline;
+import chattpg.model.Event;
+import chattpg.model.Occurrences;
+import chattpg.model.Recurring;
+import chattpg.model.RecurringDeadline;
+import chattpg.model.RecurringEvent;
+import chattpg.model.Task;
+import chattpg.model.Todo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Memory-compact {@link TaskStore} for very large lists that keeps tasks in
+ * primitive columns instead of one object graph per task.
+ * <p>
+ * Per task ID the store holds a type byte, a done bit, the offset and length of
+ * the UTF-8 description in a shared byte pool, and up to two references into a
+ * pool of interned {@code /by}, {@code /from} and {@code /to} values (which
+ * repeat heavily in practice). The few recurring tasks also keep their repeat
+ * rule and done occurrences, as text in a map by ID (see {@link Occurrences}).
+ * {@link Task} objects are only materialized when
+ * {@link #get(int)} is called, e.g. to display a task, and the returned view is
+ * a snapshot: changes must go through {@link #setDone(int, boolean)}. Being
+ * new on every read, it is also rendered afresh each time a task is listed;
+ * the store trades that for not holding a display string per task.
+ * <p>
+ * Positions are tracked with the same {@link PositionIndex} as
+ * {@link IndexedTaskStore}. Deleted descriptions leave garbage in the byte pool,
+ * which is compacted once it outweighs the live bytes.
+ */
+public class ColumnarTaskStore implements TaskStore {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MIN_COMPACT_GARBAGE = 1 << 20;
+
+    private static final byte TODO = 0;
+    private static final byte DEADLINE = 1;
+    private static final byte EVENT = 2;
+    private static final int NONE = -1;
+
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private final BitSet done = new BitSet();
+    private int[] descriptionOffsets = new int[INITIAL_CAPACITY];
+    private int[] descriptionLengths = new int[INITIAL_CAPACITY];
+    private int[] extra1 = new int[INITIAL_CAPACITY];
+    private int[] extra2 = new int[INITIAL_CAPACITY];
+    private final PositionIndex positions = new PositionIndex(INITIAL_CAPACITY);
+
+    private byte[] descriptionPool = new byte[1024];
+    private int poolUsed = 0;
+    private long poolGarbage = 0;
+
+    private final Map<Integer, String> recurrences = new HashMap<>();
+    private final Map<String, Integer> internIds = new HashMap<>();
+    private final List<String> internPool = new ArrayList<>();
+
+    private int nextId = 0;
+    private int size = 0;
+
+    @Override
+    public int add(Task task) {
+        if (nextId == types.length) {
+            grow();
+        }
+        int id = nextId++;
+        write(id, task);
+        return id;
+    }
+
+    @Override
+    public void restore(int id, Task task) {
+        if (id < 0 || id >= nextId || positions.isLive(id)) {
+            throw new IllegalArgumentException("Cannot restore task id " + id);
+        }
+        write(id, task);
+    }
+
+    @Override
+    public void reserve(int limit) {
+        if (limit <= nextId) {
+            return;
+        }
+        while (limit > types.length) {
+            grow();
+        }
+        nextId = limit;
+    }
+
+    /**
+     * Fills the columns of a free ID from the task and makes the ID live.
+     */
+    private void write(int id, Task task) {
+        if (task instanceof Deadline deadline) {
+            types[id] = DEADLINE;
+            extra1[id] = intern(deadline.getBy());
+            extra2[id] = NONE;
+        } else if (task instanceof Event event) {
+            types[id] = EVENT;
+            extra1[id] = intern(event.getFrom());
+            extra2[id] = intern(event.getTo());
+        } else {
+            types[id] = TODO;
+            extra1[id] = NONE;
+            extra2[id] = NONE;
+        }
+        if (task instanceof Recurring recurring) {
+            recurrences.put(id, recurring.getOccurrences().toString());
+        } else {
+            recurrences.remove(id);
+        }
+        storeDescription(id, task.getDescription());
+        done.set(id, task.isDone());
+        positions.set(id);
+        size++;
+    }
+
+    @Override
+    public Task get(int id) {
+        checkLive(id);
+        return materialize(id);
+    }
+
+    @Override
+    public Task remove(int id) {
+        checkLive(id);
+        Task task = materialize(id);
+        positions.clear(id);
+        done.clear(id);
+        recurrences.remove(id);
+        poolGarbage += descriptionLengths[id];
+        size--;
+        if (poolGarbage > MIN_COMPACT_GARBAGE && poolGarbage > poolUsed - poolGarbage) {
+            compactPool();
+        }
+        return task;
+    }
+
+    @Override
+    public void setDone(int id, boolean done) {
+        checkLive(id);
+        String recurrence = recurrences.get(id);
+        if (recurrence != null) {
+            Task series = materialize(id);
+            if (done) {
+                series.markTaskAsDone();
+            } else {
+                series.markTaskAsUndone();
+            }
+            recurrences.put(id, ((Recurring) series).getOccurrences().toString());
+            return;
+        }
+        if (this.done.get(id) == done) {
+            // Same messages as Task.markTaskAsDone()/markTaskAsUndone().
+            throw new IllegalStateException(done ? "Task already marked as done." : "Task already marked as undone.");
+        }
+        this.done.set(id, done);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int idAt(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + " out of range for " + size + " tasks");
+        }
+        return positions.select(position);
+    }
+
+    @Override
+    public int positionOf(int id) {
+        checkLive(id);
+        return positions.rank(id);
+    }
+
+    @Override
+    public void forEach(Visitor visitor) {
+        for (int id = 0; id < nextId; id++) {
+            if (positions.isLive(id)) {
+                visitor.visit(id, materialize(id));
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        types = new byte[INITIAL_CAPACITY];
+        descriptionOffsets = new int[INITIAL_CAPACITY];
+        descriptionLengths = new int[INITIAL_CAPACITY];
+        extra1 = new int[INITIAL_CAPACITY];
+        extra2 = new int[INITIAL_CAPACITY];
+        positions.reset(INITIAL_CAPACITY);
+        done.clear();
+        recurrences.clear();
+        descriptionPool = new byte[1024];
+        poolUsed = 0;
+        poolGarbage = 0;
+        internIds.clear();
+        internPool.clear();
+        nextId = 0;
+        size = 0;
+    }
+
+    @Override
+    public List<Task> asList() {
+        return new AbstractList<>() {
+            @Override
+            public Task get(int index) {
+                return materialize(idAt(index));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Task> iterator() {
+                return new Iterator<>() {
+                    private int id = advance(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return id < nextId;
+                    }
+
+                    @Override
+                    public Task next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Task task = materialize(id);
+                        id = advance(id + 1);
+                        return task;
+                    }
+
+                    private int advance(int from) {
+                        while (from < nextId && !positions.isLive(from)) {
+                            from++;
+                        }
+                        return from;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Builds a fresh task object from the columns of a live ID.
+     */
+    private Task materialize(int id) {
+        String description = new String(descriptionPool, descriptionOffsets[id], descriptionLengths[id],
+                StandardCharsets.UTF_8);
+        String recurrence = recurrences.isEmpty() ? null : recurrences.get(id);
+        Task task;
+        switch (types[id]) {
+        case DEADLINE:
+            task = recurrence == null
+                    ? new Deadline(description, internPool.get(extra1[id]))
+                    : new RecurringDeadline(description, internPool.get(extra1[id]), Occurrences.parse(recurrence));
+            break;
+        case EVENT:
+            task = recurrence == null
+                    ? new Event(description, internPool.get(extra1[id]), internPool.get(extra2[id]))
+                    : new RecurringEvent(description, internPool.get(extra1[id]), internPool.get(extra2[id]),
+                            Occurrences.parse(recurrence));
+            break;
+        default:
+            task = new Todo(description);
+            break;
+        }
+        if (done.get(id)) {
+            task.markTaskAsDone();
+        }
+        return task;
+    }
+
+    private void storeDescription(int id, String description) {
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        if (poolUsed + bytes.length > descriptionPool.length) {
+            long needed = (long) poolUsed + bytes.length;
+            if (needed > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Description pool is full");
+            }
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, descriptionPool.length * 2L));
+            descriptionPool = Arrays.copyOf(descriptionPool, capacity);
+        }
+        System.arraycopy(bytes, 0, descriptionPool, poolUsed, bytes.length);
+        descriptionOffsets[id] = poolUsed;
+        descriptionLengths[id] = bytes.length;
+        poolUsed += bytes.length;
+    }
+
+    /**
+     * Copies the descriptions of live tasks into a fresh pool, dropping the
+     * bytes of deleted ones. Live tasks keep their relative order.
+     */
+    private void compactPool() {
+        byte[] compacted = new byte[Math.max(1024, poolUsed - (int) poolGarbage)];
+        int used = 0;
+        for (int id = 0; id < nextId; id++) {
+            if (positions.isLive(id)) {
+                System.arraycopy(descriptionPool, descriptionOffsets[id], compacted, used, descriptionLengths[id]);
+                descriptionOffsets[id] = used;
+                used += descriptionLengths[id];
+            }
+        }
+        descriptionPool = compacted;
+        poolUsed = used;
+        poolGarbage = 0;
+    }
+
+    private int intern(String value) {
+        Integer existing = internIds.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        int index = internPool.size();
+        internPool.add(value);
+        internIds.put(value, index);
+        return index;
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        descriptionOffsets = Arrays.copyOf(descriptionOffsets, capacity);
+        descriptionLengths = Arrays.copyOf(descriptionLengths, capacity);
+        extra1 = Arrays.copyOf(extra1, capacity);
+        extra2 = Arrays.copyOf(extra2, capacity);
+        positions.ensureCapacity(capacity);
+    }
+
+    private void checkLive(int id) {
+        if (id < 0 || id >= nextId || !positions.isLive(id)) {
+            throw new IllegalArgumentException("No task with id " + id);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package chattpg.logic;
+
+/**
+ * One tokenized input line, produced by {@link CommandParser}.
+ * <p>
+ * Tokenizing records only positions within the line: where the argument
+ * starts and, for the commands that add a task, where the {@code /by},
+ * {@code /from}, {@code /to} and {@code /every} markers are. Strings are cut out only when
+ * a field is actually used.
+ */
+public final class Command {
+    private final CommandType type;
+    private final String line;
+    private final int argumentStart;
+    private final int byMarker;
+    private final int fromMarker;
+    private final int toMarker;
+    private final int everyMarker;
+    private final boolean hasKeyword;
+
+    /**
+     * @param argumentStart index where the argument starts, or -1 if the
+     *                      command asks for it at a prompt
+     * @param byMarker      index of {@code " /by "}, or -1
+     * @param fromMarker    index of {@code " /from "}, or -1
+     * @param toMarker      index of {@code " /to "}, or -1
+     * @param everyMarker   index of {@code " /every "}, or -1
+     * @param hasKeyword    true if {@code /by}, {@code /from} or {@code /to} occurs anywhere in the argument
+     */
+    Command(CommandType type, String line, int argumentStart, int byMarker, int fromMarker, int toMarker,
+            int everyMarker, boolean hasKeyword) {
+        this.type = type;
+        this.line = line;
+        this.argumentStart = argumentStart;
+        this.byMarker = byMarker;
+        this.fromMarker = fromMarker;
+        this.toMarker = toMarker;
+        this.everyMarker = everyMarker;
+        this.hasKeyword = hasKeyword;
+    }
+
+    /**
+     * @return what kind of command this is
+     */
+    public CommandType getType() {
+        return type;
+    }
+
+    /**
+     * @return the whole line, without surrounding whitespace
+     */
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * @return false if the command was given without its argument and expects
+     *         to prompt for it (e.g. {@code mark done} in the Task Organiser)
+     */
+    public boolean hasArgument() {
+        return argumentStart >= 0;
+    }
+
+    /**
+     * @return everything after the command word, trimmed; empty if there is
+     *         nothing, null if {@link #hasArgument()} is false
+     */
+    public String getArgument() {
+        return argumentStart < 0 ? null : line.substring(argumentStart);
+    }
+
+    int argumentStart() {
+        return argumentStart;
+    }
+
+    int byMarker() {
+        return byMarker;
+    }
+
+    int fromMarker() {
+        return fromMarker;
+    }
+
+    int toMarker() {
+        return toMarker;
+    }
+
+    int everyMarker() {
+        return everyMarker;
+    }
+
+    boolean hasKeyword() {
+        return hasKeyword;
+    }
+
+    /**
+     * @return {@code line[start, end)} without surrounding whitespace
+     */
+    String text(int start, int end) {
+        return line.substring(start, end).trim();
+    }
+}
@@ -0,0 +1,190 @@
+package chattpg.logic;
+
+/**
+ * Single-pass tokenizer and registry of command words.
+ * <p>
+ * The command word is looked up in a trie of registered verbs while it is
+ * read, so no substring is made for it, and the rest of the line is scanned
+ * once for the {@code /by}, {@code /from}, {@code /to} and {@code /every} markers of the
+ * commands that add a task. Words that are not registered give
+ * {@link CommandType#UNKNOWN}. Whole-line phrases such as {@code mark done}
+ * can be registered as well and take precedence over the verb; they may
+ * leave the argument to be asked for at a prompt.
+ * <p>
+ * New commands are added by registering their word or phrase in
+ * {@link #forBatch()} or {@link #forConsole()}. A parser is not modified after construction, so one instance can be shared
+ * between threads (e.g. the batch reader and server sessions).
+ */
+public final class CommandParser {
+    private static final String[] KEYWORDS = {"by", "from", "to", "every"};
+    private static final int EVERY = 3;
+
+    private final Node verbs = new Node();
+    private final Node phrases = new Node();
+
+    private CommandParser() {
+    }
+
+    /**
+     * Creates the parser for batch files and server sessions: one command
+     * per line, always with its argument, e.g. {@code mark 3,7,9}.
+     *
+     * @return a new parser
+     */
+    public static CommandParser forBatch() {
+        CommandParser parser = new CommandParser();
+        for (CommandType type : CommandType.values()) {
+            if (type != CommandType.UNKNOWN && type != CommandType.HELP && type != CommandType.BYE) {
+                parser.register(type.getName(), type);
+            }
+        }
+        parser.registerPhrase("help", CommandType.HELP, false);
+        parser.registerPhrase("bye", CommandType.BYE, false);
+        return parser;
+    }
+
+    /**
+     * Creates the parser for the interactive Task Organiser, which also
+     * understands the prompting forms {@code mark done}, {@code mark undone},
+     * {@code delete task} and {@code find}, and {@code exit task organiser}.
+     *
+     * @return a new parser
+     */
+    public static CommandParser forConsole() {
+        CommandParser parser = forBatch();
+        parser.registerPhrase("mark done", CommandType.MARK, true);
+        parser.registerPhrase("mark undone", CommandType.UNMARK, true);
+        parser.registerPhrase("delete task", CommandType.DELETE, true);
+        parser.registerPhrase("find", CommandType.FIND, true);
+        parser.registerPhrase("exit task organiser", CommandType.BYE, false);
+        return parser;
+    }
+
+    /**
+     * Registers a command word.
+     *
+     * @param verb lowercase letters only
+     * @param type the command it stands for
+     */
+    private void register(String verb, CommandType type) {
+        insert(verbs, verb, type, false);
+    }
+
+    /**
+     * Registers a phrase that must make up the whole line.
+     *
+     * @param phrase lowercase letters and spaces
+     * @param type   the command it stands for
+     * @param prompt true if the command asks for its argument at a prompt
+     */
+    private void registerPhrase(String phrase, CommandType type, boolean prompt) {
+        insert(phrases, phrase, type, prompt);
+    }
+
+    /**
+     * Tokenizes one line.
+     *
+     * @param input the line as typed
+     * @return the command; {@link CommandType#UNKNOWN} if the first word is not registered
+     */
+    public Command parse(String input) {
+        String line = input.trim();
+        int length = line.length();
+        Node phrase = find(phrases, line, 0, length);
+        if (phrase != null) {
+            return new Command(phrase.type, line, phrase.prompt ? -1 : length, -1, -1, -1, -1, false);
+        }
+        int verbEnd = line.indexOf(' ');
+        if (verbEnd < 0) {
+            verbEnd = length;
+        }
+        Node verb = find(verbs, line, 0, verbEnd);
+        CommandType type = verb == null ? CommandType.UNKNOWN : verb.type;
+        int argumentStart = verbEnd;
+        while (argumentStart < length && Character.isWhitespace(line.charAt(argumentStart))) {
+            argumentStart++;
+        }
+        if (!type.isAdd()) {
+            return new Command(type, line, argumentStart, -1, -1, -1, -1, false);
+        }
+        // One pass over the argument: note each keyword, and the first " /keyword " of each kind.
+        int by = -1;
+        int from = -1;
+        int to = -1;
+        int every = -1;
+        boolean hasKeyword = false;
+        for (int i = line.indexOf('/', argumentStart); i >= 0; i = line.indexOf('/', i + 1)) {
+            int keyword = keywordAt(line, i + 1);
+            if (keyword < 0) {
+                continue;
+            }
+            hasKeyword |= keyword != EVERY;
+            int keywordEnd = i + 1 + KEYWORDS[keyword].length();
+            if (i == argumentStart || line.charAt(i - 1) != ' ' || keywordEnd == length
+                    || line.charAt(keywordEnd) != ' ') {
+                continue;
+            }
+            if (keyword == 0 && by < 0) {
+                by = i - 1;
+            } else if (keyword == 1 && from < 0) {
+                from = i - 1;
+            } else if (keyword == 2 && to < 0) {
+                to = i - 1;
+            } else if (keyword == EVERY && every < 0) {
+                every = i - 1;
+            }
+        }
+        return new Command(type, line, argumentStart, by, from, to, every, hasKeyword);
+    }
+
+    private static int keywordAt(String line, int index) {
+        for (int k = 0; k < KEYWORDS.length; k++) {
+            if (line.startsWith(KEYWORDS[k], index)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    private static void insert(Node root, String word, CommandType type, boolean prompt) {
+        Node node = root;
+        for (int i = 0; i < word.length(); i++) {
+            int slot = Node.slot(word.charAt(i));
+            if (slot < 0) {
+                throw new IllegalArgumentException("Commands may only contain lowercase letters and spaces: " + word);
+            }
+            if (node.children[slot] == null) {
+                node.children[slot] = new Node();
+            }
+            node = node.children[slot];
+        }
+        node.type = type;
+        node.prompt = prompt;
+    }
+
+    /**
+     * @return the node registered for {@code line[start, end)}, or null
+     */
+    private static Node find(Node root, String line, int start, int end) {
+        Node node = root;
+        for (int i = start; i < end && node != null; i++) {
+            int slot = Node.slot(line.charAt(i));
+            node = slot < 0 ? null : node.children[slot];
+        }
+        return node == null || node.type == null ? null : node;
+    }
+
+    /** Trie node over lowercase letters and the space character. */
+    private static final class Node {
+        private final Node[] children = new Node[27];
+        private CommandType type;
+        private boolean prompt;
+
+        private static int slot(char c) {
+            if (c >= 'a' && c <= 'z') {
+                return c - 'a';
+            }
+            return c == ' ' ? 26 : -1;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package chattpg.logic;
+
+/**
+ * The kinds of command understood by the Task Organiser, batch files and
+ * server sessions. Each has a fixed name, which is also the name its latency
+ * is recorded under in {@link Metrics}.
+ */
+public enum CommandType {
+    TODO("todo"),
+    DEADLINE("deadline"),
+    EVENT("event"),
+    MARK("mark"),
+    UNMARK("unmark"),
+    DELETE("delete"),
+    UNDO("undo"),
+    REDO("redo"),
+    LIST("list"),
+    FIND("find"),
+    SEARCH("search"),
+    DUE("due"),
+    UPCOMING("upcoming"),
+    BETWEEN("between"),
+    STATS("stats"),
+    OPEN("open"),
+    LISTS("lists"),
+    HELP("help"),
+    BYE("bye"),
+    /** Any input whose first word is not a registered command. */
+    UNKNOWN("other");
+
+    private final String name;
+
+    CommandType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the command's name, e.g. {@code "todo"}; {@code "other"} for {@link #UNKNOWN}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return true for the commands that add a task
+     */
+    public boolean isAdd() {
+        return this == TODO || this == DEADLINE || this == EVENT;
+    }
+}
@@ -0,0 +1,172 @@
+package chattpg.logic;
+
+import chattpg.model.Task;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link TaskStore} backed by an array of slots indexed by task ID.
+ * <p>
+ * Lookups, appends and deletions by ID touch a single slot. A {@link PositionIndex}
+ * (Fenwick tree) over the live/dead flags of the slots translates between IDs
+ * and list positions in O(log n), so deleting a task never shifts the tasks
+ * after it.
+ */
+public class IndexedTaskStore implements TaskStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Task[] slots = new Task[INITIAL_CAPACITY];
+    private final PositionIndex positions = new PositionIndex(INITIAL_CAPACITY);
+    private int nextId = 0;
+    private int size = 0;
+
+    @Override
+    public int add(Task task) {
+        if (nextId == slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+            positions.ensureCapacity(slots.length);
+        }
+        int id = nextId++;
+        slots[id] = task;
+        positions.set(id);
+        size++;
+        return id;
+    }
+
+    @Override
+    public void restore(int id, Task task) {
+        if (id < 0 || id >= nextId || slots[id] != null) {
+            throw new IllegalArgumentException("Cannot restore task id " + id);
+        }
+        slots[id] = task;
+        positions.set(id);
+        size++;
+    }
+
+    @Override
+    public void reserve(int limit) {
+        if (limit <= nextId) {
+            return;
+        }
+        if (limit > slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(limit, slots.length * 2));
+            positions.ensureCapacity(slots.length);
+        }
+        nextId = limit;
+    }
+
+    @Override
+    public Task get(int id) {
+        return slot(id);
+    }
+
+    @Override
+    public Task remove(int id) {
+        Task task = slot(id);
+        slots[id] = null;
+        positions.clear(id);
+        size--;
+        return task;
+    }
+
+    @Override
+    public void setDone(int id, boolean done) {
+        Task task = slot(id);
+        if (done) {
+            task.markTaskAsDone();
+        } else {
+            task.markTaskAsUndone();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int idAt(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + " out of range for " + size + " tasks");
+        }
+        return positions.select(position);
+    }
+
+    @Override
+    public int positionOf(int id) {
+        slot(id);
+        return positions.rank(id);
+    }
+
+    @Override
+    public void forEach(Visitor visitor) {
+        for (int id = 0; id < nextId; id++) {
+            if (slots[id] != null) {
+                visitor.visit(id, slots[id]);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        slots = new Task[INITIAL_CAPACITY];
+        positions.reset(INITIAL_CAPACITY);
+        nextId = 0;
+        size = 0;
+    }
+
+    @Override
+    public List<Task> asList() {
+        return new AbstractList<>() {
+            @Override
+            public Task get(int index) {
+                return slots[idAt(index)];
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Task> iterator() {
+                return new Iterator<>() {
+                    private int id = advance(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return id < nextId;
+                    }
+
+                    @Override
+                    public Task next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Task task = slots[id];
+                        id = advance(id + 1);
+                        return task;
+                    }
+
+                    private int advance(int from) {
+                        while (from < nextId && slots[from] == null) {
+                            from++;
+                        }
+                        return from;
+                    }
+                };
+            }
+        };
+    }
+
+    private Task slot(int id) {
+        if (id < 0 || id >= nextId || slots[id] == null) {
+            throw new IllegalArgumentException("No task with id " + id);
+        }
+        return slots[id];
+    }
+}
@@ -0,0 +1,151 @@
+package chattpg.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index from lower-cased description tokens to the IDs of
+ * the tasks containing them (see {@link TaskStore}). Kept up to date
+ * incrementally as tasks are loaded, added and deleted, so keyword queries only touch the postings of the query terms
+ * instead of scanning every task.
+ * <p>
+ * Query syntax understood by {@link #search(String)}:
+ * <ul>
+ *   <li>{@code book read} - tasks containing every term (AND)</li>
+ *   <li>{@code book OR novel} - tasks matching either side (OR binds loosest)</li>
+ *   <li>{@code boo*} - tasks with any token starting with {@code boo}</li>
+ * </ul>
+ */
+public class KeywordIndex {
+    private static final String OR = "OR";
+    private static final char PREFIX_WILDCARD = '*';
+
+    private final TreeMap<String, Set<Integer>> postings = new TreeMap<>();
+
+    /**
+     * Adds every token of the task's description to the index.
+     *
+     * @param id          the task's ID
+     * @param description the task's description
+     */
+    public void add(int id, String description) {
+        for (String token : tokenize(description)) {
+            postings.computeIfAbsent(token, k -> new HashSet<>()).add(id);
+        }
+    }
+
+    /**
+     * Removes the task from the postings of every token in its description.
+     *
+     * @param id          the task's ID
+     * @param description the task's description
+     */
+    public void remove(int id, String description) {
+        for (String token : tokenize(description)) {
+            Set<Integer> matches = postings.get(token);
+            if (matches != null) {
+                matches.remove(id);
+                if (matches.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        }
+    }
+
+    /** Drops every posting. */
+    public void clear() {
+        postings.clear();
+    }
+
+    /**
+     * Evaluates a query against the index.
+     *
+     * @param query terms separated by whitespace, optionally joined by {@code OR}
+     *              and suffixed with {@code *} for prefix matching
+     * @return IDs of the matching tasks in no particular order
+     */
+    public Set<Integer> search(String query) {
+        Set<Integer> result = new HashSet<>();
+        List<String> group = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            if (word.equals(OR)) {
+                result.addAll(matchAll(group));
+                group.clear();
+            } else if (!word.isEmpty()) {
+                group.add(word);
+            }
+        }
+        result.addAll(matchAll(group));
+        return result;
+    }
+
+    /**
+     * Intersects the matches of every term in the group, starting from the
+     * smallest posting set so the work is bounded by the rarest term.
+     */
+    private Set<Integer> matchAll(List<String> terms) {
+        List<Set<Integer>> matches = new ArrayList<>();
+        for (String term : terms) {
+            boolean prefix = term.length() > 1 && term.charAt(term.length() - 1) == PREFIX_WILDCARD;
+            String body = prefix ? term.substring(0, term.length() - 1) : term;
+            List<String> tokens = tokenize(body);
+            for (int i = 0; i < tokens.size(); i++) {
+                boolean last = i == tokens.size() - 1;
+                matches.add(prefix && last ? prefixMatches(tokens.get(i)) : exactMatches(tokens.get(i)));
+            }
+        }
+        if (matches.isEmpty()) {
+            return Collections.emptySet();
+        }
+        matches.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        Set<Integer> result = new HashSet<>(matches.get(0));
+        for (int i = 1; i < matches.size() && !result.isEmpty(); i++) {
+            result.retainAll(matches.get(i));
+        }
+        return result;
+    }
+
+    private Set<Integer> exactMatches(String token) {
+        return postings.getOrDefault(token, Collections.emptySet());
+    }
+
+    private Set<Integer> prefixMatches(String prefix) {
+        NavigableMap<String, Set<Integer>> range = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (range.size() == 1) {
+            return range.firstEntry().getValue();
+        }
+        Set<Integer> union = new HashSet<>();
+        for (Map.Entry<String, Set<Integer>> entry : range.entrySet()) {
+            union.addAll(entry.getValue());
+        }
+        return union;
+    }
+
+    /**
+     * Splits text into lower-cased runs of letters and digits. Tasks are indexed
+     * and queried with the same tokenizer so both sides agree on word boundaries.
+     *
+     * @param text text to split
+     * @return tokens in order of appearance (may contain duplicates)
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
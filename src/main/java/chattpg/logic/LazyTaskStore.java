@@ -0,0 +1,260 @@
+package chattpg.logic;
+
+import chattpg.model.Recurring;
+import chattpg.model.Task;
+import chattpg.storage.MappedTaskFile;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link TaskStore} over a memory-mapped task file whose tasks are decoded only
+ * when they are read.
+ * <p>
+ * The first IDs correspond one-to-one to the task lines of the attached
+ * {@link MappedTaskFile}. Changes are kept in a small overlay instead of being
+ * applied to the file: a bit per mapped task records whether its done flag was
+ * flipped, deletions only clear the task's bit in the {@link PositionIndex},
+ * and added tasks are held as ordinary objects after the mapped ones (as are
+ * tasks restored under a mapped task's ID, which replace its line, and
+ * recurring tasks once an occurrence is marked). Reading
+ * a mapped task decodes its line again, so the returned object is a snapshot
+ * and changes must go through {@link #setDone(int, boolean)}. For the same
+ * reason only the overlay's tasks keep their rendered display string between
+ * listings; mapped ones are rendered again each time.
+ */
+public class LazyTaskStore implements TaskStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private MappedTaskFile base = MappedTaskFile.empty();
+    private int baseCount = 0;
+    private final BitSet flipped = new BitSet();
+    private final List<Task> appended = new ArrayList<>();
+    private final Map<Integer, Task> replaced = new HashMap<>();
+    private final PositionIndex positions = new PositionIndex(INITIAL_CAPACITY);
+    private int nextId = 0;
+    private int size = 0;
+
+    /**
+     * Makes the tasks of a mapped file the contents of this empty store,
+     * without decoding any of them.
+     *
+     * @param file mapped task file
+     * @throws IllegalStateException if the store has already been used
+     */
+    public void attach(MappedTaskFile file) {
+        if (nextId != 0) {
+            throw new IllegalStateException("Tasks can only be attached to an unused store");
+        }
+        base = file;
+        baseCount = file.size();
+        positions.fill(baseCount);
+        nextId = baseCount;
+        size = baseCount;
+    }
+
+    @Override
+    public int add(Task task) {
+        positions.ensureCapacity(nextId + 1);
+        int id = nextId++;
+        appended.add(task);
+        positions.set(id);
+        size++;
+        return id;
+    }
+
+    @Override
+    public void restore(int id, Task task) {
+        if (id < 0 || id >= nextId || positions.isLive(id)) {
+            throw new IllegalArgumentException("Cannot restore task id " + id);
+        }
+        if (id >= baseCount) {
+            appended.set(id - baseCount, task);
+        } else {
+            replaced.put(id, task);
+            flipped.clear(id);
+        }
+        positions.set(id);
+        size++;
+    }
+
+    @Override
+    public void reserve(int limit) {
+        if (limit <= nextId) {
+            return;
+        }
+        positions.ensureCapacity(limit);
+        while (baseCount + appended.size() < limit) {
+            appended.add(null);
+        }
+        nextId = limit;
+    }
+
+    @Override
+    public Task get(int id) {
+        checkLive(id);
+        return materialize(id);
+    }
+
+    @Override
+    public Task remove(int id) {
+        checkLive(id);
+        Task task = materialize(id);
+        positions.clear(id);
+        if (id >= baseCount) {
+            appended.set(id - baseCount, null);
+        } else {
+            replaced.remove(id);
+        }
+        size--;
+        return task;
+    }
+
+    @Override
+    public void setDone(int id, boolean done) {
+        checkLive(id);
+        if (id >= baseCount || replaced.containsKey(id)) {
+            Task task = id >= baseCount ? appended.get(id - baseCount) : replaced.get(id);
+            if (done) {
+                task.markTaskAsDone();
+            } else {
+                task.markTaskAsUndone();
+            }
+            return;
+        }
+        Task task = materialize(id);
+        if (task instanceof Recurring) {
+            // Done occurrences do not fit in a bit, so the decoded series replaces its line.
+            if (done) {
+                task.markTaskAsDone();
+            } else {
+                task.markTaskAsUndone();
+            }
+            replaced.put(id, task);
+            return;
+        }
+        if (task.isDone() == done) {
+            // Same messages as Task.markTaskAsDone()/markTaskAsUndone().
+            throw new IllegalStateException(done ? "Task already marked as done." : "Task already marked as undone.");
+        }
+        flipped.flip(id);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int idAt(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + " out of range for " + size + " tasks");
+        }
+        return positions.select(position);
+    }
+
+    @Override
+    public int positionOf(int id) {
+        checkLive(id);
+        return positions.rank(id);
+    }
+
+    @Override
+    public void forEach(Visitor visitor) {
+        for (int id = 0; id < nextId; id++) {
+            if (positions.isLive(id)) {
+                visitor.visit(id, materialize(id));
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        base = MappedTaskFile.empty();
+        baseCount = 0;
+        positions.reset(INITIAL_CAPACITY);
+        appended.clear();
+        replaced.clear();
+        flipped.clear();
+        nextId = 0;
+        size = 0;
+    }
+
+    @Override
+    public List<Task> asList() {
+        return new AbstractList<>() {
+            @Override
+            public Task get(int index) {
+                return materialize(idAt(index));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Task> iterator() {
+                return new Iterator<>() {
+                    private int id = advance(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return id < nextId;
+                    }
+
+                    @Override
+                    public Task next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Task task = materialize(id);
+                        id = advance(id + 1);
+                        return task;
+                    }
+
+                    private int advance(int from) {
+                        while (from < nextId && !positions.isLive(from)) {
+                            from++;
+                        }
+                        return from;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the task for a live ID, decoding mapped tasks and applying any
+     * flipped done flag.
+     */
+    private Task materialize(int id) {
+        if (id >= baseCount) {
+            return appended.get(id - baseCount);
+        }
+        if (!replaced.isEmpty() && replaced.containsKey(id)) {
+            return replaced.get(id);
+        }
+        Task task = base.get(id);
+        if (flipped.get(id)) {
+            if (task.isDone()) {
+                task.markTaskAsUndone();
+            } else {
+                task.markTaskAsDone();
+            }
+        }
+        return task;
+    }
+
+    private void checkLive(int id) {
+        if (id < 0 || id >= nextId || !positions.isLive(id)) {
+            throw new IllegalArgumentException("No task with id " + id);
+        }
+    }
+}
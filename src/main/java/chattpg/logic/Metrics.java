@@ -0,0 +1,235 @@
+package chattpg.logic;
+
+import chattpg.metrics.LatencyHistogram;
+import chattpg.storage.StorageStats;
+import chattpg.ui.OutputSink;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Per-command latency histograms plus the task count and storage I/O counters
+ * of one task list, shared by all sessions over it.
+ * <p>
+ * The {@code stats} command prints {@link #report()}. For watching a long-running
+ * process from outside, {@link #export()} can also publish the numbers as a JMX
+ * MBean ({@code -Dchattpg.metrics.jmx=true}) and rewrite the report to a file
+ * periodically ({@code -Dchattpg.metrics.file=<path>}, every
+ * {@code -Dchattpg.metrics.interval} seconds, 10 by default). Both are off unless
+ * asked for, so startup does not pay for them. An error writing the file in the
+ * background is kept and reported with the next {@code stats} or on close.
+ */
+public final class Metrics implements MetricsMXBean {
+    private static final long DEFAULT_INTERVAL_SECONDS = 10;
+
+    private final StorageStats storage;
+    private final IntSupplier taskCount;
+    private final Map<String, LatencyHistogram> commands = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+    private ScheduledExecutorService reporter;
+    private Path reportFile;
+    private String backgroundError;
+
+    /**
+     * @param storage   I/O counters of the storage backing the list
+     * @param taskCount current number of tasks
+     */
+    public Metrics(StorageStats storage, IntSupplier taskCount) {
+        this.storage = storage;
+        this.taskCount = taskCount;
+    }
+
+    /**
+     * Records how long one command took. Callers pass a fixed set of command
+     * names (see {@link CommandType#getName()}), which keeps the
+     * number of histograms bounded whatever the input.
+     *
+     * @param command the command name, e.g. {@code "todo"} or {@code "find"}
+     * @param nanos   time from reading the command to finishing it
+     */
+    public void recordCommand(String command, long nanos) {
+        commands.computeIfAbsent(command, c -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * Formats every metric as aligned text lines.
+     *
+     * @return the report, one line per element
+     */
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Tasks: %,d (uptime %.1f s)", taskCount.getAsInt(),
+                (System.nanoTime() - startNanos) / 1e9));
+        lines.add(String.format("Storage: read %s in %,d records, wrote %s (%,d snapshots, %,d journal records,"
+                + " %,d in-place updates)", formatBytes(storage.getBytesRead()), storage.getRecordsParsed(),
+                formatBytes(storage.getBytesWritten()), storage.getSnapshotsWritten(),
+                storage.getJournalRecordsWritten(), storage.getLinesPatched()));
+        lines.add(String.format("%-16s %9s %9s %9s %9s %9s", "Latency (ms)", "count", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, LatencyHistogram> command : new TreeMap<>(commands).entrySet()) {
+            lines.add(formatLatency(command.getKey(), command.getValue()));
+        }
+        lines.add(formatLatency("[load]", storage.getLoadLatency()));
+        lines.add(formatLatency("[snapshot]", storage.getSaveLatency()));
+        lines.add(formatLatency("[fsync]", storage.getSyncLatency()));
+        return lines;
+    }
+
+    /**
+     * Starts the exports selected by system properties (see the class comment).
+     * Problems are reported and otherwise ignored, since metrics are never
+     * worth failing the program for.
+     *
+     * @param out receives errors
+     */
+    public synchronized void export(OutputSink out) {
+        if (Boolean.getBoolean("chattpg.metrics.jmx")) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("chattpg:type=Metrics"));
+            } catch (JMException e) {
+                out.println("Could not register the metrics MBean: " + e.getMessage());
+            }
+        }
+        String file = System.getProperty("chattpg.metrics.file", "").trim();
+        if (file.isEmpty() || reporter != null) {
+            return;
+        }
+        reportFile = Path.of(file);
+        long interval = Math.max(1, Long.getLong("chattpg.metrics.interval", DEFAULT_INTERVAL_SECONDS));
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chattpg-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleWithFixedDelay(() -> writeReport(null), interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic report, writing it one last time.
+     *
+     * @param out receives errors
+     */
+    public synchronized void close(OutputSink out) {
+        if (reporter == null) {
+            return;
+        }
+        reporter.shutdown();
+        reporter = null;
+        reportBackgroundError(out);
+        writeReport(out);
+    }
+
+    /**
+     * Reports an error the periodic report ran into since the last call.
+     *
+     * @param out receives the error
+     */
+    public synchronized void reportBackgroundError(OutputSink out) {
+        if (backgroundError != null) {
+            out.println(backgroundError);
+            backgroundError = null;
+        }
+    }
+
+    @Override
+    public int getTaskCount() {
+        return taskCount.getAsInt();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return storage.getBytesRead();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return storage.getBytesWritten();
+    }
+
+    @Override
+    public long getRecordsParsed() {
+        return storage.getRecordsParsed();
+    }
+
+    @Override
+    public long getCommandCount() {
+        long count = 0;
+        for (LatencyHistogram histogram : commands.values()) {
+            count += histogram.count();
+        }
+        return count;
+    }
+
+    @Override
+    public Map<String, Long> getCommandCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        commands.forEach((command, histogram) -> counts.put(command, histogram.count()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getCommandP99Micros() {
+        Map<String, Long> p99 = new TreeMap<>();
+        commands.forEach((command, histogram) -> p99.put(command, histogram.percentile(99) / 1000));
+        return p99;
+    }
+
+    @Override
+    public String getReport() {
+        return String.join(System.lineSeparator(), report());
+    }
+
+    /**
+     * Replaces the report file with the current report, via a temporary file
+     * so readers never see a half-written one.
+     *
+     * @param out receives errors, or null on the reporter thread to report them later
+     */
+    private synchronized void writeReport(OutputSink out) {
+        Path target = reportFile;
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        String text = "ChatTPG metrics at " + LocalDateTime.now().withNano(0) + System.lineSeparator()
+                + getReport() + System.lineSeparator();
+        try {
+            Files.writeString(temp, text, StandardCharsets.UTF_8);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            String message = "Error writing metrics file: " + e.getMessage();
+            if (out != null) {
+                out.println(message);
+            } else {
+                backgroundError = message;
+            }
+        }
+    }
+
+    private static String formatLatency(String name, LatencyHistogram histogram) {
+        return String.format("%-16s %,9d %9.3f %9.3f %9.3f %9.3f", name, histogram.count(),
+                histogram.percentile(50) / 1e6, histogram.percentile(90) / 1e6,
+                histogram.percentile(99) / 1e6, histogram.max() / 1e6);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+}
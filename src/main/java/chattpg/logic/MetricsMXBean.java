@@ -0,0 +1,33 @@
+package chattpg.logic;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link Metrics}, registered as {@code chattpg:type=Metrics}
+ * when {@code -Dchattpg.metrics.jmx=true} is set. Latencies are in microseconds.
+ */
+public interface MetricsMXBean {
+    /** @return number of tasks in the list */
+    int getTaskCount();
+
+    /** @return bytes read from the snapshot and journal */
+    long getBytesRead();
+
+    /** @return bytes written to snapshots and the journal */
+    long getBytesWritten();
+
+    /** @return snapshot lines and journal records decoded */
+    long getRecordsParsed();
+
+    /** @return number of commands timed, across all command kinds */
+    long getCommandCount();
+
+    /** @return number of times each command ran, by command name */
+    Map<String, Long> getCommandCounts();
+
+    /** @return 99th percentile latency of each command, by command name */
+    Map<String, Long> getCommandP99Micros();
+
+    /** @return the same report the {@code stats} command prints */
+    String getReport();
+}
@@ -0,0 +1,141 @@
+package chattpg.logic;
+
+import java.util.Arrays;
+
+/**
+ * Fenwick tree over a growing array of live/dead slots, used by the task
+ * stores to translate between slot IDs and 0-based list positions in
+ * O(log n) without shifting anything when a slot is freed.
+ */
+final class PositionIndex {
+    /** 1-based Fenwick tree counting live slots. */
+    private int[] tree;
+    private boolean[] live;
+
+    PositionIndex(int capacity) {
+        tree = new int[capacity + 1];
+        live = new boolean[capacity];
+    }
+
+    /**
+     * @return number of slots the index can currently hold
+     */
+    int capacity() {
+        return live.length;
+    }
+
+    /**
+     * Grows the index to at least the given capacity, rebuilding the tree in O(n).
+     *
+     * @param capacity new minimum capacity
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity <= live.length) {
+            return;
+        }
+        live = Arrays.copyOf(live, Math.max(capacity, live.length * 2));
+        rebuild();
+    }
+
+    /**
+     * Marks slots {@code [0, count)} live and every other slot dead in O(n),
+     * growing the index if needed.
+     *
+     * @param count number of leading live slots
+     */
+    void fill(int count) {
+        ensureCapacity(count);
+        Arrays.fill(live, 0, count, true);
+        Arrays.fill(live, count, live.length, false);
+        rebuild();
+    }
+
+    /** Recomputes the tree from the live flags in O(n). */
+    private void rebuild() {
+        tree = new int[live.length + 1];
+        for (int i = 1; i < tree.length; i++) {
+            tree[i] += live[i - 1] ? 1 : 0;
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    /** Marks a slot live. */
+    void set(int slot) {
+        if (!live[slot]) {
+            live[slot] = true;
+            update(slot, 1);
+        }
+    }
+
+    /** Marks a slot dead. */
+    void clear(int slot) {
+        if (live[slot]) {
+            live[slot] = false;
+            update(slot, -1);
+        }
+    }
+
+    /**
+     * Marks every slot dead and shrinks the index back to the given capacity,
+     * so a store that is cleared and refilled does not keep its old size.
+     *
+     * @param capacity new capacity
+     */
+    void reset(int capacity) {
+        tree = new int[capacity + 1];
+        live = new boolean[capacity];
+    }
+
+    /**
+     * @param slot slot to check
+     * @return true if the slot is live
+     */
+    boolean isLive(int slot) {
+        return slot >= 0 && slot < live.length && live[slot];
+    }
+
+    /**
+     * Returns the number of live slots before the given slot, i.e. its 0-based
+     * position when it is live.
+     *
+     * @param slot slot index
+     * @return live slots in {@code [0, slot)}
+     */
+    int rank(int slot) {
+        int count = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    /**
+     * Returns the slot holding the live entry at the given 0-based position.
+     * The caller must ensure the position is below the number of live slots.
+     *
+     * @param position 0-based position among live slots
+     * @return slot index
+     */
+    int select(int position) {
+        // Descend to the largest prefix whose live count is still <= position.
+        int index = 0;
+        int remaining = position + 1;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next < tree.length && tree[next] < remaining) {
+                index = next;
+                remaining -= tree[next];
+            }
+        }
+        return index;
+    }
+
+    private void update(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+}
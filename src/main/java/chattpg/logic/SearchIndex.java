@@ -0,0 +1,390 @@
+package chattpg.logic;
+
+import chattpg.model.Deadline;
+import chattpg.model.Event;
+import chattpg.model.Task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Ranked, typo-tolerant full-text index over task descriptions and the
+ * {@code /by}, {@code /from} and {@code /to} fields of deadlines and events.
+ * <p>
+ * Each query word is matched against the indexed terms exactly, as a prefix
+ * (three letters or more) and, through a trigram dictionary, within a small
+ * edit distance: one edit for words of three to six letters and two for longer
+ * ones, where swapping two adjacent letters counts as one edit. Tasks are scored with BM25 over their terms, each
+ * match weighted down by how loosely it matched, and only the best
+ * {@code k} are kept on a bounded heap. Unlike {@link KeywordIndex} a task
+ * need not match every word; matching more of them ranks it higher.
+ * <p>
+ * Like the other indexes it is updated incrementally as tasks are added and
+ * removed. Not thread-safe; {@link TaskActions} guards it with its lock.
+ */
+public class SearchIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PREFIX_WEIGHT = 0.5;
+    private static final double EDIT_WEIGHT = 0.5;
+    private static final int MIN_PREFIX_LENGTH = 3;
+    private static final char BOUNDARY = '$';
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    /** Trigram (of the term padded with {@value #BOUNDARY}) to the terms containing it. */
+    private final Map<String, Set<String>> trigrams = new HashMap<>();
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int documents;
+    private long totalLength;
+
+    /**
+     * Indexes the task's description and, for deadlines and events, its dates.
+     *
+     * @param id   the task's store ID
+     * @param task the task
+     */
+    public void add(int id, Task task) {
+        List<String> terms = termsOf(task);
+        if (id >= lengths.length) {
+            lengths = Arrays.copyOf(lengths, Math.max(id + 1, lengths.length * 2));
+        }
+        lengths[id] = terms.size();
+        documents++;
+        totalLength += terms.size();
+        for (String term : terms) {
+            Postings docs = postings.get(term);
+            if (docs == null) {
+                docs = new Postings();
+                postings.put(term, docs);
+                for (String gram : trigramsOf(term)) {
+                    trigrams.computeIfAbsent(gram, g -> new HashSet<>()).add(term);
+                }
+            }
+            docs.add(id);
+        }
+    }
+
+    /**
+     * Removes a task indexed by {@link #add(int, Task)}.
+     *
+     * @param id   the task's store ID
+     * @param task the task as it was indexed
+     */
+    public void remove(int id, Task task) {
+        List<String> terms = termsOf(task);
+        for (String term : terms) {
+            Postings docs = postings.get(term);
+            if (docs == null || !docs.remove(id) || docs.size > 0) {
+                continue;
+            }
+            postings.remove(term);
+            for (String gram : trigramsOf(term)) {
+                Set<String> withGram = trigrams.get(gram);
+                if (withGram != null && withGram.remove(term) && withGram.isEmpty()) {
+                    trigrams.remove(gram);
+                }
+            }
+        }
+        if (id < lengths.length) {
+            lengths[id] = 0;
+        }
+        documents--;
+        totalLength -= terms.size();
+    }
+
+    /**
+     * Removes every task.
+     */
+    public void clear() {
+        postings.clear();
+        trigrams.clear();
+        lengths = new int[INITIAL_CAPACITY];
+        documents = 0;
+        totalLength = 0;
+    }
+
+    /**
+     * Finds the tasks that best match the query words.
+     *
+     * @param query words to look for; other characters are ignored
+     * @param k     maximum number of results
+     * @return at most {@code k} hits, best first (ties in list order), and the
+     *         number of tasks that matched at all
+     */
+    public Result search(String query, int k) {
+        double[] scores = new double[lengths.length];
+        double[] best = new double[lengths.length];
+        int[] matched = new int[16];
+        int matchedCount = 0;
+        int[] touched = new int[16];
+        double averageLength = documents == 0 ? 1 : Math.max(1.0, (double) totalLength / documents);
+        for (String word : new HashSet<>(KeywordIndex.tokenize(query))) {
+            int touchedCount = 0;
+            for (Map.Entry<String, Double> expansion : expand(word).entrySet()) {
+                Postings docs = postings.get(expansion.getKey());
+                double idf = Math.log(1 + (documents - docs.size + 0.5) / (docs.size + 0.5));
+                double weight = expansion.getValue() * idf;
+                for (int i = 0; i < docs.size; i++) {
+                    int id = docs.ids[i];
+                    int tf = docs.counts[i];
+                    double score = weight * tf * (K1 + 1)
+                            / (tf + K1 * (1 - B + B * lengths[id] / averageLength));
+                    if (best[id] == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = id;
+                    }
+                    best[id] = Math.max(best[id], score);
+                }
+            }
+            // A word counts once per task, by its closest matching term.
+            for (int i = 0; i < touchedCount; i++) {
+                int id = touched[i];
+                if (scores[id] == 0) {
+                    if (matchedCount == matched.length) {
+                        matched = Arrays.copyOf(matched, matchedCount * 2);
+                    }
+                    matched[matchedCount++] = id;
+                }
+                scores[id] += best[id];
+                best[id] = 0;
+            }
+        }
+        // Min-heap of the best k so far; on equal scores the later ID is dropped first.
+        PriorityQueue<Hit> top = new PriorityQueue<>(Math.max(1, Math.min(k, matchedCount)),
+                (a, b) -> a.score != b.score ? Double.compare(a.score, b.score) : Integer.compare(b.id, a.id));
+        for (int i = 0; i < matchedCount && k > 0; i++) {
+            Hit hit = new Hit(matched[i], scores[matched[i]]);
+            if (top.size() < k) {
+                top.add(hit);
+            } else if (top.comparator().compare(hit, top.peek()) > 0) {
+                top.poll();
+                top.add(hit);
+            }
+        }
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(Collections.reverseOrder(top.comparator()));
+        return new Result(hits, matchedCount);
+    }
+
+    /**
+     * @return the indexed terms the word matches, with the weight of each match
+     */
+    private Map<String, Double> expand(String word) {
+        Map<String, Double> terms = new HashMap<>();
+        if (postings.containsKey(word)) {
+            terms.put(word, 1.0);
+        }
+        if (word.length() < MIN_PREFIX_LENGTH) {
+            return terms;
+        }
+        int maxEdits = word.length() <= 6 ? 1 : 2;
+        // A term within d edits, none of them a swap, shares at least (length - 3d) of the
+        // word's padded trigrams; terms sharing none are not considered, which only misses
+        // a wrong middle letter of a three-letter word. A swap can change every trigram of
+        // a short word, so the word with each pair of adjacent letters swapped is looked up
+        // as well.
+        List<String> grams = trigramsOf(word);
+        Set<String> candidates = new HashSet<>();
+        addCandidates(grams, grams.size() - 3 * maxEdits, candidates);
+        char[] letters = word.toCharArray();
+        for (int i = 0; i + 1 < letters.length; i++) {
+            if (letters[i] != letters[i + 1]) {
+                swap(letters, i);
+                addCandidates(trigramsOf(new String(letters)), grams.size() - 4 * (maxEdits - 1), candidates);
+                swap(letters, i);
+            }
+        }
+        for (String term : candidates) {
+            if (term.equals(word)) {
+                continue;
+            }
+            double weight = PREFIX_WEIGHT;
+            if (!term.startsWith(word)) {
+                int edits = editDistance(word, term, maxEdits);
+                weight = edits <= maxEdits ? Math.pow(EDIT_WEIGHT, edits) : 0;
+            }
+            if (weight > 0) {
+                terms.put(term, weight);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Adds the indexed terms that contain at least {@code needed} (and at least
+     * one) of the given trigrams.
+     */
+    private void addCandidates(List<String> grams, int needed, Set<String> candidates) {
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            for (String term : trigrams.getOrDefault(gram, Collections.emptySet())) {
+                shared.merge(term, 1, Integer::sum);
+            }
+        }
+        for (Map.Entry<String, Integer> candidate : shared.entrySet()) {
+            if (candidate.getValue() >= needed) {
+                candidates.add(candidate.getKey());
+            }
+        }
+    }
+
+    private static void swap(char[] letters, int i) {
+        char first = letters[i];
+        letters[i] = letters[i + 1];
+        letters[i + 1] = first;
+    }
+
+    /**
+     * Optimal string alignment distance: the Levenshtein distance, except that
+     * swapping two adjacent letters ({@code retrun}, {@code return}) is one edit
+     * rather than two. Gives up once it must exceed {@code bound}.
+     *
+     * @return the distance, or {@code bound + 1} if it is larger than {@code bound}
+     */
+    static int editDistance(String a, String b, int bound) {
+        if (Math.abs(a.length() - b.length()) > bound) {
+            return bound + 1;
+        }
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], beforePrevious[j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > bound) {
+                return bound + 1;
+            }
+            int[] reused = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = reused;
+        }
+        return Math.min(previous[b.length()], bound + 1);
+    }
+
+    private static List<String> termsOf(Task task) {
+        List<String> terms = KeywordIndex.tokenize(task.getDescription());
+        if (task instanceof Deadline d) {
+            terms.addAll(KeywordIndex.tokenize(d.getBy()));
+        } else if (task instanceof Event e) {
+            terms.addAll(KeywordIndex.tokenize(e.getFrom()));
+            terms.addAll(KeywordIndex.tokenize(e.getTo()));
+        }
+        return terms;
+    }
+
+    private static List<String> trigramsOf(String term) {
+        String padded = BOUNDARY + term + BOUNDARY;
+        List<String> grams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * The tasks containing one term, as IDs in ascending order, each with the
+     * number of times the term occurs in it. Tasks are nearly always added
+     * with a new highest ID, so adding is usually an append.
+     */
+    private static final class Postings {
+        private int[] ids = new int[2];
+        private int[] counts = new int[2];
+        private int size;
+
+        void add(int id) {
+            int at = size > 0 && ids[size - 1] < id ? -(size + 1) : Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                counts[at]++;
+                return;
+            }
+            at = -(at + 1);
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            System.arraycopy(counts, at, counts, at + 1, size - at);
+            ids[at] = id;
+            counts[at] = 1;
+            size++;
+        }
+
+        /**
+         * @return false if the ID was not present
+         */
+        boolean remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            System.arraycopy(counts, at + 1, counts, at, size - at - 1);
+            size--;
+            return true;
+        }
+    }
+
+    /** A matching task and its relevance score. */
+    public static final class Hit {
+        private final int id;
+        private final double score;
+
+        Hit(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        /** @return the task's store ID */
+        public int getId() {
+            return id;
+        }
+
+        /** @return the task's relevance; higher is better */
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /** The best hits of a search and how many tasks matched in total. */
+    public static final class Result {
+        private final List<Hit> hits;
+        private final int matchCount;
+
+        Result(List<Hit> hits, int matchCount) {
+            this.hits = hits;
+            this.matchCount = matchCount;
+        }
+
+        /** @return the best hits, best first */
+        public List<Hit> getHits() {
+            return hits;
+        }
+
+        /** @return number of tasks matching at least one query word */
+        public int getMatchCount() {
+            return matchCount;
+        }
+    }
+}
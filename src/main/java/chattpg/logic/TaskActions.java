@@ -2,60 +2,302 @@ package chattpg.logic;
 
 import chattpg.logic.exceptions.InvalidCommandException;
 import chattpg.logic.exceptions.TaskIndexOutOfBoundsException;
+import chattpg.model.DateTimeParser;
 import chattpg.model.Deadline;
 import chattpg.model.Event;
+import chattpg.model.Occurrences;
+import chattpg.model.Recurrence;
+import chattpg.model.Recurring;
+import chattpg.model.RecurringDeadline;
+import chattpg.model.RecurringEvent;
 import chattpg.model.Task;
 import chattpg.model.Todo;
 import chattpg.storage.Storage;
+import chattpg.storage.StorageStats;
+import chattpg.ui.OutputSink;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 
 /**
  * Encapsulates all task-related operations and persistence hooks for the
  * Task Organiser feature. This class is the domain layer that manipulates the
- * in-memory list and delegates save/load to {@link chattpg.storage.Storage}.
+ * in-memory {@link TaskStore} and delegates save/load to {@link chattpg.storage.Storage}.
+ * User-facing task numbers are 1-based list positions; internally tasks are
+ * addressed by their stable store IDs.
+ * <p>
+ * All operations are safe to call from several threads: queries hold a shared
+ * read lock and mutations an exclusive write lock. Use {@link #forSession}
+ * to give each concurrent user their own output.
+ * <p>
+ * Other ChatTPG processes may share the same task file. Before each command
+ * the list is brought up to date with their changes (see
+ * {@link Storage#beginWrite(List, OutputSink)}), and mutations hold the cross-process lock
+ * while they are applied, so task numbers always refer to the current list.
+ * <p>
+ * Each instance keeps its own {@link UndoLog}, so {@link #undo()} and
+ * {@link #redo()} only ever reverse changes made through that session.
+ * <p>
+ * Delete, mark and unmark also accept a selection of several tasks (see
+ * {@link #deleteTasks(String)}), which is applied in one pass, persisted as
+ * one journal record and undone as one step.
+ * <p>
+ * Deadlines and events given {@code /every <rule>} repeat (see {@link Recurring}):
+ * marking one marks its next occurrence, and date queries list each
+ * occurrence in range under the task's number.
  */
 public class TaskActions {
-    private final ArrayList<Task> tasks;
+    private final TaskStore tasks;
     private final Storage storage;
     private final String lineSep;
-    private boolean loaded = false;
+    private final OutputSink out;
+    private final KeywordIndex keywordIndex;
+    private final TimeIndex timeIndex;
+    private final SearchIndex searchIndex;
+    private final ReadWriteLock lock;
+    private final LoadState state;
+    private final PositionalView view;
+    private final UndoLog history;
+    private final Metrics metrics;
+    private static final int BULK_SAMPLE = 10;
+    private static final int DEFAULT_SEARCH_RESULTS = 10;
+    private static final int TASK_OVERHEAD_BYTES = 96;
+    private static final CommandParser ADD_PARSER = CommandParser.forBatch();
     private final String NEWLINE = System.lineSeparator();
     private final String HELP_MESSAGE = NEWLINE + "Type help to see the full list of commands." + NEWLINE;
 
     /**
      * Constructs a new TaskActions facade.
      *
-     * @param tasks   the backing in-memory task list managed by this instance
+     * @param tasks   the backing in-memory task store managed by this instance
      * @param storage the storage component used to persist tasks
      * @param lineSep the UI separator used for consistent console output
+     * @param out     destination for all user-facing output
      */
-    public TaskActions(ArrayList<Task> tasks, Storage storage, String lineSep) {
+    public TaskActions(TaskStore tasks, Storage storage, String lineSep, OutputSink out) {
         this.tasks = tasks;
         this.storage = storage;
         this.lineSep = lineSep;
+        this.out = out;
+        this.keywordIndex = new KeywordIndex();
+        this.timeIndex = new TimeIndex();
+        this.searchIndex = new SearchIndex();
+        this.lock = new ReentrantReadWriteLock();
+        this.state = new LoadState();
+        this.view = new PositionalView();
+        this.history = newHistory();
+        this.metrics = new Metrics(storage.getStats(), tasks::size);
+    }
+
+    /**
+     * Creates a view for one more session (e.g. a server connection) that shares
+     * this instance's tasks, indexes, storage and lock but prints to its own sink.
+     */
+    private TaskActions(TaskActions shared, OutputSink out) {
+        this.tasks = shared.tasks;
+        this.storage = shared.storage;
+        this.lineSep = shared.lineSep;
+        this.out = out;
+        this.keywordIndex = shared.keywordIndex;
+        this.timeIndex = shared.timeIndex;
+        this.searchIndex = shared.searchIndex;
+        this.lock = shared.lock;
+        this.state = shared.state;
+        this.view = new PositionalView();
+        this.history = newHistory();
+        this.metrics = shared.metrics;
+    }
+
+    private static UndoLog newHistory() {
+        return new UndoLog(Integer.getInteger("chattpg.undo.limit", UndoLog.DEFAULT_LIMIT));
+    }
+
+    /**
+     * Returns task operations for another concurrent session over the same task
+     * list. Reads ({@code list}, {@code find}, date queries) from all sessions run
+     * in parallel under a shared read lock; mutations take the write lock, so they
+     * are applied and journaled one at a time in a single global order.
+     *
+     * @param sessionOut destination for the session's output
+     * @return task operations printing to {@code sessionOut}
+     */
+    public TaskActions forSession(OutputSink sessionOut) {
+        return new TaskActions(this, sessionOut);
     }
 
     /**
      * Loads tasks from storage into the in-memory list on the first call.
      * Subsequent calls are idempotent and will not reload (avoiding duplication).
+     * With a {@link LazyTaskStore} the task file is memory-mapped instead of read.
      * Always prints the current number of tasks after ensuring the list is loaded.
      */
     public void loadFromFile() {
-        if (!loaded) {
-            tasks.clear();
-            tasks.addAll(storage.load());
-            System.out.printf("Loaded %d tasks from file.%n", tasks.size());
-            loaded = true;
+        lock.writeLock().lock();
+        try {
+            if (!state.loaded) {
+                view.clear();
+                int replayed = -1;
+                if (tasks instanceof LazyTaskStore lazy) {
+                    // Lazy mode: nothing is decoded until shown; indexes are built on first search.
+                    state.indexed = false;
+                    replayed = storage.loadMapped(mapped -> {
+                        lazy.attach(mapped);
+                        return view;
+                    }, out);
+                    if (replayed > 0) {
+                        out.printf("Replayed %d journal records.%n", replayed);
+                    }
+                }
+                if (replayed < 0) {
+                    state.indexed = true;
+                    for (Task task : storage.load(out)) {
+                        addIndexed(task);
+                    }
+                }
+                out.printf("Loaded %d tasks from file.%n", tasks.size());
+                state.loaded = true;
+            }
+            printNumberOfTasks();
+        } finally {
+            lock.writeLock().unlock();
         }
-        printNumberOfTasks();
     }
 
     /**
-     * Persists the current in-memory task list to storage.
+     * Persists the current in-memory task list to storage as a full snapshot.
+     * Individual mutations are recorded incrementally through the storage journal.
      */
     public void saveToFile() {
-        storage.save(tasks);
+        lock.writeLock().lock();
+        try {
+            storage.beginWrite(view, out);
+            try {
+                storage.save(tasks.asList(), out);
+            } finally {
+                storage.endWrite(out);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Defers persistence of subsequent mutations until {@link #endBatch()}.
+     */
+    public void beginBatch() {
+        lock.writeLock().lock();
+        try {
+            storage.beginBatch(view, out);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Persists every mutation made since {@link #beginBatch()} with one write.
+     */
+    public void endBatch() {
+        lock.writeLock().lock();
+        try {
+            storage.endBatch(tasks.asList(), out);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Commits journal records still buffered by storage (group commit).
+     */
+    public void flushToFile() {
+        lock.writeLock().lock();
+        try {
+            storage.flush(out);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes pending writes and releases storage resources before shutdown.
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            storage.close(out);
+            metrics.close(out);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records how long a command took, for the {@code stats} report.
+     *
+     * @param command the command name (see {@link CommandType#getName()})
+     * @param nanos   time from reading the command to finishing it
+     */
+    public void recordCommand(String command, long nanos) {
+        metrics.recordCommand(command, nanos);
+    }
+
+    /**
+     * @return the sink this instance prints to
+     */
+    public OutputSink getOutput() {
+        return out;
+    }
+
+    /**
+     * @return number of tasks in the list
+     */
+    public int size() {
+        return tasks.size();
+    }
+
+    /**
+     * Roughly estimates the heap taken by the list: each task is counted as
+     * {@value #TASK_OVERHEAD_BYTES} bytes of objects and index entries plus the
+     * average size of a task line in its file (64 bytes until one was read).
+     *
+     * @return the estimate in bytes
+     */
+    public long estimatedBytes() {
+        StorageStats io = storage.getStats();
+        long lineBytes = io.getRecordsParsed() == 0 ? 64 : io.getBytesRead() / io.getRecordsParsed();
+        return (long) tasks.size() * (TASK_OVERHEAD_BYTES + lineBytes);
+    }
+
+    /**
+     * Starts the JMX and file exports of the metrics selected by system
+     * properties (see {@link Metrics}).
+     */
+    public void exportMetrics() {
+        metrics.export(out);
+    }
+
+    /**
+     * Prints the task count, storage I/O counters and per-command latency
+     * percentiles collected since startup, across all sessions.
+     */
+    public void printStats() {
+        out.println("Here are the statistics since startup:");
+        for (String line : metrics.report()) {
+            out.println("\t" + line);
+        }
+        metrics.reportBackgroundError(out);
+        out.println(lineSep);
     }
 
     /**
@@ -63,16 +305,54 @@ public class TaskActions {
      * prints a friendly message instead.
      */
     public void listTasks() {
-        if (tasks.isEmpty()) {
-            System.out.println("You have no tasks in your list.");
-            System.out.println(lineSep);
-            return;
+        refreshIfChanged();
+        lock.readLock().lock();
+        try {
+            if (tasks.size() == 0) {
+                out.println("You have no tasks in your list.");
+                out.println(lineSep);
+                return;
+            }
+            out.println("Here are the tasks in your list, \"X\" means it is marked done: ");
+            int number = 1;
+            for (Task task : tasks.asList()) {
+                printNumbered(number++, task);
+            }
+            out.println(lineSep);
+        } finally {
+            lock.readLock().unlock();
         }
-        System.out.println("Here are the tasks in your list, \"X\" means it is marked done: ");
-        for (int i = 0; i < tasks.size(); i++) {
-            System.out.println("\t" + (i + 1) + ". " + tasks.get(i).toString());
+    }
+
+    /**
+     * Prints one page of the task list: tasks {@code from} to {@code to}
+     * (1-based, inclusive). The end is clamped to the list size, so
+     * {@code list 1000-2000} on a 1500-task list shows tasks 1000 to 1500.
+     *
+     * @param from first task number to show
+     * @param to   last task number to show
+     * @throws TaskIndexOutOfBoundsException if {@code from} is not a valid task number
+     * @throws InvalidCommandException       if {@code to} is before {@code from}
+     */
+    public void listTasks(int from, int to) throws TaskIndexOutOfBoundsException, InvalidCommandException {
+        refreshIfChanged();
+        lock.readLock().lock();
+        try {
+            getIdByOneBasedIndex(from);
+            if (to < from) {
+                throw new InvalidCommandException("Page end must not be before its start." + NEWLINE + lineSep);
+            }
+            int last = Math.min(to, tasks.size());
+            out.printf("Here are tasks %d to %d of %d, \"X\" means it is marked done: %n", from, last, tasks.size());
+            List<Task> page = tasks.asList().subList(from - 1, last);
+            int number = from;
+            for (Task task : page) {
+                printNumbered(number++, task);
+            }
+            out.println(lineSep);
+        } finally {
+            lock.readLock().unlock();
         }
-        System.out.println(lineSep);
     }
 
     /**
@@ -89,42 +369,92 @@ public class TaskActions {
      * @throws InvalidCommandException if the input is malformed or unknown
      */
     public void addTask(String description) throws InvalidCommandException {
-        if (description.startsWith("deadline")) {
-            description = description.substring("deadline".length()).trim();
-            String[] parts = description.split(" /by ", 2);
-            if (parts.length < 2) {
-                throw new InvalidCommandException("deadline format: deadline <desc> /by <when>" + NEWLINE + lineSep + HELP_MESSAGE + lineSep);
-            }
-            tasks.add(new Deadline(parts[0].trim(), parts[1].trim()));
-        } else if (description.startsWith("event")) {
-            description = description.substring("event".length()).trim();
-            int fromPos = description.indexOf(" /from ");
-            int toPos = description.indexOf(" /to ");
-            if (fromPos == -1 || toPos == -1 || fromPos > toPos) {
-                throw new InvalidCommandException("event format: event <desc> /from <start> /to <end>" + NEWLINE + lineSep + HELP_MESSAGE + lineSep);
-            }
-            String desc = description.substring(0, fromPos).trim();
-            String start = description.substring(fromPos + 7, toPos).trim();
-            String end = description.substring(toPos + 5).trim();
+        addTask(ADD_PARSER.parse(description));
+    }
+
+    /**
+     * Appends the task described by an already tokenized add command
+     * ({@code todo}, {@code deadline} or {@code event}). A deadline or event
+     * ending in {@code /every <rule>} (e.g. {@code /every 2 weeks}) repeats
+     * from its dates on.
+     *
+     * @param command the tokenized command
+     * @throws InvalidCommandException if the command is malformed or does not add a task
+     */
+    public void addTask(Command command) throws InvalidCommandException {
+        String line = command.getLine();
+        Task task;
+        switch (command.getType()) {
+        case DEADLINE: {
+            int by = command.byMarker();
+            int every = command.everyMarker();
+            if (by < 0 || (every >= 0 && every < by)) {
+                throw new InvalidCommandException("deadline format: deadline <desc> /by <when> [/every <rule>]" + NEWLINE + lineSep + HELP_MESSAGE + lineSep);
+            }
+            String desc = command.text(command.argumentStart(), by);
+            String when = command.text(by + " /by ".length(), every < 0 ? line.length() : every);
+            task = every < 0 ? new Deadline(desc, when)
+                    : repeating(command, every, occurrences -> new RecurringDeadline(desc, when, occurrences));
+            break;
+        }
+        case EVENT: {
+            int fromPos = command.fromMarker();
+            int toPos = command.toMarker();
+            int every = command.everyMarker();
+            if (fromPos == -1 || toPos == -1 || fromPos > toPos || (every >= 0 && every < toPos)) {
+                throw new InvalidCommandException("event format: event <desc> /from <start> /to <end> [/every <rule>]" + NEWLINE + lineSep + HELP_MESSAGE + lineSep);
+            }
+            String desc = command.text(command.argumentStart(), fromPos);
+            String start = command.text(fromPos + " /from ".length(), toPos);
+            String end = command.text(toPos + " /to ".length(), every < 0 ? line.length() : every);
             if (desc.isEmpty() || start.isEmpty() || end.isEmpty()) {
                 throw new InvalidCommandException("event parts must not be empty." + NEWLINE + lineSep + HELP_MESSAGE + lineSep);
             }
-            tasks.add(new Event(desc, start, end));
-        } else if (description.startsWith("todo")) {
-            String desc = description.substring("todo".length()).trim();
-            if (description.charAt(4) != ' ') {
-                throw new InvalidCommandException("todo format: todo <desc>" + NEWLINE + lineSep + HELP_MESSAGE + lineSep);
-            } else if (desc.isEmpty()) {
+            task = every < 0 ? new Event(desc, start, end)
+                    : repeating(command, every, occurrences -> new RecurringEvent(desc, start, end, occurrences));
+            break;
+        }
+        case TODO: {
+            String desc = command.getArgument();
+            if (desc.isEmpty()) {
                 throw new InvalidCommandException("todo requires a description." + NEWLINE + lineSep + HELP_MESSAGE + lineSep);
-            } else if (desc.contains("/by") || desc.contains("/from") || desc.contains("/to")) {
+            } else if (command.hasKeyword()) {
                 throw new InvalidCommandException("todo description must not contain /by, /from, or /to." + NEWLINE + "todo format: todo <desc>" + NEWLINE + lineSep + HELP_MESSAGE + lineSep);
             }
-            tasks.add(new Todo(desc));
-        } else {
+            task = new Todo(desc);
+            break;
+        }
+        default:
             throw new InvalidCommandException("Unknown command. Type help for available commands." + NEWLINE + lineSep + HELP_MESSAGE + lineSep);
         }
-        taskAdded();
-        saveToFile();
+        lock.writeLock().lock();
+        try {
+            storage.beginWrite(view, out);
+            int id = addIndexed(task);
+            history.record(new UndoLog.Entry(UndoLog.Kind.ADD, id, task), state.generation);
+            taskAdded(task);
+            storage.recordAdd(tasks.asList(), task, out);
+        } finally {
+            storage.endWrite(out);
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the rule after {@code /every} and builds a repeating task with it.
+     *
+     * @param every  position of the {@code /every} marker
+     * @param create builds the task from its repeat rule
+     * @throws InvalidCommandException if the rule or the task's dates are not valid
+     */
+    private Task repeating(Command command, int every, Function<Occurrences, Task> create)
+            throws InvalidCommandException {
+        String rule = command.text(every + " /every ".length(), command.getLine().length());
+        try {
+            return create.apply(new Occurrences(Recurrence.parse(rule)));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCommandException(e.getMessage() + "." + NEWLINE + lineSep + HELP_MESSAGE + lineSep);
+        }
     }
 
     /**
@@ -134,15 +464,23 @@ public class TaskActions {
      * @throws TaskIndexOutOfBoundsException if the index is invalid
      */
     public void deleteTask(int taskNumber) throws TaskIndexOutOfBoundsException {
-        Task task = getTaskByOneBasedIndex(taskNumber);
-        int taskIndex = taskNumber - 1;
-        System.out.printf("Noted. I've removed task number %d. The following is the name of the task: \n", taskNumber);
-        System.out.println(lineSep);
-        System.out.println("  " + task);
-        tasks.remove(taskIndex);
-        System.out.println(lineSep);
-        printNumberOfTasks();
-        saveToFile();
+        lock.writeLock().lock();
+        try {
+            storage.beginWrite(view, out);
+            int id = getIdByOneBasedIndex(taskNumber);
+            int taskIndex = taskNumber - 1;
+            Task task = removeIndexed(id);
+            history.record(new UndoLog.Entry(UndoLog.Kind.DELETE, id, task), state.generation);
+            out.printf("Noted. I've removed task number %d. The following is the name of the task: \n", taskNumber);
+            out.println(lineSep);
+            out.println("  " + task);
+            out.println(lineSep);
+            printNumberOfTasks();
+            storage.recordDelete(tasks.asList(), taskIndex, out);
+        } finally {
+            storage.endWrite(out);
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -153,8 +491,7 @@ public class TaskActions {
      * @throws IllegalStateException         if the state transition is not allowed
      */
     public void markDone(int taskNumber) throws TaskIndexOutOfBoundsException, IllegalStateException {
-        Task task = getTaskByOneBasedIndex(taskNumber);
-        changeTaskState(task, true, "Nice! I've marked this task as done:");
+        changeTaskState(taskNumber, true, "Nice! I've marked this task as done:");
     }
 
     /**
@@ -165,45 +502,594 @@ public class TaskActions {
      * @throws IllegalStateException         if the state transition is not allowed
      */
     public void markUndone(int taskNumber) throws TaskIndexOutOfBoundsException, IllegalStateException {
-        Task task = getTaskByOneBasedIndex(taskNumber);
-        changeTaskState(task, false, "Nice! I've marked this task as undone:");
+        changeTaskState(taskNumber, false, "Nice! I've marked this task as undone:");
+    }
+
+    /**
+     * Deletes every task in a selection in one pass. A selection is one of:
+     * <ul>
+     *   <li>task numbers and ranges, e.g. {@code 7}, {@code 10-500} or {@code 3,7,9-12}</li>
+     *   <li>{@code done} or {@code undone}: every task in that state</li>
+     *   <li>{@code find <keywords>}: every task the query matches (see {@link #findTask})</li>
+     * </ul>
+     * A single task number behaves exactly like {@link #deleteTask(int)}.
+     *
+     * @param selection the tasks to delete
+     * @throws TaskIndexOutOfBoundsException if a task number is invalid (nothing is deleted)
+     * @throws InvalidCommandException       if the selection is malformed
+     * @throws NumberFormatException         if a task number is not a number
+     */
+    public void deleteTasks(String selection) throws TaskIndexOutOfBoundsException, InvalidCommandException {
+        String trimmed = selection.trim();
+        if (isTaskNumber(trimmed)) {
+            deleteTask(Integer.parseInt(trimmed));
+            return;
+        }
+        if (trimmed.startsWith("find ")) {
+            ensureIndexed();
+        }
+        lock.writeLock().lock();
+        try {
+            storage.beginWrite(view, out);
+            int[] positions = select(trimmed);
+            if (positions.length == 0) {
+                out.println("No tasks matched.");
+                out.println(lineSep);
+                return;
+            }
+            int[] ids = new int[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                ids[i] = tasks.idAt(positions[i]);
+            }
+            Task[] removed = new Task[ids.length];
+            UndoLog.Entry[] parts = new UndoLog.Entry[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                removed[i] = removeIndexed(ids[i]);
+                parts[i] = new UndoLog.Entry(UndoLog.Kind.DELETE, ids[i], removed[i]);
+            }
+            history.record(new UndoLog.Entry(UndoLog.Kind.DELETE, parts), state.generation);
+            out.printf("Noted. I've removed %s:%n", countOf(removed.length));
+            out.println(lineSep);
+            printAffected(removed, null, removed.length);
+            out.println(lineSep);
+            printNumberOfTasks();
+            storage.recordDelete(tasks.asList(), positions, out);
+        } finally {
+            storage.endWrite(out);
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks every task in a selection as done or undone in one pass; see
+     * {@link #deleteTasks(String)} for the selection syntax. Tasks already in
+     * the target state are left alone and counted. A single task number behaves
+     * exactly like {@link #markDone(int)} or {@link #markUndone(int)}.
+     *
+     * @param selection the tasks to change
+     * @param done      the new state
+     * @throws TaskIndexOutOfBoundsException if a task number is invalid (nothing is changed)
+     * @throws InvalidCommandException       if the selection is malformed
+     * @throws NumberFormatException         if a task number is not a number
+     * @throws IllegalStateException         if a single task is already in that state
+     */
+    public void markTasks(String selection, boolean done) throws TaskIndexOutOfBoundsException,
+            InvalidCommandException {
+        String trimmed = selection.trim();
+        if (isTaskNumber(trimmed)) {
+            if (done) {
+                markDone(Integer.parseInt(trimmed));
+            } else {
+                markUndone(Integer.parseInt(trimmed));
+            }
+            return;
+        }
+        if (trimmed.startsWith("find ")) {
+            ensureIndexed();
+        }
+        String target = done ? "done" : "undone";
+        lock.writeLock().lock();
+        try {
+            storage.beginWrite(view, out);
+            int[] positions = select(trimmed);
+            if (positions.length == 0) {
+                out.println("No tasks matched.");
+                out.println(lineSep);
+                return;
+            }
+            int changed = 0;
+            for (int position : positions) {
+                if (canMark(view.get(position), done)) {
+                    positions[changed++] = position;
+                }
+            }
+            int unchanged = positions.length - changed;
+            if (changed == 0) {
+                out.printf("Every selected task is already marked as %s.%n", target);
+                out.println(lineSep);
+                return;
+            }
+            positions = Arrays.copyOf(positions, changed);
+            Task[] marked = new Task[changed];
+            UndoLog.Entry[] parts = new UndoLog.Entry[changed];
+            for (int i = 0; i < changed; i++) {
+                int id = tasks.idAt(positions[i]);
+                tasks.setDone(id, done);
+                marked[i] = tasks.get(id);
+                parts[i] = new UndoLog.Entry(done ? UndoLog.Kind.MARK : UndoLog.Kind.UNMARK, id, null);
+            }
+            history.record(new UndoLog.Entry(parts[0].kind, parts), state.generation);
+            out.printf("Nice! I've marked %s as %s:%n", countOf(changed), target);
+            out.println(lineSep);
+            printAffected(marked, positions, changed);
+            if (unchanged > 0) {
+                out.printf("(%d of the selected tasks were already marked as %s.)%n", unchanged, target);
+            }
+            storage.recordStateChange(tasks.asList(), positions, done, out);
+        } finally {
+            storage.endWrite(out);
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reverses the most recent change made through this session that has not
+     * been undone yet (add, delete, mark or unmark), and persists the reversal
+     * like any other change. A deleted task returns to its original place.
+     */
+    public void undo() {
+        step(true);
+    }
+
+    /**
+     * Reapplies the most recently undone change, unless a new change was made since.
+     */
+    public void redo() {
+        step(false);
     }
 
     /**
-     * Finds and prints tasks whose description contains the given single-word
-     * keyword (case-insensitive). Multi-word inputs (containing whitespace)
-     * are rejected with an {@link InvalidCommandException}.
+     * Undoes or redoes one history entry under the write lock. If the task
+     * involved was changed by someone else in the meantime, the entry is
+     * dropped with a message instead.
+     */
+    private void step(boolean undo) {
+        lock.writeLock().lock();
+        try {
+            storage.beginWrite(view, out);
+            UndoLog.Entry entry = undo ? history.peekUndo(state.generation) : history.peekRedo(state.generation);
+            if (entry == null) {
+                out.println(undo ? "There is nothing to undo." : "There is nothing to redo.");
+                out.println(lineSep);
+                return;
+            }
+            UndoLog.Kind kind = undo ? inverse(entry.kind) : entry.kind;
+            String prefix = undo ? "Undone." : "Redone.";
+            UndoLog.Entry moved;
+            try {
+                moved = entry.parts == null
+                        ? new UndoLog.Entry(entry.kind, entry.id, perform(kind, entry.id, entry.task, prefix))
+                        : performAll(entry.kind, kind, entry.parts, prefix);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                if (undo) {
+                    history.dropUndo();
+                } else {
+                    history.dropRedo();
+                }
+                out.printf("That change can no longer be %s: the task was changed in the meantime.%n",
+                        undo ? "undone" : "redone");
+                out.println(lineSep);
+                return;
+            }
+            if (undo) {
+                history.undone(moved);
+            } else {
+                history.redone(moved);
+            }
+        } finally {
+            storage.endWrite(out);
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static UndoLog.Kind inverse(UndoLog.Kind kind) {
+        switch (kind) {
+        case ADD:
+            return UndoLog.Kind.DELETE;
+        case DELETE:
+            return UndoLog.Kind.ADD;
+        case MARK:
+            return UndoLog.Kind.UNMARK;
+        default:
+            return UndoLog.Kind.MARK;
+        }
+    }
+
+    /**
+     * Applies one change by store ID, prints it and records it in storage.
+     * {@code ADD} puts the task back under its old ID, i.e. at its old place.
      *
-     * @param keyword a single token to match within task descriptions
-     * @throws InvalidCommandException if the keyword is empty or contains whitespace
+     * @return the added or removed task, or null for done-flag changes
+     * @throws IllegalArgumentException if the ID is not in the expected state
+     * @throws IllegalStateException    if the done flag already has the target value
      */
-    public void findTask(String keyword) throws InvalidCommandException{
-            String trimmed = keyword == null ? "" : keyword.trim();
-        // Must be exactly one non-whitespace token
-        if (!trimmed.matches("\\S+")) {
-            throw new InvalidCommandException("Keyword must be a single word." + NEWLINE + lineSep);
+    private Task perform(UndoLog.Kind kind, int id, Task task, String prefix) {
+        switch (kind) {
+        case ADD: {
+            restoreIndexed(id, task);
+            int position = tasks.positionOf(id);
+            out.printf("%s I've put this task back as number %d:%n", prefix, position + 1);
+            out.println(lineSep);
+            out.println("\t" + task);
+            out.println(lineSep);
+            printNumberOfTasks();
+            if (position == tasks.size() - 1) {
+                storage.recordAdd(tasks.asList(), task, out);
+            } else {
+                storage.recordInsert(tasks.asList(), position, task, out);
+            }
+            return task;
+        }
+        case DELETE: {
+            int position = tasks.positionOf(id);
+            Task removed = removeIndexed(id);
+            out.printf("%s I've removed task number %d:%n", prefix, position + 1);
+            out.println(lineSep);
+            out.println("\t" + removed);
+            out.println(lineSep);
+            printNumberOfTasks();
+            storage.recordDelete(tasks.asList(), position, out);
+            return removed;
+        }
+        default: {
+            boolean done = kind == UndoLog.Kind.MARK;
+            tasks.setDone(id, done);
+            int position = tasks.positionOf(id);
+            out.printf("%s I've marked this task as %s:%n", prefix, done ? "done" : "undone");
+            out.println(lineSep);
+            out.println("\t" + tasks.get(id));
+            storage.recordStateChange(tasks.asList(), position, done, out);
+            return null;
         }
-        System.out.println("Here are the matching tasks in your list: ");
+        }
+    }
+
+    /**
+     * Applies every part of a group entry, prints a summary and records the
+     * change in storage: one record for deletions and done-flag changes, and
+     * one insert per restored task (in ascending ID order, so each refers to
+     * the list as rebuilt so far). Parts whose task was changed by someone
+     * else in the meantime are skipped and counted.
+     *
+     * @param recorded the kind of change the group entry records
+     * @param kind     the change to apply now ({@code recorded} or its inverse)
+     * @return the group entry that moves to the other history, holding the applied parts
+     * @throws IllegalStateException if no part could be applied
+     */
+    private UndoLog.Entry performAll(UndoLog.Kind recorded, UndoLog.Kind kind, UndoLog.Entry[] parts, String prefix) {
+        UndoLog.Entry[] applied = new UndoLog.Entry[parts.length];
+        Task[] affected = new Task[parts.length];
+        int[] positions = new int[parts.length];
         int count = 0;
-        for (int i = 0; i < tasks.size(); i++) {
-            if (tasks.get(i).getDescription().toLowerCase().contains(trimmed.toLowerCase())) {
-                System.out.println("\t" + (i + 1) + ". " + tasks.get(i).toString());
-                count++;
+        for (UndoLog.Entry part : parts) {
+            try {
+                Task task;
+                int position;
+                switch (kind) {
+                case ADD:
+                    restoreIndexed(part.id, part.task);
+                    task = part.task;
+                    position = tasks.positionOf(part.id);
+                    if (position == tasks.size() - 1) {
+                        storage.recordAdd(tasks.asList(), task, out);
+                    } else {
+                        storage.recordInsert(tasks.asList(), position, task, out);
+                    }
+                    break;
+                case DELETE:
+                    // Position before any removal: the record lists positions in the list before it.
+                    position = tasks.positionOf(part.id);
+                    task = tasks.get(part.id);
+                    break;
+                default:
+                    tasks.setDone(part.id, kind == UndoLog.Kind.MARK);
+                    task = tasks.get(part.id);
+                    position = tasks.positionOf(part.id);
+                    break;
+                }
+                affected[count] = task;
+                positions[count] = position;
+                applied[count++] = new UndoLog.Entry(recorded, part.id, task);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                // changed by someone else; counted below
             }
         }
         if (count == 0) {
-            System.out.println("\tNo matching tasks found.");
+            throw new IllegalStateException("no part of the change can be applied");
+        }
+        positions = Arrays.copyOf(positions, count);
+        switch (kind) {
+        case ADD:
+            out.printf("%s I've put %s back:%n", prefix, countOf(count));
+            break;
+        case DELETE:
+            for (int i = 0; i < count; i++) {
+                removeIndexed(applied[i].id);
+            }
+            storage.recordDelete(tasks.asList(), positions, out);
+            out.printf("%s I've removed %s:%n", prefix, countOf(count));
+            break;
+        default:
+            storage.recordStateChange(tasks.asList(), positions, kind == UndoLog.Kind.MARK, out);
+            out.printf("%s I've marked %s as %s:%n", prefix, countOf(count),
+                    kind == UndoLog.Kind.MARK ? "done" : "undone");
+            break;
+        }
+        out.println(lineSep);
+        printAffected(affected, kind == UndoLog.Kind.DELETE ? null : positions, count);
+        if (count < parts.length) {
+            out.printf("(%d of them were changed in the meantime and were left alone.)%n", parts.length - count);
+        }
+        out.println(lineSep);
+        if (kind == UndoLog.Kind.ADD || kind == UndoLog.Kind.DELETE) {
+            printNumberOfTasks();
+        }
+        return new UndoLog.Entry(recorded, Arrays.copyOf(applied, count));
+    }
+
+    /**
+     * Finds and prints tasks whose description matches the query, using the
+     * inverted keyword index. Whitespace-separated terms must all match (AND),
+     * {@code OR} separates alternatives, and a trailing {@code *} matches any
+     * word starting with the term. Matching is case-insensitive and on whole words.
+     * If nothing matches, the closest tasks by {@link #searchTasks(String)} are
+     * suggested instead, so a misspelt word still finds its task.
+     *
+     * @param query the search query
+     * @throws InvalidCommandException if the query is empty
+     */
+    public void findTask(String query) throws InvalidCommandException {
+        String trimmed = query == null ? "" : query.trim();
+        if (trimmed.isEmpty()) {
+            throw new InvalidCommandException("Please enter at least one keyword." + NEWLINE + lineSep);
+        }
+        refreshIfChanged();
+        ensureIndexed();
+        lock.readLock().lock();
+        try {
+            Set<Integer> matches = keywordIndex.search(trimmed);
+            if (!matches.isEmpty()) {
+                out.println("Here are the matching tasks in your list: ");
+                // IDs increase in list order, so sorting them yields list order.
+                int[] ids = new int[matches.size()];
+                int count = 0;
+                for (int id : matches) {
+                    ids[count++] = id;
+                }
+                Arrays.sort(ids);
+                for (int id : ids) {
+                    printNumbered(tasks.positionOf(id) + 1, tasks.get(id));
+                }
+                out.println(lineSep);
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        printRanked(trimmed, "No exact matches. Here are the closest tasks in your list: ");
+    }
+
+    /**
+     * Prints the tasks most relevant to the query words, best first: the top
+     * {@code -Dchattpg.search.results} (10 by default) by {@link SearchIndex}.
+     * Words may be misspelt or abbreviated, and a task need not contain all of
+     * them. Dates of deadlines and events are searched too.
+     *
+     * @param query the words to search for
+     * @throws InvalidCommandException if the query has no words
+     */
+    public void searchTasks(String query) throws InvalidCommandException {
+        String trimmed = query == null ? "" : query.trim();
+        if (KeywordIndex.tokenize(trimmed).isEmpty()) {
+            throw new InvalidCommandException("Please enter at least one word to search for." + NEWLINE + lineSep);
+        }
+        refreshIfChanged();
+        printRanked(trimmed, "Here are the most relevant tasks in your list: ");
+    }
+
+    /**
+     * Runs a ranked search under the read lock and prints the hits.
+     */
+    private void printRanked(String query, String header) {
+        ensureSearchIndexed();
+        int limit = Math.max(1, Integer.getInteger("chattpg.search.results", DEFAULT_SEARCH_RESULTS));
+        lock.readLock().lock();
+        try {
+            SearchIndex.Result result = searchIndex.search(query, limit);
+            out.println(header);
+            if (result.getHits().isEmpty()) {
+                out.println("\tNo matching tasks found.");
+            }
+            for (SearchIndex.Hit hit : result.getHits()) {
+                printNumbered(tasks.positionOf(hit.getId()) + 1, tasks.get(hit.getId()));
+            }
+            if (result.getMatchCount() > result.getHits().size()) {
+                out.printf("\t(best %d of %d related tasks)%n", result.getHits().size(), result.getMatchCount());
+            }
+            out.println(lineSep);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Prints deadlines and events dated on the given day, in time order.
+     *
+     * @param date a date such as {@code 2025-10-01} or {@code 1/10/2025}
+     * @throws InvalidCommandException if the date is not recognised
+     */
+    public void dueOn(String date) throws InvalidCommandException {
+        LocalDate day = DateTimeParser.parseDate(date);
+        if (day == null) {
+            throw new InvalidCommandException("Please enter a date like 2025-10-01." + NEWLINE + lineSep);
+        }
+        printDated(n -> "Here are the tasks due on " + day + ":", Integer.MAX_VALUE,
+                () -> timeIndex.between(day.atStartOfDay(), day.plusDays(1).atStartOfDay()));
+    }
+
+    /**
+     * Prints the next {@code count} deadlines and events from now on, in time order.
+     * Recurring tasks never run out of occurrences, so at most the number of
+     * tasks plus {@link TimeIndex#MAX_OCCURRENCES_PER_SERIES} are shown, and
+     * at most that many occurrences of each recurring task; a note says so
+     * when fewer than {@code count} are shown for that reason.
+     *
+     * @param count maximum number of tasks to show
+     * @throws InvalidCommandException if count is not positive
+     */
+    public void upcoming(int count) throws InvalidCommandException {
+        if (count < 1) {
+            throw new InvalidCommandException("Please enter a positive number of tasks." + NEWLINE + lineSep);
+        }
+        printDated(n -> "Here are your next " + n + " dated tasks:", count, () -> {
+            int limit = (int) Math.min(count, (long) tasks.size() + TimeIndex.MAX_OCCURRENCES_PER_SERIES);
+            return timeIndex.upcoming(LocalDateTime.now(), limit);
+        });
+    }
+
+    /**
+     * Prints deadlines and events dated within a range, in time order. The
+     * range is written as {@code <a> <b>} or {@code <a> and <b>}; a date-only
+     * end includes that whole day.
+     *
+     * @param range the two bounds
+     * @throws InvalidCommandException if either bound is not a recognised date
+     */
+    public void between(String range) throws InvalidCommandException {
+        String[] bounds = range.contains(" and ") ? range.split(" and ", 2) : range.trim().split("\\s+");
+        LocalDateTime from = bounds.length == 2 ? DateTimeParser.parse(bounds[0]) : null;
+        LocalDateTime to = bounds.length == 2 ? DateTimeParser.parseRangeEnd(bounds[1]) : null;
+        if (from == null || to == null) {
+            throw new InvalidCommandException("between format: between <date> <date> (or <date time> and <date time>)"
+                    + NEWLINE + lineSep);
+        }
+        printDated(n -> "Here are the tasks between " + bounds[0].trim() + " and " + bounds[1].trim() + ":",
+                Integer.MAX_VALUE, () -> timeIndex.between(from, to));
+    }
+
+    /**
+     * Builds the keyword and time indexes if loading skipped them (lazy mode).
+     * This decodes every task once; afterwards the indexes are kept up to date.
+     * Must be called without holding the read lock.
+     */
+    private void ensureIndexed() {
+        if (state.indexed) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!state.indexed) {
+                tasks.forEach((id, task) -> {
+                    keywordIndex.add(id, task.getDescription());
+                    timeIndex.add(id, task);
+                });
+                state.indexed = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the ranked search index on the first ranked search, so lists that
+     * are never searched this way do not pay for it. Afterwards it is kept up
+     * to date like the others. Must be called without holding the read lock.
+     */
+    private void ensureSearchIndexed() {
+        if (state.searchIndexed) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!state.searchIndexed) {
+                tasks.forEach(searchIndex::add);
+                state.searchIndexed = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
-        System.out.println(lineSep);
+    }
+
+    /**
+     * Applies changes made by other processes sharing the task file before a
+     * query, so it never shows a stale list. Costs one small file read when
+     * nothing changed. Must be called without holding the read lock.
+     */
+    private void refreshIfChanged() {
+        if (!storage.hasExternalChanges()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            try {
+                storage.beginWrite(view, out);
+            } finally {
+                storage.endWrite(out);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a time-index query under the read lock and prints the matching
+     * tasks. An occurrence of a recurring task is shown on its own, numbered
+     * like the task. If the query returned fewer than {@code requested}
+     * matches but more existed, a note says how many are shown.
+     *
+     * @param header builds the first line from the number of matches
+     */
+    private void printDated(IntFunction<String> header, int requested, Supplier<TimeIndex.Result> query) {
+        refreshIfChanged();
+        ensureIndexed();
+        lock.readLock().lock();
+        try {
+            TimeIndex.Result result = query.get();
+            List<TimeIndex.Dated> matches = result.getMatches();
+            out.println(header.apply(matches.size()));
+            if (matches.isEmpty()) {
+                out.println("\tNo matching tasks found.");
+            }
+            for (TimeIndex.Dated match : matches) {
+                Task task = tasks.get(match.getId());
+                if (match.getOccurrence() != TimeIndex.Dated.ONE_OFF) {
+                    task = ((Recurring) task).occurrence(match.getOccurrence());
+                }
+                printNumbered(tasks.positionOf(match.getId()) + 1, task);
+            }
+            if (result.isTruncated() && matches.size() < requested) {
+                out.printf("\t(showing the first %d)%n", matches.size());
+            }
+            out.println(lineSep);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Prints a task as a tab-indented, numbered list entry.
+     */
+    private void printNumbered(int number, Task task) {
+        out.print('\t').print(number).print(". ").print(task.toString()).newLine();
     }
 
     /**
      * Prints the confirmation for the most recently added task and the count.
      */
-    private void taskAdded() {
-        System.out.println("\tGot it. I've added this task: ");
-        System.out.println("\t  " + tasks.get(tasks.size() - 1).toString());
-        System.out.println(lineSep);
+    private void taskAdded(Task task) {
+        out.println("\tGot it. I've added this task: ");
+        out.println("\t  " + task.toString());
+        out.println(lineSep);
         printNumberOfTasks();
     }
 
@@ -212,44 +1098,332 @@ public class TaskActions {
      */
     private void printNumberOfTasks() {
         if (tasks.size() == 1) {
-            System.out.println("Now you have 1 task in the list.");
+            out.println("Now you have 1 task in the list.");
+        } else {
+            out.printf("Now you have %d tasks in the list.%n", tasks.size());
+        }
+        out.println(lineSep);
+    }
+
+    /**
+     * Prints up to {@link #BULK_SAMPLE} tasks affected by a bulk change, then
+     * how many more there are.
+     *
+     * @param affected  the tasks, in list order
+     * @param positions their 0-based positions to number them by, or null to leave them unnumbered
+     * @param count     number of entries in use
+     */
+    private void printAffected(Task[] affected, int[] positions, int count) {
+        int shown = Math.min(count, BULK_SAMPLE);
+        for (int i = 0; i < shown; i++) {
+            if (positions == null) {
+                out.println("\t" + affected[i]);
+            } else {
+                printNumbered(positions[i] + 1, affected[i]);
+            }
+        }
+        if (count > shown) {
+            out.printf("\t...and %d more%n", count - shown);
+        }
+    }
+
+    /**
+     * @return true if marking the task done (or undone) changes it; a recurring
+     *         task can always be marked, and unmarked while an occurrence is done
+     */
+    private static boolean canMark(Task task, boolean done) {
+        if (task instanceof Recurring recurring) {
+            return done || recurring.getOccurrences().hasDone();
+        }
+        return task.isDone() != done;
+    }
+
+    private static String countOf(int count) {
+        return count == 1 ? "1 task" : count + " tasks";
+    }
+
+    /**
+     * @return true if the text is a single (possibly negative) integer
+     */
+    private static boolean isTaskNumber(String text) {
+        int start = text.startsWith("-") ? 1 : 0;
+        if (text.length() == start) {
+            return false;
+        }
+        for (int i = start; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves a selection (see {@link #deleteTasks(String)}) against the
+     * current list. Every task number is checked before anything is returned,
+     * so an invalid selection never changes a task. Callers must hold the write lock.
+     *
+     * @return the selected 0-based positions in ascending order, without duplicates
+     */
+    private int[] select(String selection) throws TaskIndexOutOfBoundsException, InvalidCommandException {
+        BitSet selected = new BitSet(tasks.size());
+        if (selection.equals("done") || selection.equals("undone")) {
+            boolean done = selection.equals("done");
+            int[] position = {0};
+            tasks.forEach((id, task) -> {
+                if (task.isDone() == done) {
+                    selected.set(position[0]);
+                }
+                position[0]++;
+            });
+        } else if (selection.startsWith("find ")) {
+            String query = selection.substring("find ".length()).trim();
+            if (query.isEmpty()) {
+                throw new InvalidCommandException("Please enter at least one keyword." + NEWLINE + lineSep);
+            }
+            for (int id : keywordIndex.search(query)) {
+                selected.set(tasks.positionOf(id));
+            }
         } else {
-            System.out.printf("Now you have %d tasks in the list.%n", tasks.size());
+            for (String part : selection.split(",")) {
+                int dash = part.indexOf('-', 1);
+                int from = Integer.parseInt(dash < 0 ? part.trim() : part.substring(0, dash).trim());
+                int to = dash < 0 ? from : Integer.parseInt(part.substring(dash + 1).trim());
+                if (to < from) {
+                    throw new InvalidCommandException("Range end must not be before its start: " + part.trim()
+                            + NEWLINE + lineSep);
+                }
+                getIdByOneBasedIndex(from);
+                getIdByOneBasedIndex(to);
+                selected.set(from - 1, to);
+            }
         }
-        System.out.println(lineSep);
+        return selected.stream().toArray();
     }
 
     /**
-     * Returns the task for a 1-based index or throws if out of bounds.
+     * Returns the store ID for a 1-based index or throws if out of bounds.
      */
-    private Task getTaskByOneBasedIndex(int taskNumber) throws TaskIndexOutOfBoundsException {
+    private int getIdByOneBasedIndex(int taskNumber) throws TaskIndexOutOfBoundsException {
         if (taskNumber < 1 || taskNumber > tasks.size()) {
             throw new TaskIndexOutOfBoundsException("Task " + taskNumber + " does not exist." + NEWLINE + "You only have " + 
             tasks.size() + " tasks in your list." + newLine() + "Type list to see all tasks." + NEWLINE + lineSep);
         }
-        return tasks.get(taskNumber - 1);
+        return tasks.idAt(taskNumber - 1);
     }
 
     /**
      * Changes task state (done/undone) and prints a standardized confirmation.
      *
-     * @param task the task to modify
+     * @param taskNumber the 1-based index of the task to modify
      * @param markDone whether to mark done (true) or undone (false)
      * @param header message printed before showing the task
      */
-    private void changeTaskState(Task task, boolean markDone, String header) {
-        if (markDone) {
-            task.markTaskAsDone();
-        } else {
-            task.markTaskAsUndone();
+    private void changeTaskState(int taskNumber, boolean markDone, String header)
+            throws TaskIndexOutOfBoundsException {
+        lock.writeLock().lock();
+        try {
+            storage.beginWrite(view, out);
+            int id = getIdByOneBasedIndex(taskNumber);
+            tasks.setDone(id, markDone);
+            history.record(new UndoLog.Entry(markDone ? UndoLog.Kind.MARK : UndoLog.Kind.UNMARK, id, null),
+                    state.generation);
+            Task task = tasks.get(id);
+            out.println(header);
+            out.println(lineSep);
+            out.println("\t" + task);
+            storage.recordStateChange(tasks.asList(), taskNumber - 1, markDone, out);
+        } finally {
+            storage.endWrite(out);
+            lock.writeLock().unlock();
         }
-        System.out.println(header);
-        System.out.println(lineSep);
-        System.out.println("\t" + task);
-        saveToFile();
     }
 
     private String newLine() {
         return NEWLINE;
     }
-}
\ No newline at end of file
+
+    /**
+     * Appends a task to the store and, once built, to the search indexes.
+     */
+    private int addIndexed(Task task) {
+        int id = tasks.add(task);
+        if (state.indexed) {
+            keywordIndex.add(id, task.getDescription());
+            timeIndex.add(id, task);
+        }
+        if (state.searchIndexed) {
+            searchIndex.add(id, task);
+        }
+        return id;
+    }
+
+    /**
+     * Puts a task back under a free store ID and into the search indexes.
+     */
+    private void restoreIndexed(int id, Task task) {
+        tasks.restore(id, task);
+        if (state.indexed) {
+            keywordIndex.add(id, task.getDescription());
+            timeIndex.add(id, task);
+        }
+        if (state.searchIndexed) {
+            searchIndex.add(id, task);
+        }
+    }
+
+    /**
+     * Removes a task from the store and the search indexes.
+     */
+    private Task removeIndexed(int id) {
+        Task task = tasks.remove(id);
+        if (state.indexed) {
+            keywordIndex.remove(id, task.getDescription());
+            timeIndex.remove(id, task);
+        }
+        if (state.searchIndexed) {
+            searchIndex.remove(id, task);
+        }
+        return task;
+    }
+
+    /**
+     * Load flags shared by every session of the same task list. The generation
+     * counts how often the store was cleared, which invalidates stored IDs.
+     */
+    private static final class LoadState {
+        private boolean loaded = false;
+        private volatile boolean indexed = true;
+        private volatile boolean searchIndexed = false;
+        private int generation = 0;
+    }
+
+    /**
+     * Position-addressed list over the store, used to apply journal records
+     * (which refer to 0-based positions) and reloads directly to the store.
+     * Keeps the keyword and time indexes in step while they are built.
+     * Callers must hold the write lock.
+     */
+    private final class PositionalView extends AbstractList<Task> {
+        @Override
+        public Task get(int index) {
+            return tasks.get(tasks.idAt(index));
+        }
+
+        @Override
+        public int size() {
+            return tasks.size();
+        }
+
+        @Override
+        public Task set(int index, Task task) {
+            int id = tasks.idAt(index);
+            Task previous = tasks.get(id);
+            if (task instanceof Recurring && task != previous) {
+                // A decoded copy whose occurrences were marked: it replaces the stored series.
+                removeIndexed(id);
+                restoreIndexed(id, task);
+            } else if (previous.isDone() != task.isDone()) {
+                tasks.setDone(id, task.isDone());
+            }
+            return previous;
+        }
+
+        @Override
+        public void add(int index, Task task) {
+            if (index == tasks.size()) {
+                addIndexed(task);
+                return;
+            }
+            // Any ID between the neighbours' IDs is free and sorts into this position. Taking
+            // the lowest leaves the rest for the tasks a grouped undo inserts after this one.
+            int before = index == 0 ? -1 : tasks.idAt(index - 1);
+            int after = tasks.idAt(index);
+            if (after - before > 1) {
+                restoreIndexed(before + 1, task);
+                return;
+            }
+            renumber(index, List.of(task));
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends Task> inserted) {
+            if (index == tasks.size() || inserted.size() < 2) {
+                return super.addAll(index, inserted);
+            }
+            int before = index == 0 ? -1 : tasks.idAt(index - 1);
+            int after = tasks.idAt(index);
+            if (after - before > inserted.size()) {
+                int id = before + 1;
+                for (Task task : inserted) {
+                    restoreIndexed(id++, task);
+                }
+            } else {
+                renumber(index, inserted);
+            }
+            return true;
+        }
+
+        /**
+         * Inserts tasks where their neighbours' IDs leave too little room (e.g. the
+         * list was loaded after the deletion) by spreading out the IDs of a run of
+         * tasks around the position, as in list labelling: the run doubles until
+         * its ID range is sparse enough, and the allowed fill falls from full for
+         * the shortest runs to half for runs as long as the list, so a spread run
+         * leaves room for many inserts before a longer one has to be spread.
+         * Inserts thus move O(log^2 n) tasks each on average instead of rebuilding
+         * the whole store every time. Moved tasks change ID, so the undo history
+         * is dropped as after a reload.
+         */
+        private void renumber(int index, Collection<? extends Task> inserted) {
+            int size = tasks.size();
+            int levels = 2 * (33 - Integer.numberOfLeadingZeros(size));
+            int level = 0;
+            int from;
+            int to;
+            int first;
+            int end;
+            while (true) {
+                from = Math.max(0, index - (1 << level));
+                to = Math.min(size, index + (1 << level));
+                first = from == 0 ? 0 : tasks.idAt(from - 1) + 1;
+                long count = to - from + inserted.size();
+                if (to == size) {
+                    // Nothing follows the run, so IDs past the last one can be reserved to half fill it.
+                    end = (int) Math.max(tasks.idAt(size - 1) + 1, first + 2 * count);
+                    tasks.reserve(end);
+                    break;
+                }
+                end = tasks.idAt(to);
+                if (count * levels <= (long) (end - first) * (levels - level)) {
+                    break;
+                }
+                level++;
+            }
+            List<Task> run = new ArrayList<>(to - from + inserted.size());
+            for (int i = from; i < to; i++) {
+                run.add(removeIndexed(tasks.idAt(from)));
+            }
+            run.addAll(index - from, inserted);
+            int spacing = (end - first) / run.size();
+            for (int i = 0; i < run.size(); i++) {
+                restoreIndexed(first + i * spacing + spacing / 2, run.get(i));
+            }
+            state.generation++;
+        }
+
+        @Override
+        public Task remove(int index) {
+            return removeIndexed(tasks.idAt(index));
+        }
+
+        @Override
+        public void clear() {
+            tasks.clear();
+            keywordIndex.clear();
+            timeIndex.clear();
+            searchIndex.clear();
+            state.generation++;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package chattpg.logic;
+
+import chattpg.logic.exceptions.InvalidCommandException;
+import chattpg.storage.Storage;
+import chattpg.ui.OutputSink;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The named task lists in the task directory, each stored in its own file
+ * ({@code tasks/<name>.txt}; the default list is {@code tasks}).
+ * <p>
+ * A list is only read when it is first opened. Loaded lists stay resident in
+ * least-recently-opened order until the resident lists together exceed
+ * either budget: {@code -Dchattpg.lists.maxTasks} tasks (2,000,000 by
+ * default) or {@code -Dchattpg.lists.maxMemory} megabytes (half the heap by
+ * default, see {@link TaskActions#estimatedBytes()}). The least recently
+ * opened lists are then evicted: their buffered journal records are flushed
+ * and their files closed, and they are simply read again when next opened.
+ * A list that a session is still working on is never evicted, and neither is
+ * the default list, whose metrics are the ones exported (see {@link Metrics}).
+ * <p>
+ * Methods are synchronized, so server sessions may open lists concurrently.
+ */
+public class TaskLists {
+    /** Name of the list that is open at startup. */
+    public static final String DEFAULT_LIST = "tasks";
+
+    private static final int MAX_NAME_LENGTH = 32;
+    private static final long DEFAULT_MAX_TASKS = 2_000_000;
+    private static final String[] SNAPSHOT_EXTENSIONS = {".txt", ".bin", ".shards"};
+
+    private final String directory;
+    private final String lineSep;
+    private final OutputSink out;
+    private final long maxTasks;
+    private final long maxBytes;
+    private final Map<String, Entry> resident = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Creates the registry with budgets read from system properties.
+     *
+     * @param directory folder holding the list files (e.g., "tasks")
+     * @param lineSep   the UI separator used for consistent console output
+     * @param out       destination for the output of the lists' own operations
+     */
+    public TaskLists(String directory, String lineSep, OutputSink out) {
+        this(directory, lineSep, out, Long.getLong("chattpg.lists.maxTasks", DEFAULT_MAX_TASKS),
+                Long.getLong("chattpg.lists.maxMemory", Runtime.getRuntime().maxMemory() / 2 / (1024 * 1024))
+                        * 1024 * 1024);
+    }
+
+    /**
+     * Creates the registry with explicit budgets.
+     *
+     * @param directory folder holding the list files (e.g., "tasks")
+     * @param lineSep   the UI separator used for consistent console output
+     * @param out       destination for the output of the lists' own operations
+     * @param maxTasks  most tasks kept resident across all lists
+     * @param maxBytes  most estimated bytes kept resident across all lists
+     */
+    public TaskLists(String directory, String lineSep, OutputSink out, long maxTasks, long maxBytes) {
+        this.directory = directory;
+        this.lineSep = lineSep;
+        this.out = out;
+        this.maxTasks = maxTasks;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the task operations of a list, creating them (without loading
+     * the list yet) if the list is not resident, and marks the list as in use
+     * until {@link #release(TaskActions)}. Call {@link TaskActions#loadFromFile()}
+     * and then {@link #trim()} after switching to it.
+     *
+     * @param name the list name; letters, digits, {@code -} and {@code _}
+     *             (case-insensitive)
+     * @return the list's shared task operations
+     * @throws InvalidCommandException if the name is not a valid list name
+     */
+    public synchronized TaskActions acquire(String name) throws InvalidCommandException {
+        return acquireNormalised(normalise(name));
+    }
+
+    /**
+     * Acquires the {@linkplain #DEFAULT_LIST default list}, as {@link #acquire(String)}.
+     *
+     * @return the default list's shared task operations
+     */
+    public synchronized TaskActions acquireDefault() {
+        return acquireNormalised(DEFAULT_LIST);
+    }
+
+    /**
+     * Moves a session from its current list to another one, as
+     * {@link #acquire(String)} followed by {@link #release(TaskActions)}.
+     *
+     * @param current the list the session is leaving
+     * @param name    the list to open
+     * @return the new list's shared task operations
+     * @throws InvalidCommandException if the name is not a valid list name
+     */
+    public synchronized TaskActions switchTo(TaskActions current, String name) throws InvalidCommandException {
+        TaskActions next = acquire(name);
+        release(current);
+        return next;
+    }
+
+    /**
+     * Extracts the list name from the argument of an {@code open} command.
+     *
+     * @param argument the text after {@code open}, e.g. {@code "list work"}
+     * @return the normalised list name
+     * @throws InvalidCommandException if the argument is not {@code list <name>}
+     *                                 or the name is invalid
+     */
+    public String parseOpen(String argument) throws InvalidCommandException {
+        if (argument == null || !argument.toLowerCase().startsWith("list ")) {
+            throw new InvalidCommandException("open format: open list <name>" + System.lineSeparator() + lineSep);
+        }
+        return normalise(argument.substring("list ".length()));
+    }
+
+    private TaskActions acquireNormalised(String key) {
+        Entry entry = resident.get(key);
+        if (entry == null) {
+            entry = new Entry(new TaskActions(newTaskStore(), new Storage(new File(directory, key + ".txt").getPath()),
+                    lineSep, out));
+            resident.put(key, entry);
+        }
+        entry.users++;
+        return entry.actions;
+    }
+
+    /**
+     * Marks a list returned by {@link #acquire(String)} as no longer in use by
+     * the caller, so it may be evicted.
+     *
+     * @param actions the list's shared task operations
+     */
+    public synchronized void release(TaskActions actions) {
+        for (Entry entry : resident.values()) {
+            if (entry.actions == actions) {
+                entry.users = Math.max(0, entry.users - 1);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently opened lists that are not in use until the
+     * resident lists fit both budgets again.
+     */
+    public synchronized void trim() {
+        long tasks = 0;
+        long bytes = 0;
+        for (Entry entry : resident.values()) {
+            tasks += entry.actions.size();
+            bytes += entry.actions.estimatedBytes();
+        }
+        Iterator<Map.Entry<String, Entry>> eldest = resident.entrySet().iterator();
+        while ((tasks > maxTasks || bytes > maxBytes) && eldest.hasNext()) {
+            Map.Entry<String, Entry> next = eldest.next();
+            Entry entry = next.getValue();
+            if (entry.users > 0 || next.getKey().equals(DEFAULT_LIST)) {
+                continue;
+            }
+            tasks -= entry.actions.size();
+            bytes -= entry.actions.estimatedBytes();
+            entry.actions.close();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Prints every list in the task directory, marking the current one and
+     * showing the size of those that are resident.
+     *
+     * @param sink    destination for the listing
+     * @param current name of the caller's current list
+     */
+    public synchronized void printLists(OutputSink sink, String current) {
+        // Copied so that looking lists up here does not count as opening them.
+        Map<String, Entry> loaded = new HashMap<>(resident);
+        TreeSet<String> names = new TreeSet<>(loaded.keySet());
+        String[] files = new File(directory).list();
+        if (files != null) {
+            for (String file : files) {
+                for (String extension : SNAPSHOT_EXTENSIONS) {
+                    String name = file.endsWith(extension) ? file.substring(0, file.length() - extension.length()) : "";
+                    if (isValidName(name)) {
+                        names.add(name);
+                    }
+                }
+            }
+        }
+        names.add(DEFAULT_LIST);
+        sink.println("Here are your task lists (* is the open one):");
+        for (String name : names) {
+            Entry entry = loaded.get(name);
+            sink.print(name.equals(current) ? "\t* " : "\t  ").print(name);
+            if (entry == null) {
+                sink.println(" (not loaded)");
+            } else {
+                int size = entry.actions.size();
+                sink.printf(" (%,d %s in memory)%n", size, size == 1 ? "task" : "tasks");
+            }
+        }
+        sink.println(lineSep);
+    }
+
+    /**
+     * Flushes and closes every resident list before shutdown.
+     */
+    public synchronized void closeAll() {
+        for (Entry entry : resident.values()) {
+            entry.actions.close();
+        }
+        resident.clear();
+    }
+
+    /**
+     * Creates the task store selected by {@code -Dchattpg.store}: {@code columnar}
+     * for the memory-compact {@link ColumnarTaskStore}, {@code lazy} for the
+     * memory-mapped {@link LazyTaskStore}, anything else for the default
+     * {@link IndexedTaskStore}.
+     */
+    private static TaskStore newTaskStore() {
+        String store = System.getProperty("chattpg.store", "").trim();
+        if ("columnar".equalsIgnoreCase(store)) {
+            return new ColumnarTaskStore();
+        } else if ("lazy".equalsIgnoreCase(store)) {
+            return new LazyTaskStore();
+        }
+        return new IndexedTaskStore();
+    }
+
+    /**
+     * @return the list name in lowercase, which is also its file name
+     * @throws InvalidCommandException if it is not a valid list name
+     */
+    private String normalise(String name) throws InvalidCommandException {
+        String key = name == null ? "" : name.trim().toLowerCase();
+        if (!isValidName(key)) {
+            throw new InvalidCommandException("List names are 1 to " + MAX_NAME_LENGTH
+                    + " letters, digits, - or _ (e.g. open list work)." + System.lineSeparator() + lineSep);
+        }
+        return key;
+    }
+
+    private static boolean isValidName(String name) {
+        if (name.isEmpty() || name.length() > MAX_NAME_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '-' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** A resident list and the number of sessions working on it. */
+    private static final class Entry {
+        private final TaskActions actions;
+        private int users;
+
+        Entry(TaskActions actions) {
+            this.actions = actions;
+        }
+    }
+}
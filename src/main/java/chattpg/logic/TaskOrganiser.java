@@ -2,15 +2,18 @@ package chattpg.logic;
 
 import chattpg.logic.exceptions.InvalidCommandException;
 import chattpg.logic.exceptions.TaskIndexOutOfBoundsException;
-import chattpg.model.Task;
-import chattpg.storage.Storage;
-import java.util.ArrayList;
+import chattpg.ui.OutputSink;
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.Scanner;
 
 /**
  * Console controller for the Task Organiser. This class orchestrates the
  * interaction loop, delegates task operations to {@link TaskActions}, and
  * handles user prompts, error messages, and simple menu printing.
+ * <p>
+ * Commands apply to the open task list, which is the default list until
+ * {@code open list <name>} switches to another one (see {@link TaskLists}).
  */
 public class TaskOrganiser {
     private static final String TASK_ORGANISER_BANNER = """
@@ -22,18 +25,26 @@ public class TaskOrganiser {
     """;
 
     private static final String LINE = "---------------------------------------------";
-    private final ArrayList<Task> tasks = new ArrayList<>();
+    private static final CommandParser PARSER = CommandParser.forConsole();
     private final Scanner scanner;
-    private final Storage storage = new Storage("tasks/tasks.txt");
-    private final TaskActions actions = new TaskActions(tasks, storage, LINE);
+    private final OutputSink out;
+    private final TaskLists lists;
+    private TaskActions actions;
+    private String listName = TaskLists.DEFAULT_LIST;
+    private long commandStart;
 
     /**
      * Creates a TaskOrganiser bound to the provided input scanner.
      *
      * @param scanner shared scanner reading from standard input
+     * @param out     shared sink that all console output is written to
      */
-    public TaskOrganiser(Scanner scanner) {
+    public TaskOrganiser(Scanner scanner, OutputSink out) {
         this.scanner = scanner;
+        this.out = out;
+        this.lists = new TaskLists("tasks", LINE, out);
+        this.actions = lists.acquireDefault();
+        actions.exportMetrics();
     }
 
     /** Loads persisted tasks on startup (idempotent via TaskActions). */
@@ -46,32 +57,49 @@ public class TaskOrganiser {
         actions.saveToFile();
     }
     
+    /** Flushes buffered writes of every loaded list and stops background persistence before the program exits. */
+    public void shutdown() {
+        lists.closeAll();
+    }
+
     /** Prints the generic prompt to enter the next command. */
     public void printEnterCommand() {
-        System.out.println("Please enter your command:");
-        System.out.println(LINE);
+        out.println("Please enter your command:");
+        out.println(LINE);
     }
 
     /** Prints available commands for quick reference. */
     public void printAvailableCommands() {
-        System.out.println("Available commands:");
-        System.out.println("  - [Add a task]: todo <desc>, deadline <desc> /by <when>, event <desc> /from <start> /to <end>");
-        System.out.println("  - [Mark task as done]: mark done");
-        System.out.println("  - [Mark task as undone]: mark undone");
-        System.out.println("  - [Delete a task]: delete task");
-        System.out.println("  - [List all tasks]: list");
-        System.out.println("  - [Exit Task Organiser]: exit task organiser or bye");
-        System.out.println("  - [Find a task based on a single keyword]: find ");
-        System.out.println("Type 'help' to see this list again.");
-        System.out.println(LINE);
+        out.println("Available commands:");
+        out.println("  - [Add a task]: todo <desc>, deadline <desc> /by <when>, event <desc> /from <start> /to <end>");
+        out.println("    (end a deadline or event with /every <rule> to repeat it, e.g. /every week or /every 2 months)");
+        out.println("  - [Mark task as done]: mark done");
+        out.println("  - [Mark task as undone]: mark undone");
+        out.println("  - [Delete a task]: delete task");
+        out.println("    (each prompts for a number, a list like 1-5,9, done, undone or find <keywords>;");
+        out.println("     or give it directly: mark <n>, unmark <n>, delete <n>)");
+        out.println("  - [Undo / redo the last change]: undo, redo");
+        out.println("  - [List all tasks]: list");
+        out.println("  - [List a page of tasks]: list <from>-<to> (e.g. list 1000-2000)");
+        out.println("  - [Exit Task Organiser]: exit task organiser or bye");
+        out.println("  - [Find tasks by keywords (AND, OR, prefix*)]: find ");
+        out.println("  - [Best matches, tolerating typos]: search <words> (e.g. search reed bok)");
+        out.println("  - [Tasks on a date]: due <date> (e.g. due 2025-10-01)");
+        out.println("  - [Next dated tasks]: upcoming <count>");
+        out.println("  - [Tasks in a date range]: between <date> <date>");
+        out.println("  - [Command latency and storage statistics]: stats");
+        out.println("  - [Switch to another task list]: open list <name> (e.g. open list work)");
+        out.println("  - [Show your task lists]: lists");
+        out.println("Type 'help' to see this list again.");
+        out.println(LINE);
     }
 
     /** Prints the banner, welcome copy, and the command list. */
     public void printWelcomeMessage() {
-        System.out.println(TASK_ORGANISER_BANNER);
-        System.out.println("Welcome to Task Organiser!");
-        System.out.println("You can manage your tasks here.");
-        System.out.println(LINE);
+        out.println(TASK_ORGANISER_BANNER);
+        out.println("Welcome to Task Organiser!");
+        out.println("You can manage your tasks here.");
+        out.println(LINE);
         printAvailableCommands();
     }
 
@@ -86,6 +114,19 @@ public class TaskOrganiser {
         printEnterCommand();
     }
 
+    /**
+     * Deletes every task in a selection (e.g. {@code 10-500}, {@code done} or
+     * {@code find book}) and re-prompts the user.
+     *
+     * @param selection the tasks to delete; see {@link TaskActions#deleteTasks(String)}
+     * @throws TaskIndexOutOfBoundsException if a task number is invalid
+     * @throws InvalidCommandException       if the selection is malformed
+     */
+    public void deleteTasks(String selection) throws TaskIndexOutOfBoundsException, InvalidCommandException {
+        actions.deleteTasks(selection);
+        printEnterCommand();
+    }
+
     /**
      * Adds a task based on the raw input and re-prompts the user.
      *
@@ -93,7 +134,11 @@ public class TaskOrganiser {
      * @throws InvalidCommandException if the command is unknown or malformed
      */
     public void addTask(String description) throws InvalidCommandException {
-        actions.addTask(description);
+        addTask(PARSER.parse(description));
+    }
+
+    private void addTask(Command command) throws InvalidCommandException {
+        actions.addTask(command);
         printEnterCommand();
     }
 
@@ -104,81 +149,214 @@ public class TaskOrganiser {
     }
 
     /**
-     * Finds tasks whose description contains the single-word keyword and
-     * re-prompts the user.
+     * Lists one page of tasks and re-prompts the user.
      *
-     * @param keyword a single, non-whitespace token to search for
-     * @throws InvalidCommandException if the keyword is empty or contains whitespace
+     * @param range page bounds in the form {@code <from>-<to>} (1-based, inclusive)
+     * @throws InvalidCommandException       if the range is malformed
+     * @throws TaskIndexOutOfBoundsException if the start is not a valid task number
+     * @throws NumberFormatException         if either bound is not a number
+     */
+    public void listTasks(String range) throws InvalidCommandException, TaskIndexOutOfBoundsException {
+        int dash = range.indexOf('-');
+        if (dash < 0) {
+            throw new InvalidCommandException("list format: list <from>-<to>" + System.lineSeparator() + LINE);
+        }
+        int from = Integer.parseInt(range.substring(0, dash).trim());
+        int to = Integer.parseInt(range.substring(dash + 1).trim());
+        actions.listTasks(from, to);
+        printEnterCommand();
+    }
+
+    /**
+     * Finds tasks whose description matches the keyword query and re-prompts
+     * the user.
+     *
+     * @param keyword keywords to search for (AND by default, OR and prefix* supported)
+     * @throws InvalidCommandException if the query is empty
      */
     public void findTask(String keyword) throws InvalidCommandException {
         actions.findTask(keyword);
         printEnterCommand();
     }
 
+    /**
+     * Switches to another named task list, loading it if it is not in memory,
+     * and re-prompts the user.
+     *
+     * @param argument the text after {@code open}, e.g. {@code "list work"}
+     * @throws InvalidCommandException if the argument or list name is invalid
+     */
+    public void openList(String argument) throws InvalidCommandException {
+        String name = lists.parseOpen(argument);
+        actions = lists.switchTo(actions, name);
+        listName = name;
+        out.println("Opened task list '" + name + "'.");
+        actions.loadFromFile();
+        lists.trim();
+        printEnterCommand();
+    }
+
     /** Hook retained for parity; actions already prints added-task feedback. */
     public void taskAdded() { /* delegated in TaskActions */ }
 
+    /**
+     * Writes out everything printed so far, then reads the next input line.
+     * Output is buffered per command, so this is where it reaches the console.
+     * A command is timed from its last input line, so time spent typing at a
+     * prompt is not counted.
+     */
+    private String readLine() {
+        out.flush();
+        String line = scanner.nextLine();
+        commandStart = System.nanoTime();
+        return line;
+    }
+
+    /**
+     * Executes a non-interactive command stream (see {@link BatchRunner})
+     * against the persisted task list, persisting once at the end.
+     *
+     * @param input  source of single-line commands
+     * @param report sink for per-line errors and the throughput summary
+     * @throws IOException if reading the input fails
+     */
+    public void runBatch(BufferedReader input, OutputSink report) throws IOException {
+        loadTasksFromFile();
+        out.flush();
+        try {
+            new BatchRunner(lists, listName, actions, report, list -> list).run(input);
+        } finally {
+            out.flush();
+            lists.closeAll();
+        }
+    }
+
+    /**
+     * Serves the persisted task list to concurrent clients over loopback TCP
+     * (see {@link TaskServer}). Runs until the process is stopped; buffered
+     * journal records are flushed by a shutdown hook.
+     *
+     * @param port TCP port to listen on
+     * @throws IOException if the port cannot be opened
+     */
+    public void runServer(int port) throws IOException {
+        loadTasksFromFile();
+        out.flush();
+        Runtime.getRuntime().addShutdownHook(new Thread(lists::closeAll, "chattpg-shutdown"));
+        new TaskServer(lists, port, out).run();
+    }
+
     /** Main interaction loop for the Task Organiser submenu. */
     public void run() {
         printWelcomeMessage();
+        out.flush();
         loadTasksFromFile();
         printEnterCommand();
 
         while (true) {
-            final String userInput = scanner.nextLine().trim();
-            System.out.println(LINE);
+            final Command command = PARSER.parse(readLine());
+            out.println(LINE);
             try {
-                switch (userInput) {
-                case "help":
+                switch (command.getType()) {
+                case HELP:
                     printAvailableCommands();
                     break;
-                case "mark done":
-                    System.out.println("Enter the task number you want to mark as done: ");
-                    int doneTaskNumber = Integer.parseInt(scanner.nextLine().trim());
-                    System.out.println(LINE);
-                    actions.markDone(doneTaskNumber);
+                case MARK:
+                case UNMARK: {
+                    boolean done = command.getType() == CommandType.MARK;
+                    String selection = command.getArgument();
+                    if (!command.hasArgument()) {
+                        out.println("Enter the task number(s) you want to mark as " + (done ? "done: " : "undone: "));
+                        selection = readLine();
+                        out.println(LINE);
+                    }
+                    actions.markTasks(selection, done);
+                    printEnterCommand();
+                    break;
+                }
+                case DELETE:
+                    if (command.hasArgument()) {
+                        deleteTasks(command.getArgument());
+                    } else {
+                        out.println("Enter the task number(s) you want to delete: ");
+                        out.println(LINE);
+                        deleteTasks(readLine());
+                    }
+                    break;
+                case LIST:
+                    if (command.getArgument().isEmpty()) {
+                        listTasks();
+                    } else {
+                        listTasks(command.getArgument());
+                    }
+                    break;
+                case UNDO:
+                    actions.undo();
                     printEnterCommand();
                     break;
-                case "mark undone":
-                    System.out.println("Enter the task number you want to mark as undone: ");
-                    int undoneTaskNumber = Integer.parseInt(scanner.nextLine().trim());
-                    System.out.println(LINE);
-                    actions.markUndone(undoneTaskNumber);
+                case REDO:
+                    actions.redo();
                     printEnterCommand();
                     break;
-                case "delete task":
-                    System.out.println("Enter the task number you want to delete: ");
-                    System.out.println(LINE);
-                    deleteTask(Integer.parseInt(scanner.nextLine().trim()));
+                case STATS:
+                    actions.printStats();
+                    printEnterCommand();
                     break;
-                case "list":
-                    listTasks();
+                case OPEN:
+                    openList(command.getArgument());
                     break;
-                case "exit task organiser":
-                case "bye":
-                    System.out.println("Exiting Task Organiser. Returning to main menu...");
-                    System.out.println("Type bye again to exit the whole program.");
-                    System.out.println(LINE);
+                case LISTS:
+                    lists.printLists(out, listName);
+                    printEnterCommand();
+                    break;
+                case BYE:
+                    actions.flushToFile();
+                    out.println("Exiting Task Organiser. Returning to main menu...");
+                    out.println("Type bye again to exit the whole program.");
+                    out.println(LINE);
+                    out.flush();
                     return;
-                case "find":
-                    System.out.println("Enter a single keyword to show a list of tasks that has that keyword in the description: ");
-                    String keyword = scanner.nextLine().trim();
-                    System.out.println(LINE);
-                    findTask(keyword);
+                case FIND:
+                    if (command.hasArgument()) {
+                        findTask(command.getArgument());
+                    } else {
+                        out.println("Enter keywords to search for (e.g. book, book read, book OR novel, boo*): ");
+                        String keyword = readLine().trim();
+                        out.println(LINE);
+                        findTask(keyword);
+                    }
+                    break;
+                case SEARCH:
+                    actions.searchTasks(command.getArgument());
+                    printEnterCommand();
+                    break;
+                case DUE:
+                    actions.dueOn(command.getArgument());
+                    printEnterCommand();
+                    break;
+                case UPCOMING:
+                    actions.upcoming(Integer.parseInt(command.getArgument()));
+                    printEnterCommand();
+                    break;
+                case BETWEEN:
+                    actions.between(command.getArgument());
+                    printEnterCommand();
                     break;
                 default:
-                    addTask(userInput);
+                    addTask(command);
                     break;
                 }
             } catch (TaskIndexOutOfBoundsException e) {
-                System.out.println(e.getMessage());
+                out.println(e.getMessage());
             } catch (InvalidCommandException e) {
-                System.out.println("Invalid command: " + e.getMessage());
+                out.println("Invalid command: " + e.getMessage());
                 printEnterCommand();
             } catch (NumberFormatException e) {
-                System.out.println("Please enter a valid number.");
+                out.println("Please enter a valid number.");
             } catch (IllegalStateException e) {
-                System.out.println("Operation not allowed: " + e.getMessage());
+                out.println("Operation not allowed: " + e.getMessage());
+            } finally {
+                actions.recordCommand(command.getType().getName(), System.nanoTime() - commandStart);
             }
         }
     }
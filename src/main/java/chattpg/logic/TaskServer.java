@@ -0,0 +1,149 @@
+package chattpg.logic;
+
+import chattpg.ui.BufferedOutputSink;
+import chattpg.ui.OutputSink;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loopback TCP server that lets several users work on one shared task list.
+ * <p>
+ * Each connection is a session that sends one command per line, using the
+ * same single-line grammar as batch mode (see {@link BatchRunner}), plus
+ * {@code help} and {@code bye}. Every session gets its own output through
+ * {@link TaskActions#forSession}, so reads from different sessions run in
+ * parallel while mutations are applied one at a time. Sessions start on the
+ * default list and may each {@code open list} another one (see {@link TaskLists}).
+ * <p>
+ * Sessions run on virtual threads when the JVM provides them (Java 21+) and on
+ * a cached pool of platform threads otherwise. The server only listens on the
+ * loopback interface.
+ */
+public class TaskServer {
+    private static final String LINE = "---------------------------------------------";
+    private static final CommandParser PARSER = CommandParser.forBatch();
+
+    private final TaskLists lists;
+    private final int port;
+    private final OutputSink log;
+
+    /**
+     * Creates a server; call {@link #run()} to start accepting connections.
+     *
+     * @param lists the named task lists shared by all sessions, with the default list loaded
+     * @param port  TCP port to listen on; 0 picks a free port
+     * @param log   sink for connection events
+     */
+    public TaskServer(TaskLists lists, int port, OutputSink log) {
+        this.lists = lists;
+        this.port = port;
+        this.log = log;
+    }
+
+    /**
+     * Accepts connections until the process exits, serving each on its own thread.
+     *
+     * @throws IOException if the port cannot be opened
+     */
+    public void run() throws IOException {
+        ExecutorService sessions = newSessionExecutor();
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            log("Task server listening on " + server.getInetAddress().getHostAddress() + ":"
+                    + server.getLocalPort());
+            while (true) {
+                Socket socket = server.accept();
+                sessions.execute(() -> serve(socket));
+            }
+        } finally {
+            sessions.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs one session until the client sends {@code bye} or disconnects.
+     */
+    private void serve(Socket socket) {
+        String client = socket.getRemoteSocketAddress().toString();
+        log("Session opened: " + client);
+        try (socket;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintStream stream = new PrintStream(socket.getOutputStream(), false, StandardCharsets.UTF_8)) {
+            OutputSink out = new BufferedOutputSink(stream);
+            BatchRunner runner = new BatchRunner(lists, TaskLists.DEFAULT_LIST, lists.acquireDefault(), out,
+                    list -> list.forSession(out));
+            try {
+                serve(in, out, runner);
+            } finally {
+                runner.close();
+            }
+        } catch (IOException e) {
+            log("Session " + client + " failed: " + e.getMessage());
+        }
+        log("Session closed: " + client);
+    }
+
+    /**
+     * Executes one session's commands until {@code bye} or end of input.
+     */
+    private void serve(BufferedReader in, OutputSink out, BatchRunner runner) throws IOException {
+        out.println("Connected to the shared task list.");
+        out.println(BatchRunner.COMMANDS);
+        out.println(LINE);
+        out.flush();
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            String command = line.trim();
+            if (command.isEmpty() || command.charAt(0) == '#') {
+                continue;
+            }
+            Command parsed = PARSER.parse(command);
+            if (parsed.getType() == CommandType.BYE) {
+                runner.getActions().flushToFile();
+                out.println("Bye! Your changes are saved.");
+                out.flush();
+                break;
+            } else if (parsed.getType() == CommandType.HELP) {
+                out.println(BatchRunner.COMMANDS);
+                out.println(LINE);
+            } else {
+                runner.execute(lineNumber, parsed);
+            }
+            out.flush();
+        }
+    }
+
+    private void log(String message) {
+        synchronized (log) {
+            log.println(message);
+            log.flush();
+        }
+    }
+
+    /**
+     * Uses one virtual thread per session where available, falling back to a
+     * cached thread pool on JVMs without virtual threads.
+     */
+    private static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "chattpg-session");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package chattpg.logic;
+
+import chattpg.model.Task;
+
+import java.util.List;
+
+/**
+ * Ordered collection of tasks addressed by stable numeric IDs.
+ * <p>
+ * IDs are assigned on {@link #add(Task)}, increase in insertion order and are
+ * only reused by {@link #restore(int, Task)}, so secondary indexes can refer to
+ * a task by ID without being invalidated when earlier tasks are deleted. The 1-based
+ * numbers shown to the user are list positions and are translated with
+ * {@link #idAt(int)} and {@link #positionOf(int)}.
+ */
+public interface TaskStore {
+
+    /**
+     * Appends a task to the end of the list.
+     *
+     * @param task the task to add
+     * @return the ID assigned to the task
+     */
+    int add(Task task);
+
+    /**
+     * Puts a task under an ID whose task was removed, which places it at the
+     * list position implied by ID order. Used to undo a deletion, or to insert
+     * a task between two others, without shifting any other ID.
+     *
+     * @param id   an ID issued by {@link #add(Task)} that is no longer live
+     * @param task the task to store under that ID
+     * @throws IllegalArgumentException if the ID is live or was never issued
+     */
+    void restore(int id, Task task);
+
+    /**
+     * Makes every ID below {@code limit} free for {@link #restore(int, Task)},
+     * issuing the missing ones without adding tasks, so that tasks can be
+     * renumbered with room left between them. Later {@link #add(Task)} calls
+     * continue after the reserved IDs.
+     *
+     * @param limit exclusive upper bound of the IDs to issue; smaller values have no effect
+     */
+    void reserve(int limit);
+
+    /**
+     * Returns the task with the given ID.
+     *
+     * @param id a live task ID
+     * @return the task
+     * @throws IllegalArgumentException if no live task has that ID
+     */
+    Task get(int id);
+
+    /**
+     * Removes the task with the given ID.
+     *
+     * @param id a live task ID
+     * @return the removed task
+     * @throws IllegalArgumentException if no live task has that ID
+     */
+    Task remove(int id);
+
+    /**
+     * Marks the task with the given ID as done or undone.
+     *
+     * @param id   a live task ID
+     * @param done the new state
+     * @throws IllegalStateException if the task is already in that state
+     */
+    void setDone(int id, boolean done);
+
+    /**
+     * Returns the number of live tasks.
+     *
+     * @return task count
+     */
+    int size();
+
+    /**
+     * Returns the ID of the task at the given 0-based list position.
+     *
+     * @param position 0-based position, in {@code [0, size())}
+     * @return the task ID
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    int idAt(int position);
+
+    /**
+     * Returns the 0-based list position of the task with the given ID.
+     *
+     * @param id a live task ID
+     * @return the position
+     * @throws IllegalArgumentException if no live task has that ID
+     */
+    int positionOf(int id);
+
+    /**
+     * Visits every live task in list order.
+     *
+     * @param visitor callback receiving each ID and task
+     */
+    void forEach(Visitor visitor);
+
+    /**
+     * Removes every task, frees the space held for their IDs and starts
+     * assigning IDs from 0 again. IDs held from before the call are stale.
+     */
+    void clear();
+
+    /**
+     * Returns a read-only list view of the tasks in order, suitable for
+     * passing to persistence code that expects a {@link List}.
+     *
+     * @return live, unmodifiable view
+     */
+    List<Task> asList();
+
+    /** Callback for {@link #forEach(Visitor)}. */
+    @FunctionalInterface
+    interface Visitor {
+        void visit(int id, Task task);
+    }
+}
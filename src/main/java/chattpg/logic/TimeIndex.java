@@ -0,0 +1,267 @@
+package chattpg.logic;
+
+import chattpg.model.Deadline;
+import chattpg.model.Event;
+import chattpg.model.Recurrence;
+import chattpg.model.Recurring;
+import chattpg.model.Task;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Sorted index of dated tasks keyed by their date-time: the {@code /by} of a
+ * {@link Deadline} or the {@code /from} of an {@link Event}. Tasks whose dates
+ * are free text are not indexed. Range queries walk only the matching part of
+ * the tree, so they cost O(log n + k) instead of a full scan.
+ * <p>
+ * {@link Recurring} tasks are kept apart, by their first occurrence and
+ * repeat rule only. A query jumps straight to each series' first occurrence
+ * in range and generates the following ones as it merges them, in time order,
+ * with the one-off tasks, so a series costs nothing until it is queried and
+ * then only as much as the occurrences returned. A series never runs out, so
+ * {@link #upcoming} takes at most {@link #MAX_OCCURRENCES_PER_SERIES}
+ * occurrences from each; {@link #between} is bounded by its range.
+ */
+public class TimeIndex {
+    /** Most occurrences of one series that {@link #upcoming} returns. */
+    public static final int MAX_OCCURRENCES_PER_SERIES = 1000;
+
+    private final TreeMap<LocalDateTime, List<Integer>> byTime = new TreeMap<>();
+    private final Map<Integer, Series> series = new HashMap<>();
+
+    /**
+     * Indexes the task if it has a recognised date.
+     *
+     * @param id   the task's store ID
+     * @param task the task
+     */
+    public void add(int id, Task task) {
+        if (task instanceof Recurring recurring) {
+            series.put(id, new Series(id, recurring.getAnchor(), recurring.getOccurrences().getRule()));
+            return;
+        }
+        LocalDateTime key = keyOf(task);
+        if (key != null) {
+            byTime.computeIfAbsent(key, k -> new ArrayList<>(1)).add(id);
+        }
+    }
+
+    /**
+     * Removes the task from the index.
+     *
+     * @param id   the task's store ID
+     * @param task the task
+     */
+    public void remove(int id, Task task) {
+        if (task instanceof Recurring) {
+            series.remove(id);
+            return;
+        }
+        LocalDateTime key = keyOf(task);
+        if (key == null) {
+            return;
+        }
+        List<Integer> ids = byTime.get(key);
+        if (ids != null) {
+            ids.remove(Integer.valueOf(id));
+            if (ids.isEmpty()) {
+                byTime.remove(key);
+            }
+        }
+    }
+
+    /** Drops every entry. */
+    public void clear() {
+        byTime.clear();
+        series.clear();
+    }
+
+    /**
+     * Returns the tasks and occurrences dated in {@code [from, to)}, in time order.
+     *
+     * @param from inclusive lower bound
+     * @param to   exclusive upper bound
+     * @return every match
+     */
+    public Result between(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return new Result(new ArrayList<>(), false);
+        }
+        return merge(byTime.subMap(from, true, to, false), from, to, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the first {@code limit} tasks and occurrences dated at or after
+     * {@code from}, in time order, with at most
+     * {@link #MAX_OCCURRENCES_PER_SERIES} occurrences of each series.
+     *
+     * @param from  inclusive lower bound
+     * @param limit maximum number of results
+     * @return the matches
+     */
+    public Result upcoming(LocalDateTime from, int limit) {
+        return merge(byTime.tailMap(from, true), from, null, limit, MAX_OCCURRENCES_PER_SERIES);
+    }
+
+    /**
+     * Merges the one-off tasks of part of the tree with the occurrences of
+     * every series in the same range. One-off tasks come first on equal times.
+     *
+     * @param to        exclusive upper bound, or null for none
+     * @param perSeries maximum number of occurrences taken from each series
+     */
+    private Result merge(NavigableMap<LocalDateTime, List<Integer>> dated, LocalDateTime from,
+            LocalDateTime to, int limit, int perSeries) {
+        List<Dated> result = new ArrayList<>();
+        boolean truncated = false;
+        PriorityQueue<Cursor> next = new PriorityQueue<>(Math.max(1, series.size()),
+                Comparator.comparing((Cursor c) -> c.time).thenComparingInt(c -> c.series.id));
+        for (Series s : series.values()) {
+            Cursor cursor = new Cursor(s, s.rule.firstAtOrAfter(s.anchor, from));
+            if (to == null || cursor.time.isBefore(to)) {
+                next.add(cursor);
+            }
+        }
+        Iterator<Map.Entry<LocalDateTime, List<Integer>>> tasks = dated.entrySet().iterator();
+        Map.Entry<LocalDateTime, List<Integer>> entry = tasks.hasNext() ? tasks.next() : null;
+        while (result.size() < limit && (entry != null || !next.isEmpty())) {
+            if (entry != null && (next.isEmpty() || !next.peek().time.isBefore(entry.getKey()))) {
+                for (int id : entry.getValue()) {
+                    if (result.size() == limit) {
+                        truncated = true;
+                        break;
+                    }
+                    result.add(new Dated(id, Dated.ONE_OFF));
+                }
+                entry = tasks.hasNext() ? tasks.next() : null;
+                continue;
+            }
+            Cursor cursor = next.poll();
+            result.add(new Dated(cursor.series.id, cursor.k));
+            if (cursor.advance() && (to == null || cursor.time.isBefore(to))) {
+                if (++cursor.taken < perSeries) {
+                    next.add(cursor);
+                } else {
+                    truncated = true;
+                }
+            }
+        }
+        truncated |= entry != null || !next.isEmpty();
+        return new Result(result, truncated);
+    }
+
+    /**
+     * Returns the date-time a task is indexed under.
+     *
+     * @param task the task
+     * @return the deadline or event start, or null if the task is undated
+     */
+    static LocalDateTime keyOf(Task task) {
+        if (task instanceof Deadline d) {
+            return d.getByDateTime();
+        } else if (task instanceof Event e) {
+            return e.getFromDateTime();
+        }
+        return null;
+    }
+
+    /** A task, or one occurrence of a recurring task, returned by a query. */
+    public static final class Dated {
+        /** {@link #getOccurrence()} of a task that does not recur. */
+        public static final int ONE_OFF = -1;
+
+        private final int id;
+        private final int occurrence;
+
+        Dated(int id, int occurrence) {
+            this.id = id;
+            this.occurrence = occurrence;
+        }
+
+        /** @return the task's store ID */
+        public int getId() {
+            return id;
+        }
+
+        /** @return the 0-based occurrence number of a recurring task, or {@link #ONE_OFF} */
+        public int getOccurrence() {
+            return occurrence;
+        }
+    }
+
+    /** The matches of a query. */
+    public static final class Result {
+        private final List<Dated> matches;
+        private final boolean truncated;
+
+        Result(List<Dated> matches, boolean truncated) {
+            this.matches = matches;
+            this.truncated = truncated;
+        }
+
+        /** @return the matches, in time order */
+        public List<Dated> getMatches() {
+            return matches;
+        }
+
+        /** @return true if more tasks or occurrences matched than were returned */
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    /** What the index keeps of a recurring task. */
+    private static final class Series {
+        private final int id;
+        private final LocalDateTime anchor;
+        private final Recurrence rule;
+
+        Series(int id, LocalDateTime anchor, Recurrence rule) {
+            this.id = id;
+            this.anchor = anchor;
+            this.rule = rule;
+        }
+    }
+
+    /** The next occurrence of one series during a query. */
+    private static final class Cursor {
+        private final Series series;
+        private int k;
+        private LocalDateTime time;
+        private int taken;
+
+        Cursor(Series series, int k) {
+            this.series = series;
+            this.k = k;
+            this.time = series.rule.occurrence(series.anchor, k);
+        }
+
+        /**
+         * Moves to the following occurrence.
+         *
+         * @return false if there is none (its date would be out of range)
+         */
+        boolean advance() {
+            if (k == Integer.MAX_VALUE) {
+                return false;
+            }
+            try {
+                time = series.rule.occurrence(series.anchor, k + 1);
+            } catch (DateTimeException e) {
+                return false;
+            }
+            k++;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package chattpg.logic;
+
+import chattpg.model.Task;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Bounded history of task changes for {@code undo} and {@code redo}.
+ * <p>
+ * Each entry stores only how to reverse one change, keyed by the task's store
+ * ID: which task was added or deleted (and under which ID, so a restored task
+ * returns to its old place), or which done flag was flipped. Undoing and
+ * redoing therefore cost the same as the original command, and the memory per
+ * step does not depend on the size of the list. The oldest entries are
+ * dropped once the limit is reached.
+ * <p>
+ * A bulk command (e.g. {@code delete 10-500}) is recorded as one group entry
+ * whose parts are the individual changes, so it is undone in a single step.
+ * <p>
+ * Store IDs only stay meaningful while the store is not rebuilt, so every
+ * entry remembers the store generation it was recorded in and the history is
+ * discarded when the generation changes (e.g. after another process wrote a
+ * new snapshot).
+ */
+final class UndoLog {
+    /** Number of steps kept when {@code -Dchattpg.undo.limit} is not set. */
+    static final int DEFAULT_LIMIT = 100;
+
+    /** The kind of change an entry reverses. */
+    enum Kind {
+        ADD, DELETE, MARK, UNMARK
+    }
+
+    /** One recorded change, or a group of changes of the same kind. */
+    static final class Entry {
+        final Kind kind;
+        final int id;
+        final Task task;
+        final Entry[] parts;
+
+        /**
+         * @param kind the change that was made
+         * @param id   store ID of the affected task
+         * @param task the added or deleted task; null for done-flag changes
+         */
+        Entry(Kind kind, int id, Task task) {
+            this.kind = kind;
+            this.id = id;
+            this.task = task;
+            this.parts = null;
+        }
+
+        /**
+         * @param kind  the change made to every part
+         * @param parts the individual changes, in ascending ID order
+         */
+        Entry(Kind kind, Entry[] parts) {
+            this.kind = kind;
+            this.id = -1;
+            this.task = null;
+            this.parts = parts;
+        }
+    }
+
+    private final int limit;
+    private final Deque<Entry> undo = new ArrayDeque<>();
+    private final Deque<Entry> redo = new ArrayDeque<>();
+    private int generation;
+
+    /**
+     * @param limit maximum number of steps that can be undone; 0 disables undo
+     */
+    UndoLog(int limit) {
+        this.limit = Math.max(0, limit);
+    }
+
+    /**
+     * Records a change made by a command. Clears the redo history, as redoing
+     * past a new change would no longer make sense.
+     *
+     * @param entry      the change
+     * @param generation current store generation
+     */
+    void record(Entry entry, int generation) {
+        sync(generation);
+        redo.clear();
+        push(undo, entry);
+    }
+
+    /**
+     * @return the change {@code undo} would reverse, or null if there is none
+     */
+    Entry peekUndo(int generation) {
+        sync(generation);
+        return undo.peek();
+    }
+
+    /**
+     * @return the change {@code redo} would reapply, or null if there is none
+     */
+    Entry peekRedo(int generation) {
+        sync(generation);
+        return redo.peek();
+    }
+
+    /**
+     * Moves the change returned by {@link #peekUndo} to the redo history.
+     *
+     * @param redone the entry that reapplies it (its task may be a fresh copy)
+     */
+    void undone(Entry redone) {
+        undo.pop();
+        push(redo, redone);
+    }
+
+    /**
+     * Moves the change returned by {@link #peekRedo} back to the undo history.
+     *
+     * @param undoable the entry that reverses it again
+     */
+    void redone(Entry undoable) {
+        redo.pop();
+        push(undo, undoable);
+    }
+
+    /**
+     * Forgets the change returned by {@link #peekUndo} because it can no longer be undone.
+     */
+    void dropUndo() {
+        undo.pop();
+    }
+
+    /**
+     * Forgets the change returned by {@link #peekRedo} because it can no longer be redone.
+     */
+    void dropRedo() {
+        redo.pop();
+    }
+
+    private void push(Deque<Entry> history, Entry entry) {
+        if (limit == 0) {
+            return;
+        }
+        history.push(entry);
+        if (history.size() > limit) {
+            history.removeLast();
+        }
+    }
+
+    private void sync(int generation) {
+        if (generation != this.generation) {
+            undo.clear();
+            redo.clear();
+            this.generation = generation;
+        }
+    }
+}
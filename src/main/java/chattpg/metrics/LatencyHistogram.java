@@ -0,0 +1,108 @@
+package chattpg.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, lock-free histogram of durations in nanoseconds, in the style
+ * of HdrHistogram.
+ * <p>
+ * Values below 64 ns get a bucket each; above that every power of two is split
+ * into 32 equal sub-buckets, so any recorded value is reported within about 3%
+ * and the whole range up to {@link #MAX_TRACKABLE} fits in about a thousand
+ * counters. Recording is a few arithmetic operations and one atomic increment,
+ * cheap enough to time every command, and may happen from any thread.
+ */
+public final class LatencyHistogram {
+    /** Largest value tracked exactly (about 18 minutes); larger values count as this. */
+    public static final long MAX_TRACKABLE = 1L << 40;
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int LINEAR_LIMIT = SUB_COUNT * 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_TRACKABLE) + 1);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_TRACKABLE);
+        counts.incrementAndGet(indexOf(value));
+        total.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long count() {
+        return total.sum();
+    }
+
+    /**
+     * @return mean of the recorded values in nanoseconds, or 0 if there are none
+     */
+    public double mean() {
+        long count = total.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * @return largest recorded value in nanoseconds
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value below which the given share of recorded values fall,
+     * rounded up to the top of its bucket (never above the maximum recorded).
+     *
+     * @param percentile a percentile between 0 and 100, e.g. 99.9
+     * @return the value in nanoseconds, or 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        long count = total.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Maps a value to its bucket: the value itself below {@link #LINEAR_LIMIT},
+     * otherwise its power of two and its top {@code SUB_BITS + 1} bits.
+     */
+    private static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long sub = index % SUB_COUNT + SUB_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,127 @@
+package chattpg.model;
+
+import java.text.ParsePosition;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Best-effort parser turning the free-text {@code /by}, {@code /from} and
+ * {@code /to} values of tasks into {@link LocalDateTime}s.
+ * <p>
+ * Recognised forms (date-only values mean the start of that day):
+ * <pre>
+ *   2025-10-01          2025-10-01 1400     2025-10-01 14:00     2025-10-01T14:00
+ *   1/10/2025           1/10/2025 1400      1/10/2025 14:00
+ * </pre>
+ * Anything else (e.g. "June 6th") is left as plain text and the parser
+ * returns null, so existing tasks keep working unchanged.
+ */
+public final class DateTimeParser {
+    private static final List<DateTimeFormatter> DATE_TIME_FORMATS = List.of(
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HHmm"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm"),
+            DateTimeFormatter.ofPattern("d/M/yyyy HHmm"),
+            DateTimeFormatter.ofPattern("d/M/yyyy HH:mm"));
+    private static final List<DateTimeFormatter> DATE_FORMATS = List.of(
+            DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+            DateTimeFormatter.ofPattern("d/M/yyyy"));
+
+    private DateTimeParser() {
+    }
+
+    /**
+     * Parses a date or date-time.
+     *
+     * @param text user-entered value
+     * @return the parsed date-time (start of day for date-only values), or null
+     *         if the text is not in a recognised form
+     */
+    public static LocalDateTime parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.trim();
+        // Every supported form starts with a digit, so most free text is rejected here.
+        if (trimmed.isEmpty() || !Character.isDigit(trimmed.charAt(0))) {
+            return null;
+        }
+        for (DateTimeFormatter format : DATE_TIME_FORMATS) {
+            if (matches(format, trimmed)) {
+                try {
+                    return LocalDateTime.parse(trimmed, format);
+                } catch (DateTimeParseException e) {
+                    return null; // right shape but impossible value, e.g. month 13
+                }
+            }
+        }
+        LocalDate date = parseDate(trimmed);
+        return date == null ? null : date.atStartOfDay();
+    }
+
+    /**
+     * Parses the upper bound of a range. Date-only values cover the whole day,
+     * so they map to the start of the following day.
+     *
+     * @param text user-entered value
+     * @return exclusive upper bound, or null if the text is not recognised
+     */
+    public static LocalDateTime parseRangeEnd(String text) {
+        String trimmed = text == null ? "" : text.trim();
+        LocalDate date = parseDate(trimmed);
+        if (date != null) {
+            return date.plusDays(1).atStartOfDay();
+        }
+        LocalDateTime dateTime = parse(trimmed);
+        return dateTime == null ? null : dateTime.plusMinutes(1);
+    }
+
+    /**
+     * Parses a date-only value.
+     *
+     * @param text user-entered value
+     * @return the date, or null if the text is not a recognised date
+     */
+    public static LocalDate parseDate(String text) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.trim();
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            if (matches(format, trimmed)) {
+                try {
+                    return LocalDate.parse(trimmed, format);
+                } catch (DateTimeParseException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Formats a date-time in a form {@link #parse(String)} reads back, e.g. for
+     * the occurrences of a recurring task.
+     *
+     * @param value    the date-time
+     * @param withTime false to write the date only, e.g. when the original value had no time
+     * @return {@code 2025-10-01 1400}, or {@code 2025-10-01} without the time
+     */
+    public static String format(LocalDateTime value, boolean withTime) {
+        return (withTime ? DATE_TIME_FORMATS.get(0) : DATE_FORMATS.get(0)).format(value);
+    }
+
+    /**
+     * Checks whether the whole text has the shape of the format without
+     * throwing, since most free-text values match none of the formats and
+     * exceptions would dominate load time for large task files.
+     */
+    private static boolean matches(DateTimeFormatter format, String text) {
+        ParsePosition position = new ParsePosition(0);
+        return format.parseUnresolved(text, position) != null && position.getErrorIndex() < 0
+                && position.getIndex() == text.length();
+    }
+}
@@ -1,12 +1,18 @@
 package chattpg.model;
 
+import java.time.LocalDateTime;
+
 /**
  * A {@link Task} with an associated deadline ("/by" value).
  * Represents work that must be completed before or by a specific time/date.
+ * The raw {@code /by} text is kept for display; when it is a recognised date
+ * (see {@link DateTimeParser}) the parsed value is also available for
+ * date-based queries.
  */
 public class Deadline extends Task {
 
     private final String by;
+    private final LocalDateTime byDateTime;
 
     /**
      * Creates a deadline task.
@@ -18,6 +24,7 @@ public class Deadline extends Task {
     public Deadline(String description, String by) {
         super(description);
         this.by = requireNonBlank(by, "deadline (/by)");
+        this.byDateTime = DateTimeParser.parse(this.by);
     }
 
     /**
@@ -29,11 +36,20 @@ public class Deadline extends Task {
         return by;
     }
 
+    /**
+     * Returns the deadline as a date-time if the {@code /by} text is a recognised date.
+     *
+     * @return parsed deadline, or null for free-text values such as "Sunday"
+     */
+    public LocalDateTime getByDateTime() {
+        return byDateTime;
+    }
+
     /**
      * String form used for UI listing, prefixed with [D] and including the deadline.
      */
     @Override
-    public String toString() {
-        return "[D]" + super.toString() + " (by: " + by + ")";
+    protected String render() {
+        return "[D]" + super.render() + " (by: " + by + ")";
     }
 }
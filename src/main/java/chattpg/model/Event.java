@@ -1,9 +1,13 @@
 package chattpg.model;
 import static chattpg.model.Task.requireNonBlank;
 
+import java.time.LocalDateTime;
+
 public class Event extends Task { 
     private final String from;
     private final String to;
+    private final LocalDateTime fromDateTime;
+    private final LocalDateTime toDateTime;
 
     public Event(String description, String from, String to) {
         super(description);
@@ -12,6 +16,8 @@ public class Event extends Task {
         if (this.from.equals(this.to)) {
             throw new IllegalArgumentException("/from and /to must differ");
         }
+        this.fromDateTime = DateTimeParser.parse(this.from);
+        this.toDateTime = DateTimeParser.parse(this.to);
     }
 
     public String getFrom() {
@@ -22,9 +28,19 @@ public class Event extends Task {
         return to;
     }
 
+    /** Returns the parsed start, or null if /from is not a recognised date. */
+    public LocalDateTime getFromDateTime() {
+        return fromDateTime;
+    }
+
+    /** Returns the parsed end, or null if /to is not a recognised date. */
+    public LocalDateTime getToDateTime() {
+        return toDateTime;
+    }
+
     @Override
-    public String toString() {
-        return "[E]" + super.toString() + " (from: " + from + " to: " + to + ")";
+    protected String render() {
+        return "[E]" + super.render() + " (from: " + from + " to: " + to + ")";
     }
     
 }
@@ -0,0 +1,154 @@
+package chattpg.model;
+
+import java.util.BitSet;
+
+/**
+ * The repeat rule of a recurring task and which of its occurrences are done.
+ * <p>
+ * Occurrences are numbered from 0 (the anchor) and never stored one by one:
+ * only the numbers of done occurrences are kept, and they are written as
+ * ranges, e.g. {@code every week; done 0-11,13}. A series marked week after
+ * week therefore stays a single short line however long it runs.
+ * <p>
+ * {@link #markNext()} always marks the earliest occurrence that is not done
+ * and {@link #unmarkLast()} unmarks the latest done one, so each reverses the
+ * other and replaying them from the journal is deterministic.
+ */
+public final class Occurrences {
+    private static final String DONE = "; done ";
+
+    private final Recurrence rule;
+    private final BitSet done;
+
+    /**
+     * Creates the state of a new series, with no occurrence done.
+     *
+     * @param rule how often the task repeats
+     */
+    public Occurrences(Recurrence rule) {
+        this(rule, new BitSet());
+    }
+
+    private Occurrences(Recurrence rule, BitSet done) {
+        this.rule = rule;
+        this.done = done;
+    }
+
+    /**
+     * Parses the form written by {@link #toString()}.
+     *
+     * @param text e.g. {@code every 2 weeks} or {@code every month; done 0-2}
+     * @return the parsed state
+     * @throws IllegalArgumentException if the text is not in that form
+     */
+    public static Occurrences parse(String text) {
+        int split = text.indexOf(DONE);
+        Recurrence rule = Recurrence.parse(split < 0 ? text : text.substring(0, split));
+        BitSet done = new BitSet();
+        if (split >= 0) {
+            for (String part : text.substring(split + DONE.length()).split(",")) {
+                int dash = part.indexOf('-');
+                try {
+                    int from = Integer.parseInt(dash < 0 ? part.trim() : part.substring(0, dash).trim());
+                    int to = dash < 0 ? from : Integer.parseInt(part.substring(dash + 1).trim());
+                    if (from < 0 || to < from || to == Integer.MAX_VALUE) {
+                        throw new IllegalArgumentException("invalid done occurrences '" + part.trim() + "'");
+                    }
+                    done.set(from, to + 1);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("invalid done occurrences '" + part.trim() + "'");
+                }
+            }
+        }
+        return new Occurrences(rule, done);
+    }
+
+    /**
+     * Parses the form written by {@link #toString()} if the text has its shape.
+     *
+     * @return the parsed state, or null if the text does not start with a repeat rule
+     * @throws IllegalArgumentException if the rule is valid but the done occurrences are not
+     */
+    public static Occurrences parseIfRule(String text) {
+        int split = text.indexOf(DONE);
+        try {
+            Recurrence.parse(split < 0 ? text : text.substring(0, split));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return parse(text);
+    }
+
+    /** @return how often the task repeats */
+    public Recurrence getRule() {
+        return rule;
+    }
+
+    /**
+     * @param k 0-based occurrence number
+     * @return true if that occurrence is done
+     */
+    public boolean isDone(int k) {
+        return done.get(k);
+    }
+
+    /** @return true if at least one occurrence is done */
+    public boolean hasDone() {
+        return !done.isEmpty();
+    }
+
+    /** @return the number of the earliest occurrence that is not done */
+    public int firstUndone() {
+        return done.nextClearBit(0);
+    }
+
+    /**
+     * Marks the earliest occurrence that is not done.
+     *
+     * @return its number
+     */
+    int markNext() {
+        int k = firstUndone();
+        done.set(k);
+        return k;
+    }
+
+    /**
+     * Unmarks the latest done occurrence.
+     *
+     * @return its number
+     * @throws IllegalStateException if no occurrence is done
+     */
+    int unmarkLast() {
+        if (done.isEmpty()) {
+            throw new IllegalStateException("No occurrence of this task is marked as done.");
+        }
+        int k = done.length() - 1;
+        done.clear(k);
+        return k;
+    }
+
+    /**
+     * @return the rule and any done occurrences, e.g. {@code every week; done 0-3,5}
+     */
+    @Override
+    public String toString() {
+        if (done.isEmpty()) {
+            return rule.toString();
+        }
+        StringBuilder text = new StringBuilder(rule.toString()).append(DONE);
+        int from = done.nextSetBit(0);
+        while (from >= 0) {
+            int to = done.nextClearBit(from) - 1;
+            if (text.charAt(text.length() - 1) != ' ') {
+                text.append(',');
+            }
+            text.append(from);
+            if (to > from) {
+                text.append('-').append(to);
+            }
+            from = done.nextSetBit(to + 1);
+        }
+        return text.toString();
+    }
+}
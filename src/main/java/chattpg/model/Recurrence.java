@@ -0,0 +1,157 @@
+package chattpg.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+/**
+ * How often a recurring task repeats: every {@code n} days, weeks or months.
+ * <p>
+ * Occurrence {@code k} is always computed from the first one (the anchor), so
+ * monthly series do not drift: a series anchored on 31 January falls on the
+ * last day of shorter months and returns to the 31st whenever it can.
+ * Immutable.
+ */
+public final class Recurrence {
+    /** The calendar unit a series repeats in. */
+    public enum Unit {
+        DAY(ChronoUnit.DAYS), WEEK(ChronoUnit.WEEKS), MONTH(ChronoUnit.MONTHS);
+
+        private final ChronoUnit chronoUnit;
+
+        Unit(ChronoUnit chronoUnit) {
+            this.chronoUnit = chronoUnit;
+        }
+    }
+
+    private static final int MAX_INTERVAL = 1000;
+
+    private final Unit unit;
+    private final int interval;
+
+    /**
+     * @param unit     the calendar unit
+     * @param interval number of units between occurrences, 1 to 1000
+     * @throws IllegalArgumentException if the interval is out of range
+     */
+    public Recurrence(Unit unit, int interval) {
+        if (interval < 1 || interval > MAX_INTERVAL) {
+            throw new IllegalArgumentException("a task can repeat every 1 to " + MAX_INTERVAL + " "
+                    + unit.name().toLowerCase(Locale.ROOT) + "s");
+        }
+        this.unit = unit;
+        this.interval = interval;
+    }
+
+    /**
+     * Parses a rule such as {@code daily}, {@code week}, {@code 2 weeks} or
+     * {@code every 3 months} (case-insensitive).
+     *
+     * @param text the rule
+     * @return the recurrence
+     * @throws IllegalArgumentException if the text is not a rule
+     */
+    public static Recurrence parse(String text) {
+        String rule = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        if (rule.startsWith("every ")) {
+            rule = rule.substring("every ".length()).trim();
+        }
+        switch (rule) {
+        case "daily":
+            return new Recurrence(Unit.DAY, 1);
+        case "weekly":
+            return new Recurrence(Unit.WEEK, 1);
+        case "monthly":
+            return new Recurrence(Unit.MONTH, 1);
+        default:
+            break;
+        }
+        int space = rule.indexOf(' ');
+        int interval = 1;
+        String unitName = rule;
+        if (space > 0) {
+            try {
+                interval = Integer.parseInt(rule.substring(0, space));
+            } catch (NumberFormatException e) {
+                throw notARule(text);
+            }
+            unitName = rule.substring(space + 1).trim();
+        }
+        if (unitName.endsWith("s")) {
+            unitName = unitName.substring(0, unitName.length() - 1);
+        }
+        for (Unit unit : Unit.values()) {
+            if (unit.name().equalsIgnoreCase(unitName)) {
+                return new Recurrence(unit, interval);
+            }
+        }
+        throw notARule(text);
+    }
+
+    private static IllegalArgumentException notARule(String text) {
+        return new IllegalArgumentException("'" + text + "' is not a repeat rule (e.g. daily, weekly, 2 weeks, month)");
+    }
+
+    /** @return the calendar unit */
+    public Unit getUnit() {
+        return unit;
+    }
+
+    /** @return number of units between occurrences */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Returns the date-time of one occurrence.
+     *
+     * @param anchor the first occurrence
+     * @param k      0-based occurrence number
+     * @return the anchor moved by {@code k} intervals
+     */
+    public LocalDateTime occurrence(LocalDateTime anchor, int k) {
+        return anchor.plus((long) k * interval, unit.chronoUnit);
+    }
+
+    /**
+     * Returns the first occurrence at or after a point in time, without
+     * stepping through the earlier ones.
+     *
+     * @param anchor the first occurrence
+     * @param time   the point in time
+     * @return the smallest {@code k} whose occurrence is not before {@code time}
+     */
+    public int firstAtOrAfter(LocalDateTime anchor, LocalDateTime time) {
+        if (!time.isAfter(anchor)) {
+            return 0;
+        }
+        // Whole units elapsed is exact for days and weeks and at most one off for months.
+        long k = Math.min(Integer.MAX_VALUE - 1, unit.chronoUnit.between(anchor, time) / interval);
+        while (k > 0 && !occurrence(anchor, (int) k - 1).isBefore(time)) {
+            k--;
+        }
+        while (occurrence(anchor, (int) k).isBefore(time)) {
+            k++;
+        }
+        return (int) k;
+    }
+
+    /**
+     * @return the rule as shown and stored, e.g. {@code every week} or {@code every 2 months}
+     */
+    @Override
+    public String toString() {
+        String name = unit.name().toLowerCase(Locale.ROOT);
+        return interval == 1 ? "every " + name : "every " + interval + " " + name + "s";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Recurrence r && r.unit == unit && r.interval == interval;
+    }
+
+    @Override
+    public int hashCode() {
+        return unit.hashCode() * 31 + interval;
+    }
+}
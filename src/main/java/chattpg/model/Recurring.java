@@ -0,0 +1,29 @@
+package chattpg.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A task that repeats: a {@link RecurringDeadline} or {@link RecurringEvent}.
+ * <p>
+ * The series is stored as a single task, and its occurrences are only
+ * generated when a date query or the listing needs them. Marking the series
+ * done or undone ({@link Task#markTaskAsDone()}, {@link Task#markTaskAsUndone()})
+ * marks its earliest undone occurrence or unmarks its latest done one; the
+ * series itself is never done, as it always has another occurrence.
+ */
+public interface Recurring {
+    /** @return the repeat rule and the done occurrences */
+    Occurrences getOccurrences();
+
+    /** @return when the first occurrence is due or starts */
+    LocalDateTime getAnchor();
+
+    /**
+     * Builds one occurrence as a plain, one-off task for display. Changing it
+     * does not change the series.
+     *
+     * @param k 0-based occurrence number
+     * @return a deadline or event dated like that occurrence, done if the occurrence is
+     */
+    Task occurrence(int k);
+}
@@ -0,0 +1,84 @@
+package chattpg.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A {@link Deadline} that repeats, e.g. {@code pay rent /by 2025-10-01 /every month}.
+ * The {@code /by} date is the first occurrence and must be a recognised date
+ * (see {@link DateTimeParser}); the others follow from the {@link Recurrence}.
+ * See {@link Recurring} for how the occurrences are marked.
+ */
+public class RecurringDeadline extends Deadline implements Recurring {
+    private final Occurrences occurrences;
+    private final boolean withTime;
+
+    /**
+     * Creates a recurring deadline.
+     *
+     * @param description non-blank description of the task
+     * @param by          the first deadline, a recognised date or date-time
+     * @param occurrences the repeat rule and done occurrences; owned by the task from now on
+     * @throws IllegalArgumentException if a parameter is blank or {@code by} is not a date
+     */
+    public RecurringDeadline(String description, String by, Occurrences occurrences) {
+        super(description, by);
+        if (getByDateTime() == null) {
+            throw new IllegalArgumentException("a repeating deadline needs a date /by, e.g. 2025-10-01");
+        }
+        this.occurrences = occurrences;
+        this.withTime = DateTimeParser.parseDate(getBy()) == null;
+    }
+
+    @Override
+    public Occurrences getOccurrences() {
+        return occurrences;
+    }
+
+    @Override
+    public LocalDateTime getAnchor() {
+        return getByDateTime();
+    }
+
+    @Override
+    public Task occurrence(int k) {
+        Deadline deadline = new Deadline(description, dateOf(k));
+        if (occurrences.isDone(k)) {
+            deadline.markTaskAsDone();
+        }
+        return deadline;
+    }
+
+    /**
+     * Marks the earliest occurrence that is not done yet.
+     */
+    @Override
+    public void markTaskAsDone() {
+        occurrences.markNext();
+        invalidateRendered();
+    }
+
+    /**
+     * Unmarks the latest done occurrence.
+     *
+     * @throws IllegalStateException if no occurrence is done
+     */
+    @Override
+    public void markTaskAsUndone() {
+        occurrences.unmarkLast();
+        invalidateRendered();
+    }
+
+    private String dateOf(int k) {
+        return DateTimeParser.format(occurrences.getRule().occurrence(getByDateTime(), k), withTime);
+    }
+
+    /**
+     * String form used for UI listing: the deadline, the rule and the next
+     * occurrence that is not done.
+     */
+    @Override
+    protected String render() {
+        return "[D][ ] " + description + " (by: " + getBy() + ", " + occurrences.getRule() + ", next: "
+                + dateOf(occurrences.firstUndone()) + ")";
+    }
+}
@@ -0,0 +1,95 @@
+package chattpg.model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * An {@link Event} that repeats, e.g.
+ * {@code event standup /from 2025-10-01 0900 /to 2025-10-01 0915 /every day}.
+ * Both ends of the first occurrence must be recognised dates (see
+ * {@link DateTimeParser}); every later occurrence starts as the
+ * {@link Recurrence} says and lasts as long as the first.
+ * See {@link Recurring} for how the occurrences are marked.
+ */
+public class RecurringEvent extends Event implements Recurring {
+    private final Occurrences occurrences;
+    private final Duration length;
+    private final boolean fromWithTime;
+    private final boolean toWithTime;
+
+    /**
+     * Creates a recurring event.
+     *
+     * @param description non-blank description of the event
+     * @param from        start of the first occurrence, a recognised date or date-time
+     * @param to          end of the first occurrence, a recognised date or date-time
+     * @param occurrences the repeat rule and done occurrences; owned by the task from now on
+     * @throws IllegalArgumentException if a parameter is blank, {@code from} equals
+     *                                  {@code to}, or either is not a date
+     */
+    public RecurringEvent(String description, String from, String to, Occurrences occurrences) {
+        super(description, from, to);
+        if (getFromDateTime() == null || getToDateTime() == null) {
+            throw new IllegalArgumentException("a repeating event needs dates for /from and /to, e.g. 2025-10-01 0900");
+        }
+        if (getToDateTime().isBefore(getFromDateTime())) {
+            throw new IllegalArgumentException("a repeating event must not end before it starts");
+        }
+        this.occurrences = occurrences;
+        this.length = Duration.between(getFromDateTime(), getToDateTime());
+        this.fromWithTime = DateTimeParser.parseDate(getFrom()) == null;
+        this.toWithTime = DateTimeParser.parseDate(getTo()) == null;
+    }
+
+    @Override
+    public Occurrences getOccurrences() {
+        return occurrences;
+    }
+
+    @Override
+    public LocalDateTime getAnchor() {
+        return getFromDateTime();
+    }
+
+    @Override
+    public Task occurrence(int k) {
+        LocalDateTime start = occurrences.getRule().occurrence(getFromDateTime(), k);
+        Event event = new Event(description, DateTimeParser.format(start, fromWithTime),
+                DateTimeParser.format(start.plus(length), toWithTime));
+        if (occurrences.isDone(k)) {
+            event.markTaskAsDone();
+        }
+        return event;
+    }
+
+    /**
+     * Marks the earliest occurrence that is not done yet.
+     */
+    @Override
+    public void markTaskAsDone() {
+        occurrences.markNext();
+        invalidateRendered();
+    }
+
+    /**
+     * Unmarks the latest done occurrence.
+     *
+     * @throws IllegalStateException if no occurrence is done
+     */
+    @Override
+    public void markTaskAsUndone() {
+        occurrences.unmarkLast();
+        invalidateRendered();
+    }
+
+    /**
+     * String form used for UI listing: the first occurrence, the rule and
+     * the start of the next occurrence that is not done.
+     */
+    @Override
+    protected String render() {
+        LocalDateTime next = occurrences.getRule().occurrence(getFromDateTime(), occurrences.firstUndone());
+        return "[E][ ] " + description + " (from: " + getFrom() + " to: " + getTo() + ", "
+                + occurrences.getRule() + ", next: " + DateTimeParser.format(next, fromWithTime) + ")";
+    }
+}
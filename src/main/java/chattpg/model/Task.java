@@ -4,10 +4,20 @@ package chattpg.model;
  * Minimal base class representing a task with a textual description and
  * a completion flag. Subclasses (e.g., {@link Todo}, {@link Deadline},
  * {@link Event}) extend this with additional attributes.
+ * <p>
+ * Everything but the done flag is immutable, so the display string is built
+ * once by {@link #render()} and reused by every {@code list} and {@code find}
+ * until the flag changes (or, for {@link Recurring} tasks, the done occurrences).
+ * The cache lives in the task object, so it only pays off where the store keeps
+ * that object: the indexed store, and the added or replaced tasks of the lazy
+ * store. The columnar store and the mapped tasks of the lazy store build a new
+ * task on every read and render it afresh, which keeps them as small as they
+ * are meant to be.
  */
 public class Task {
     private boolean done;
     protected final String description;
+    private String rendered;
 
     /**
      * Creates a new task with the given description, initially not done.
@@ -44,11 +54,26 @@ public class Task {
     } 
 
     /**
-     * Human-readable status with a checkbox indicating done/undone and the
-     * task description.
+     * Human-readable form for listing, as built by {@link #render()}. Cached
+     * until the done flag changes.
      */
     @Override
-    public String toString() {
+    public final String toString() {
+        String text = rendered;
+        if (text == null) {
+            text = render();
+            rendered = text;
+        }
+        return text;
+    }
+
+    /**
+     * Builds the display string: a checkbox indicating done/undone and the
+     * task description. Subclasses prepend their type and append their fields.
+     *
+     * @return the display string
+     */
+    protected String render() {
         if (done) {
             return "[X] " + this.description;
         }
@@ -65,6 +90,7 @@ public class Task {
             throw new IllegalStateException("Task already marked as done.");
         }
         this.done = true;
+        this.rendered = null;
     }
 
     /**
@@ -77,6 +103,15 @@ public class Task {
             throw new IllegalStateException("Task already marked as undone.");
         }
         this.done = false;
+        this.rendered = null;
+    }
+
+    /**
+     * Drops the cached display string, for subclasses whose display depends
+     * on more than the done flag.
+     */
+    protected final void invalidateRendered() {
+        this.rendered = null;
     }
 
     /**
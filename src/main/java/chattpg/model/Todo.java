@@ -19,7 +19,7 @@ public class Todo extends Task {
      * String form for UI, prefixed with [T].
      */
     @Override
-    public String toString() {
-        return "[T]" + super.toString();
+    protected String render() {
+        return "[T]" + super.render();
     }
 }
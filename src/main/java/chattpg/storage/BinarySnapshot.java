@@ -0,0 +1,403 @@
+package chattpg.storage;
+
+import chattpg.model.Deadline;
+import chattpg.model.Event;
+import chattpg.model.Occurrences;
+import chattpg.model.Recurring;
+import chattpg.model.RecurringDeadline;
+import chattpg.model.RecurringEvent;
+import chattpg.model.Task;
+import chattpg.model.Todo;
+import chattpg.ui.OutputSink;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact, versioned binary snapshot of a task list.
+ * <p>
+ * Layout (all integers are unsigned LEB128 varints unless noted):
+ * <pre>
+ *   magic        4 bytes "CTPG"
+ *   version      1 byte  (currently 3)
+ *   tableLength  byte length of the string table
+ *   table        stringCount, then stringCount x (byteLength, UTF-8 bytes)
+ *   tableCrc     4 bytes, CRC-32C of the table
+ *   blocks       any number of task blocks, each:
+ *                  taskCount (at least 1), byteLength, taskCount x record,
+ *                  4-byte CRC-32C of the records
+ *   end          a taskCount of 0
+ *
+ *   record       header byte: bits 0-1 type (0 todo, 1 deadline, 2 event), bit 2 done,
+ *                  bit 3 recurring
+ *                description (byteLength, UTF-8 bytes)
+ *                deadline: string-table index of /by
+ *                event:    string-table indexes of /from and /to
+ *                recurring: repeat rule and done occurrences (byteLength, UTF-8 bytes)
+ * </pre>
+ * Date-like values ({@code /by}, {@code /from}, {@code /to}) repeat heavily in
+ * real lists, so each distinct value is stored once in the string table.
+ * <p>
+ * Records are grouped into blocks of about {@value #BLOCK_BYTES} bytes, each
+ * with its own checksum: a corrupted block is reported and skipped while the
+ * other blocks still load, and a file cut short keeps the blocks before the
+ * cut. Version 2 files (no recurring tasks) and version 1 files (one
+ * unchecked stream of records after a task count) can still be read.
+ */
+public final class BinarySnapshot {
+    static final byte[] MAGIC = {'C', 'T', 'P', 'G'};
+    static final int VERSION = 3;
+    static final int BLOCK_BYTES = 1 << 16;
+
+    private static final int MAX_BLOCK_BYTES = 1 << 28;
+
+    private static final int TYPE_TODO = 0;
+    private static final int TYPE_DEADLINE = 1;
+    private static final int TYPE_EVENT = 2;
+    private static final int TYPE_MASK = 0b11;
+    private static final int DONE_BIT = 0b100;
+    private static final int RECURRING_BIT = 0b1000;
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * Writes the tasks to a binary snapshot file, replacing any existing file.
+     *
+     * @param tasks tasks to persist, in order
+     * @param file  destination file
+     * @throws IOException if writing fails
+     */
+    public static void write(List<Task> tasks, File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file, false)) {
+            write(tasks, out);
+        }
+    }
+
+    /**
+     * Writes the tasks as a binary snapshot to the stream. The stream is flushed
+     * but not closed.
+     *
+     * @param tasks tasks to persist, in order
+     * @param out   destination stream
+     * @throws IOException if writing fails
+     */
+    public static void write(List<Task> tasks, OutputStream out) throws IOException {
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (Task t : tasks) {
+            if (t instanceof Deadline d) {
+                intern(d.getBy(), stringIndex, strings);
+            } else if (t instanceof Event e) {
+                intern(e.getFrom(), stringIndex, strings);
+                intern(e.getTo(), stringIndex, strings);
+            }
+        }
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+        CRC32C crc = new CRC32C();
+        BlockBuffer block = new BlockBuffer();
+        DataOutputStream blockData = new DataOutputStream(block);
+        writeVarInt(blockData, strings.size());
+        for (String s : strings) {
+            writeString(blockData, s);
+        }
+        writeVarInt(data, block.size());
+        writeChecked(data, block, crc);
+        int blockTasks = 0;
+        for (Task t : tasks) {
+            int type;
+            if (t instanceof Deadline) {
+                type = TYPE_DEADLINE;
+            } else if (t instanceof Event) {
+                type = TYPE_EVENT;
+            } else {
+                type = TYPE_TODO;
+            }
+            blockData.writeByte(type | (t.isDone() ? DONE_BIT : 0) | (t instanceof Recurring ? RECURRING_BIT : 0));
+            writeString(blockData, t.getDescription());
+            if (t instanceof Deadline d) {
+                writeVarInt(blockData, stringIndex.get(d.getBy()));
+            } else if (t instanceof Event e) {
+                writeVarInt(blockData, stringIndex.get(e.getFrom()));
+                writeVarInt(blockData, stringIndex.get(e.getTo()));
+            }
+            if (t instanceof Recurring r) {
+                writeString(blockData, r.getOccurrences().toString());
+            }
+            blockTasks++;
+            if (block.size() >= BLOCK_BYTES) {
+                writeBlock(data, blockTasks, block, crc);
+                blockTasks = 0;
+            }
+        }
+        if (blockTasks > 0) {
+            writeBlock(data, blockTasks, block, crc);
+        }
+        writeVarInt(data, 0);
+        data.flush();
+    }
+
+    private static void writeBlock(DataOutputStream data, int taskCount, BlockBuffer block, CRC32C crc)
+            throws IOException {
+        writeVarInt(data, taskCount);
+        writeVarInt(data, block.size());
+        writeChecked(data, block, crc);
+    }
+
+    /**
+     * Writes the buffered bytes followed by their CRC-32C and empties the buffer.
+     */
+    private static void writeChecked(DataOutputStream data, BlockBuffer block, CRC32C crc)
+            throws IOException {
+        block.writeTo(data);
+        data.writeInt(block.checksum(crc));
+        block.reset();
+    }
+
+    /**
+     * Reads every task from a binary snapshot file.
+     *
+     * @param file     snapshot file
+     * @param messages receives a line for every corrupted block skipped
+     * @return tasks in snapshot order
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static ArrayList<Task> read(File file, OutputSink messages) throws IOException {
+        ArrayList<Task> tasks = new ArrayList<>();
+        try (InputStream in = new FileInputStream(file)) {
+            read(in, tasks::add, messages);
+        }
+        return tasks;
+    }
+
+    /**
+     * Decodes a binary snapshot from the stream, handing each task to the sink.
+     *
+     * @param in       source stream; not closed by this method
+     * @param sink     receives each task in snapshot order
+     * @param messages receives a line for every corrupted block skipped
+     * @return number of tasks read
+     * @throws IOException if reading fails or the data is not a valid snapshot
+     */
+    public static int read(InputStream in, Consumer<Task> sink, OutputSink messages) throws IOException {
+        return new Decoder(in, messages).decode(sink);
+    }
+
+    private static void intern(String value, Map<String, Integer> index, List<String> strings) {
+        if (!index.containsKey(value)) {
+            index.put(value, strings.size());
+            strings.add(value);
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(data, bytes.length);
+        data.write(bytes);
+    }
+
+    static void writeVarInt(DataOutputStream data, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            data.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream data) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = data.read();
+            if (b < 0) {
+                throw new EOFException("truncated snapshot");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint in snapshot");
+    }
+
+    /**
+     * Byte buffer for one block that can checksum its contents without copying them.
+     */
+    private static final class BlockBuffer extends ByteArrayOutputStream {
+        BlockBuffer() {
+            super(BLOCK_BYTES + 1024);
+        }
+
+        int checksum(CRC32C crc) {
+            crc.reset();
+            crc.update(buf, 0, count);
+            return (int) crc.getValue();
+        }
+    }
+
+    /**
+     * Stateful reader holding the input stream and reusable byte buffers for
+     * blocks and string decoding, so neither needs a temporary array each.
+     */
+    private static final class Decoder {
+        private final DataInputStream data;
+        private final OutputSink messages;
+        private final CRC32C crc = new CRC32C();
+        private byte[] scratch = new byte[256];
+        private byte[] block = new byte[BLOCK_BYTES];
+
+        Decoder(InputStream in, OutputSink messages) {
+            this.data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+            this.messages = messages;
+        }
+
+        int decode(Consumer<Task> sink) throws IOException {
+            byte[] magic = new byte[MAGIC.length];
+            data.readFully(magic);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IOException("not a ChatTPG binary snapshot");
+                }
+            }
+            int version = data.readUnsignedByte();
+            if (version == 1) {
+                return decodeVersion1(sink);
+            } else if (version != 2 && version != VERSION) {
+                throw new IOException("unsupported snapshot version " + version);
+            }
+            DataInputStream table = readBlock();
+            if (table == null) {
+                throw new IOException("string table is corrupted (checksum mismatch)");
+            }
+            String[] strings = readStrings(table);
+            int count = 0;
+            int blockNumber = 0;
+            try {
+                int blockTasks;
+                while ((blockTasks = readVarInt(data)) > 0) {
+                    blockNumber++;
+                    DataInputStream block = readBlock();
+                    if (block == null) {
+                        messages.printf("Skipping corrupted snapshot block %d (%d tasks): checksum mismatch%n",
+                                blockNumber, blockTasks);
+                        continue;
+                    }
+                    for (int i = 0; i < blockTasks; i++) {
+                        sink.accept(readTask(block, strings, count + 1));
+                        count++;
+                    }
+                }
+            } catch (EOFException e) {
+                messages.printf("Snapshot ends early in block %d: kept the %d tasks before it%n", blockNumber,
+                        count);
+            }
+            return count;
+        }
+
+        /**
+         * Reads the original unchecked layout: string table, task count, records.
+         */
+        private int decodeVersion1(Consumer<Task> sink) throws IOException {
+            String[] strings = readStrings(data);
+            int count = readVarInt(data);
+            for (int i = 0; i < count; i++) {
+                sink.accept(readTask(data, strings, i + 1));
+            }
+            return count;
+        }
+
+        /**
+         * Reads one length-prefixed, checksummed section into a reusable buffer.
+         *
+         * @return a stream over the section, or null if its checksum does not match
+         */
+        private DataInputStream readBlock() throws IOException {
+            int length = readVarInt(data);
+            if (length < 0 || length > MAX_BLOCK_BYTES) {
+                throw new IOException("invalid snapshot block length " + length);
+            }
+            if (length > block.length) {
+                block = new byte[Math.max(length, block.length * 2)];
+            }
+            data.readFully(block, 0, length);
+            int expected = data.readInt();
+            crc.reset();
+            crc.update(block, 0, length);
+            if ((int) crc.getValue() != expected) {
+                return null;
+            }
+            return new DataInputStream(new ByteArrayInputStream(block, 0, length));
+        }
+
+        private String[] readStrings(DataInputStream in) throws IOException {
+            String[] strings = new String[readVarInt(in)];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(in);
+            }
+            return strings;
+        }
+
+        private Task readTask(DataInputStream in, String[] strings, int recordNumber) throws IOException {
+            int header = in.readUnsignedByte();
+            String description = readString(in);
+            Task task;
+            try {
+                switch (header & TYPE_MASK) {
+                case TYPE_TODO:
+                    task = new Todo(description);
+                    break;
+                case TYPE_DEADLINE: {
+                    String by = strings[readVarInt(in)];
+                    task = (header & RECURRING_BIT) != 0
+                            ? new RecurringDeadline(description, by, Occurrences.parse(readString(in)))
+                            : new Deadline(description, by);
+                    break;
+                }
+                case TYPE_EVENT: {
+                    String from = strings[readVarInt(in)];
+                    String to = strings[readVarInt(in)];
+                    task = (header & RECURRING_BIT) != 0
+                            ? new RecurringEvent(description, from, to, Occurrences.parse(readString(in)))
+                            : new Event(description, from, to);
+                    break;
+                }
+                default:
+                    throw new IOException("unknown task type in record " + recordNumber);
+                }
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException("invalid task record " + recordNumber + ": " + e.getMessage());
+            }
+            if ((header & DONE_BIT) != 0 && !(task instanceof Recurring)) {
+                task.markTaskAsDone();
+            }
+            return task;
+        }
+
+        private String readString(DataInputStream in) throws IOException {
+            int length = readVarInt(in);
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            in.readFully(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package chattpg.storage;
+
+/**
+ * Controls when journal records written by {@link Storage} reach the disk.
+ */
+public enum Durability {
+    /** Every record is written and forced to disk before the command returns. */
+    SYNC,
+    /**
+     * Records are buffered and flushed together (group commit) once the
+     * flush window elapses or the batch fills up, and always on close.
+     */
+    GROUP;
+
+    /**
+     * Parses a user-facing durability name, defaulting to {@link #GROUP}.
+     *
+     * @param value "sync" or "group" (case-insensitive); null selects the default
+     * @return the matching durability mode
+     */
+    public static Durability parse(String value) {
+        if (value != null && value.trim().equalsIgnoreCase("sync")) {
+            return SYNC;
+        }
+        return GROUP;
+    }
+}
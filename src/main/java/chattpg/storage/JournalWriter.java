@@ -0,0 +1,241 @@
+package chattpg.storage;
+
+import chattpg.ui.OutputSink;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only writer for the task journal.
+ * <p>
+ * In {@link Durability#SYNC} mode each record is flushed and forced to disk
+ * before {@link #append(String)} returns. In {@link Durability#GROUP} mode
+ * records accumulate in a buffer and are committed together when either the
+ * flush window elapses (checked by a background daemon thread) or the batch
+ * reaches its maximum size, turning many small writes into one write + fsync.
+ * <p>
+ * Every record ends with a {@link LineChecksum}, and a new journal starts with
+ * {@link #HEADER}, so replay can tell a record torn by a crash from a complete one.
+ * <p>
+ * All public methods are synchronized so the background flusher and the
+ * REPL thread never interleave partial records. An error on the flusher
+ * thread is kept and reported to the sink of the next call that has one.
+ */
+class JournalWriter {
+    /** First line of a journal whose records all carry a checksum. */
+    static final String HEADER = "# ChatTPG journal, checksummed records";
+
+    private final File file;
+    private final Durability durability;
+    private final int maxBatch;
+    private final ScheduledExecutorService flusher;
+    private FileOutputStream stream;
+    private BufferedWriter writer;
+    private final Runnable onFlushed;
+    private final StorageStats stats;
+    private final LineChecksum checksum = new LineChecksum();
+    private final StringBuilder line = new StringBuilder();
+    private int pending = 0;
+    private long flushedPosition = 0;
+    private String backgroundError;
+
+    /**
+     * Creates a journal writer. The file is opened lazily on the first append.
+     *
+     * @param file         journal file to append to
+     * @param durability   when appended records must reach the disk
+     * @param windowMillis maximum time a record may stay buffered in group mode
+     * @param maxBatch     number of buffered records that forces a group commit
+     * @param onFlushed    called after buffered records have reached the file
+     * @param stats        counts the bytes and records written and the fsync times
+     */
+    JournalWriter(File file, Durability durability, long windowMillis, int maxBatch, Runnable onFlushed,
+            StorageStats stats) {
+        this.file = file;
+        this.durability = durability;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.onFlushed = onFlushed;
+        this.stats = stats;
+        if (durability == Durability.GROUP) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "chattpg-journal-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Appends one record (a single line without terminator).
+     *
+     * @param record journal record to append
+     * @throws IOException if the record could not be written
+     */
+    synchronized void append(String record) throws IOException {
+        if (writer == null) {
+            open();
+        }
+        line.setLength(0);
+        line.append(record);
+        checksum.appendSuffix(line);
+        writer.append(line);
+        writer.newLine();
+        stats.journalRecordWritten();
+        pending++;
+        if (durability == Durability.SYNC || pending >= maxBatch) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all buffered records and forces them to disk.
+     *
+     * @throws IOException if the flush fails
+     */
+    synchronized void flush() throws IOException {
+        if (writer == null || pending == 0) {
+            return;
+        }
+        writer.flush();
+        long position = stream.getChannel().position();
+        stats.wrote(position - flushedPosition);
+        flushedPosition = position;
+        long start = System.nanoTime();
+        stream.getFD().sync();
+        stats.synced(System.nanoTime() - start);
+        pending = 0;
+        onFlushed.run();
+    }
+
+    /**
+     * @return true if records are buffered but not yet written to the file
+     */
+    synchronized boolean hasPending() {
+        return pending > 0;
+    }
+
+    /**
+     * Ends a mutation on the lock, telling it whether records are still
+     * buffered. Holding this writer's monitor keeps the flusher out until the
+     * lock has acted on that answer; otherwise a flush in between would find
+     * the mutation still running and the lease would never be released.
+     *
+     * @param lock the lock whose lease the flush releases
+     * @param out  receives errors
+     */
+    synchronized void endWrite(TaskFileLock lock, OutputSink out) {
+        reportBackgroundError(out);
+        lock.endWrite(pending > 0, out);
+    }
+
+    /**
+     * Drops any buffered records, closes the file and deletes it. Used after a
+     * snapshot has been written, since the snapshot already contains every change.
+     *
+     * @param out receives errors
+     * @return true if the journal no longer exists on disk
+     */
+    synchronized boolean reset(OutputSink out) {
+        pending = 0;
+        closeStream(out);
+        return !file.exists() || file.delete();
+    }
+
+    /**
+     * Closes the file without deleting it, so the next append opens the
+     * journal by name again. Used after another process replaced the journal.
+     * Must only be called when no records are buffered.
+     *
+     * @param out receives errors
+     */
+    synchronized void reopen(OutputSink out) {
+        closeStream(out);
+    }
+
+    /**
+     * Flushes outstanding records and stops the background flusher.
+     *
+     * @param out receives errors other than of the final flush
+     * @throws IOException if the final flush fails
+     */
+    synchronized void close(OutputSink out) throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        try {
+            flush();
+        } finally {
+            closeStream(out);
+            reportBackgroundError(out);
+        }
+    }
+
+    /**
+     * Reports an error the background flusher ran into since the last call.
+     *
+     * @param out receives the error
+     */
+    synchronized void reportBackgroundError(OutputSink out) {
+        if (backgroundError != null) {
+            out.println(backgroundError);
+            backgroundError = null;
+        }
+    }
+
+    private synchronized void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            backgroundError = "Error flushing task journal: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Opens the journal for appending. A new journal gets the header; if the
+     * last record was torn by a crash, it is terminated so the next record
+     * starts on a line of its own.
+     */
+    private void open() throws IOException {
+        long length = file.length();
+        boolean torn = length > 0 && lastByte() != '\n';
+        stream = new FileOutputStream(file, true);
+        flushedPosition = length;
+        writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        if (length == 0) {
+            writer.write(HEADER);
+            writer.newLine();
+        } else if (torn) {
+            writer.newLine();
+        }
+    }
+
+    private int lastByte() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(raf.length() - 1);
+            return raf.read();
+        }
+    }
+
+    private void closeStream(OutputSink out) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            out.println("Error closing task journal: " + e.getMessage());
+        }
+        writer = null;
+        stream = null;
+    }
+}
@@ -0,0 +1,232 @@
+package chattpg.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Per-line checksums for the text task file and the journal.
+ * <p>
+ * A checked line ends with {@code " #"} followed by the CRC-32C of the UTF-8
+ * bytes before it, as 8 lowercase hex digits:
+ * <pre>
+ *   T | 0 | read book #5f1c39a2
+ * </pre>
+ * A task file written with checksums starts with {@link #SNAPSHOT_HEADER}
+ * (the journal with {@link JournalWriter#HEADER}). Only in such a file is a
+ * suffix that does not match its content a sign of corruption. In a file
+ * without the header, e.g. one written by hand or by an older version, the
+ * suffix is only taken as a checksum if it matches, so a task that merely
+ * ends like one ({@code todo fix #deadbeef}) keeps its text, and lines
+ * without the suffix are accepted; in a file with the header they are torn
+ * and rejected.
+ * <p>
+ * Instances reuse a CRC and a scratch buffer, so they are not thread-safe.
+ */
+final class LineChecksum {
+    /** Length of the {@code " #xxxxxxxx"} suffix. */
+    static final int SUFFIX_LENGTH = 10;
+
+    /** First line of a task file whose lines carry checksums. */
+    static final String SNAPSHOT_HEADER = "# ChatTPG tasks, checksummed lines";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final CRC32C crc = new CRC32C();
+    private byte[] scratch = new byte[256];
+
+    /**
+     * @return CRC-32C of the UTF-8 encoding of {@code chars[start, end)}
+     */
+    int compute(char[] chars, int start, int end) {
+        int length = end - start;
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = chars[start + i];
+            if (c >= 0x80) {
+                byte[] bytes = new String(chars, start, length).getBytes(StandardCharsets.UTF_8);
+                return compute(bytes, 0, bytes.length);
+            }
+            scratch[i] = (byte) c;
+        }
+        return compute(scratch, 0, length);
+    }
+
+    /**
+     * @return CRC-32C of the UTF-8 encoding of the text
+     */
+    int compute(CharSequence text) {
+        int length = text.length();
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+                return compute(bytes, 0, bytes.length);
+            }
+            scratch[i] = (byte) c;
+        }
+        return compute(scratch, 0, length);
+    }
+
+    /**
+     * @return CRC-32C of {@code bytes[start, end)}
+     */
+    int compute(byte[] bytes, int start, int end) {
+        crc.reset();
+        crc.update(bytes, start, end - start);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Checks a snapshot line against its stored checksum. A line that only
+     * matches with its done flag flipped is also accepted: an in-place update
+     * of the flag (see {@link SnapshotPatcher}) cut short by a crash can leave
+     * the flag of one version and the checksum of the other, and either
+     * version is a valid state of the task.
+     *
+     * @param chars  the line
+     * @param start  index of the line's first character
+     * @param suffix index where its checksum suffix starts
+     * @return true if the line is intact
+     */
+    boolean verifySnapshotLine(char[] chars, int start, int suffix) {
+        int stored = storedValue(chars, suffix);
+        if (compute(chars, start, suffix) == stored) {
+            return true;
+        }
+        int flag = start + 4;
+        if (flag >= suffix || chars[start + 1] != ' ' || chars[start + 2] != '|' || chars[start + 3] != ' '
+                || (chars[flag] != '0' && chars[flag] != '1')) {
+            return false;
+        }
+        char original = chars[flag];
+        chars[flag] = original == '0' ? '1' : '0';
+        boolean matches = compute(chars, start, suffix) == stored;
+        chars[flag] = original;
+        return matches;
+    }
+
+    /**
+     * As {@link #verifySnapshotLine(char[], int, int)} for UTF-8 bytes.
+     */
+    boolean verifySnapshotLine(byte[] bytes, int start, int suffix) {
+        int stored = storedValue(bytes, suffix);
+        if (compute(bytes, start, suffix) == stored) {
+            return true;
+        }
+        int flag = start + 4;
+        if (flag >= suffix || bytes[start + 1] != ' ' || bytes[start + 2] != '|' || bytes[start + 3] != ' '
+                || (bytes[flag] != '0' && bytes[flag] != '1')) {
+            return false;
+        }
+        byte original = bytes[flag];
+        bytes[flag] = (byte) (original == '0' ? '1' : '0');
+        boolean matches = compute(bytes, start, suffix) == stored;
+        bytes[flag] = original;
+        return matches;
+    }
+
+    /**
+     * Appends the checksum suffix for the text already in the builder.
+     */
+    void appendSuffix(StringBuilder line) {
+        int value = compute(line);
+        line.append(' ').append('#');
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            line.append(HEX[(value >>> shift) & 0xF]);
+        }
+    }
+
+    /**
+     * @return true if {@code chars[0, length)} is {@link #SNAPSHOT_HEADER}
+     */
+    static boolean isSnapshotHeader(char[] chars, int length) {
+        return length == SNAPSHOT_HEADER.length() && SNAPSHOT_HEADER.equals(new String(chars, 0, length));
+    }
+
+    /**
+     * @return true if {@code bytes[start, end)} is {@link #SNAPSHOT_HEADER}
+     */
+    static boolean isSnapshotHeader(byte[] bytes, int start, int end) {
+        if (end - start != SNAPSHOT_HEADER.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (bytes[i] != SNAPSHOT_HEADER.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds a checksum suffix at the end of {@code chars[0, length)}.
+     *
+     * @return index where the suffix starts, or -1 if the line has none
+     */
+    static int suffixStart(char[] chars, int length) {
+        int start = length - SUFFIX_LENGTH;
+        if (start < 0 || chars[start] != ' ' || chars[start + 1] != '#') {
+            return -1;
+        }
+        for (int i = start + 2; i < length; i++) {
+            if (hexValue(chars[i]) < 0) {
+                return -1;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Finds a checksum suffix at the end of {@code bytes[start, end)}.
+     *
+     * @return index where the suffix starts, or -1 if the line has none
+     */
+    static int suffixStart(byte[] bytes, int start, int end) {
+        int suffix = end - SUFFIX_LENGTH;
+        if (suffix < start || bytes[suffix] != ' ' || bytes[suffix + 1] != '#') {
+            return -1;
+        }
+        for (int i = suffix + 2; i < end; i++) {
+            if (hexValue((char) bytes[i]) < 0) {
+                return -1;
+            }
+        }
+        return suffix;
+    }
+
+    /**
+     * Reads the checksum stored in a suffix found by {@code suffixStart}.
+     */
+    static int storedValue(char[] chars, int suffixStart) {
+        int value = 0;
+        for (int i = suffixStart + 2; i < suffixStart + SUFFIX_LENGTH; i++) {
+            value = (value << 4) | hexValue(chars[i]);
+        }
+        return value;
+    }
+
+    /**
+     * Reads the checksum stored in a suffix found by {@code suffixStart}.
+     */
+    static int storedValue(byte[] bytes, int suffixStart) {
+        int value = 0;
+        for (int i = suffixStart + 2; i < suffixStart + SUFFIX_LENGTH; i++) {
+            value = (value << 4) | hexValue((char) bytes[i]);
+        }
+        return value;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+}
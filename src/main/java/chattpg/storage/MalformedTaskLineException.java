@@ -0,0 +1,17 @@
+package chattpg.storage;
+
+/**
+ * Thrown when a line of the task file (or a journal record) does not follow
+ * the pipe-delimited task format, e.g. a missing field or an unknown type tag.
+ */
+public class MalformedTaskLineException extends Exception {
+
+    /**
+     * Creates a new exception describing what is wrong with the line.
+     *
+     * @param message explanation of the format violation
+     */
+    public MalformedTaskLineException(String message) {
+        super(message);
+    }
+}
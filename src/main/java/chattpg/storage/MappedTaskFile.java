@@ -0,0 +1,316 @@
+package chattpg.storage;
+
+import chattpg.model.Task;
+import chattpg.ui.OutputSink;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Read-only, memory-mapped view of a text task file that decodes tasks on demand.
+ * <p>
+ * Opening the file only scans its bytes for line breaks and checks the shape
+ * of each line, building an index of where every valid task line starts and
+ * ends; no {@link Task} objects or strings are created. {@link #get(int)} then
+ * decodes a single line with {@link TaskFileParser#decode(String)}. Blank lines
+ * are ignored, checksums are verified and malformed or corrupted lines are
+ * reported with their line number and skipped, exactly as a full load would.
+ * <p>
+ * The mapping stays valid while the view is referenced, so the task file must
+ * only be replaced (written elsewhere and renamed over), never rewritten in place.
+ */
+public final class MappedTaskFile {
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final MappedTaskFile EMPTY = new MappedTaskFile(null, new int[0], new int[0], 0);
+
+    private final MappedByteBuffer buffer;
+    private final int[] lineStarts;
+    private final int[] lineEnds;
+    private final int count;
+
+    private MappedTaskFile(MappedByteBuffer buffer, int[] lineStarts, int[] lineEnds, int count) {
+        this.buffer = buffer;
+        this.lineStarts = lineStarts;
+        this.lineEnds = lineEnds;
+        this.count = count;
+    }
+
+    /**
+     * @return a view with no tasks, used when there is no task file yet
+     */
+    public static MappedTaskFile empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Maps the file and indexes its task lines.
+     *
+     * @param file     text task file
+     * @param messages receives a line for every malformed line skipped
+     * @return the mapped view
+     * @throws IOException if the file cannot be mapped, e.g. because it is
+     *                     larger than 2 GB
+     */
+    public static MappedTaskFile open(File file, OutputSink messages) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file.getPath() + " is too large to map (" + size + " bytes)");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return index(buffer, file.getPath(), messages);
+    }
+
+    /**
+     * @return number of valid task lines
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Decodes the task on the given valid line.
+     *
+     * @param index 0-based index among valid task lines
+     * @return a freshly decoded task
+     */
+    public Task get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Line " + index + " out of range for " + count + " tasks");
+        }
+        try {
+            return TaskFileParser.decode(text(lineStarts[index], lineEnds[index]));
+        } catch (MalformedTaskLineException e) {
+            // Lines were validated when the file was indexed.
+            throw new IllegalStateException("Task line changed after indexing: " + e.getMessage(), e);
+        }
+    }
+
+    private String text(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Scans the mapping block by block through a heap buffer (bulk copies are
+     * much faster than per-byte reads from the mapping) and records the bounds
+     * of every valid task line.
+     */
+    private static MappedTaskFile index(MappedByteBuffer buffer, String source, OutputSink messages) {
+        int limit = buffer.limit();
+        int capacity = Math.max(16, limit / 48);
+        int[] starts = new int[capacity];
+        int[] ends = new int[capacity];
+        int count = 0;
+        int lineNumber = 0;
+        boolean atStart = true;
+        boolean checksummed = false;
+        LineChecksum checksum = new LineChecksum();
+        byte[] block = new byte[BLOCK_SIZE];
+        int blockStart = 0; // file offset of block[0]
+        int filled = 0;
+        int lineStart = 0; // offset of the current line within block
+        while (true) {
+            int newline = -1;
+            for (int i = lineStart; i < filled; i++) {
+                if (block[i] == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            boolean lastLine = newline < 0 && blockStart + filled == limit;
+            if (newline < 0 && !lastLine) {
+                // Move the partial line to the front (growing for very long lines) and read more.
+                int partial = filled - lineStart;
+                if (partial == block.length) {
+                    block = Arrays.copyOf(block, block.length * 2);
+                }
+                System.arraycopy(block, lineStart, block, 0, partial);
+                blockStart += lineStart;
+                lineStart = 0;
+                int read = Math.min(block.length - partial, limit - blockStart - partial);
+                buffer.get(blockStart + partial, block, partial, read);
+                filled = partial + read;
+                continue;
+            }
+            int end = lastLine ? filled : newline;
+            if (lastLine && end == lineStart) {
+                break;
+            }
+            lineNumber++;
+            int contentEnd = end > lineStart && block[end - 1] == '\r' ? end - 1 : end;
+            if (atStart && !isBlank(block, lineStart, contentEnd)) {
+                atStart = false;
+                if (LineChecksum.isSnapshotHeader(block, lineStart, contentEnd)) {
+                    checksummed = true;
+                    contentEnd = lineStart;
+                }
+            }
+            int suffix = LineChecksum.suffixStart(block, lineStart, contentEnd);
+            if (suffix < 0 && checksummed && !isBlank(block, lineStart, contentEnd)) {
+                messages.printf("Skipping malformed line %d in %s: missing checksum%n", lineNumber, source);
+                contentEnd = lineStart;
+            }
+            if (suffix >= 0) {
+                if (checksum.verifySnapshotLine(block, lineStart, suffix)) {
+                    contentEnd = suffix;
+                } else if (checksummed) {
+                    messages.printf("Skipping malformed line %d in %s: checksum mismatch, the line is corrupted%n",
+                            lineNumber, source);
+                    contentEnd = lineStart;
+                }
+            }
+            if (contentEnd > lineStart && isValid(block, lineStart, contentEnd, source, lineNumber, messages)) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+                starts[count] = blockStart + lineStart;
+                ends[count] = blockStart + contentEnd;
+                count++;
+            }
+            if (lastLine) {
+                break;
+            }
+            lineStart = newline + 1;
+        }
+        return new MappedTaskFile(buffer, starts, ends, count);
+    }
+
+    /**
+     * Decides whether a line holds a task. Lines with the common ASCII shape
+     * are checked byte by byte; anything else is decoded once with the regular
+     * parser so that blank and malformed lines are treated exactly as in a full load.
+     */
+    private static boolean isValid(byte[] bytes, int start, int end, String source, int lineNumber,
+            OutputSink messages) {
+        if (looksValid(bytes, start, end)) {
+            return true;
+        }
+        String line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        if (line.isBlank()) {
+            return false;
+        }
+        try {
+            TaskFileParser.decode(line);
+            return true;
+        } catch (MalformedTaskLineException e) {
+            messages.printf("Skipping malformed line %d in %s: %s%n", lineNumber, source, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return true if {@code bytes[start, end)} holds only ASCII spaces and control characters
+     */
+    private static boolean isBlank(byte[] bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] < 0 || bytes[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fast path: {@code T|D|E | 0|1 | field[ | field[ | field]]} with the
+     * number of fields the type requires and no field that {@code trim()} would
+     * leave empty. A todo's description runs to the end of the line, separators
+     * included. Returns false whenever it cannot prove the line valid.
+     */
+    private static boolean looksValid(byte[] bytes, int start, int end) {
+        if (end - start < 9 || !isSeparator(bytes, start + 1, end) || !isSeparator(bytes, start + 5, end)) {
+            return false;
+        }
+        byte type = bytes[start];
+        byte done = bytes[start + 4];
+        if (done != '0' && done != '1') {
+            return false;
+        }
+        if (type == 'T') {
+            return hasVisibleByte(bytes, start + 8, end);
+        }
+        int required = type == 'D' ? 2 : type == 'E' ? 3 : -1;
+        if (required < 0) {
+            return false;
+        }
+        // As in TaskFileParser, separators after the fifth field stay part of it.
+        int descriptionEnd = end;
+        int secondStart = end;
+        int secondEnd = end;
+        int thirdStart = end;
+        int fields = 1;
+        for (int i = start + 8; i + 2 < end && fields < 3; i++) {
+            if (bytes[i] == ' ' && bytes[i + 1] == '|' && bytes[i + 2] == ' ') {
+                if (fields == 1) {
+                    descriptionEnd = i;
+                    secondStart = i + 3;
+                } else {
+                    secondEnd = i;
+                    thirdStart = i + 3;
+                }
+                fields++;
+                i += 2;
+            }
+        }
+        if (fields != required || !hasVisibleByte(bytes, start + 8, descriptionEnd)) {
+            return false;
+        }
+        if (type == 'D') {
+            return hasVisibleByte(bytes, secondStart, end);
+        }
+        return hasVisibleByte(bytes, secondStart, secondEnd) && hasVisibleByte(bytes, thirdStart, end)
+                && !sameTrimmedAscii(bytes, secondStart, secondEnd, thirdStart, end);
+    }
+
+    private static boolean isSeparator(byte[] bytes, int i, int end) {
+        return i + 2 < end && bytes[i] == ' ' && bytes[i + 1] == '|' && bytes[i + 2] == ' ';
+    }
+
+    /** True if some byte survives {@code String.trim()}, which strips chars up to U+0020. */
+    private static boolean hasVisibleByte(byte[] bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if ((bytes[i] & 0xFF) > ' ') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Conservatively reports whether two fields are equal after trimming;
+     * non-ASCII fields count as equal so that the slow path decides.
+     */
+    private static boolean sameTrimmedAscii(byte[] bytes, int aStart, int aEnd, int bStart, int bEnd) {
+        for (int i = aStart; i < aEnd; i++) {
+            if (bytes[i] < 0) {
+                return true;
+            }
+        }
+        for (int i = bStart; i < bEnd; i++) {
+            if (bytes[i] < 0) {
+                return true;
+            }
+        }
+        while (aStart < aEnd && (bytes[aStart] & 0xFF) <= ' ') aStart++;
+        while (aEnd > aStart && (bytes[aEnd - 1] & 0xFF) <= ' ') aEnd--;
+        while (bStart < bEnd && (bytes[bStart] & 0xFF) <= ' ') bStart++;
+        while (bEnd > bStart && (bytes[bEnd - 1] & 0xFF) <= ' ') bEnd--;
+        if (aEnd - aStart != bEnd - bStart) {
+            return false;
+        }
+        for (int i = 0; i < aEnd - aStart; i++) {
+            if (bytes[aStart + i] != bytes[bStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,423 @@
+package chattpg.storage;
+
+import chattpg.model.Task;
+import chattpg.ui.OutputSink;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Task snapshot split into several text segment files ("shards") that are
+ * read and written in parallel, so loading a very large list is not bound by
+ * a single core.
+ * <p>
+ * A small manifest ({@code tasks.shards}) names the shards in list order:
+ * <pre>
+ *   # chattpg shards | 7           (header with the snapshot ID)
+ *   tasks.7.0.shard
+ *   tasks.7.1.shard
+ * </pre>
+ * Each shard is a run of consecutive tasks in the usual checksummed line
+ * format (see {@link Storage}) after a header giving its position and record count:
+ * <pre>
+ *   # chattpg shard 0/2 | 150000
+ *   T | 0 | read book #1a2b3c4d
+ * </pre>
+ * The count lets each shard be collected into a list of the right size, and a
+ * shard that turns out shorter (e.g. cut off by a crash) fails the load, as
+ * does a shard that is missing or cannot be read.
+ * <p>
+ * Shards are parsed on the common {@link ForkJoinPool}, one task per shard,
+ * and concatenated in manifest order. A new snapshot gets a fresh ID, so its
+ * shards never overwrite the ones the current manifest names; the manifest is
+ * then atomically replaced and the old shards deleted. A crash at any point
+ * therefore leaves one complete snapshot in place.
+ */
+public final class ShardedSnapshot {
+    /** Smallest number of tasks worth giving a shard of its own. */
+    static final int MIN_SHARD_TASKS = 16_384;
+
+    private static final String MANIFEST_HEADER = "# chattpg shards | ";
+    private static final String SHARD_HEADER = "# chattpg shard ";
+    private static final String SEPARATOR = " | ";
+    private static final String SHARD_EXTENSION = ".shard";
+    private static final int MAX_HEADER_LENGTH = 128;
+
+    private ShardedSnapshot() {
+    }
+
+    /**
+     * Chooses how many shards a list is split into: one per
+     * {@value #MIN_SHARD_TASKS} tasks, between 1 and {@code maxShards}.
+     *
+     * @param taskCount number of tasks to write
+     * @param maxShards upper bound, usually the number of cores
+     * @return the shard count
+     */
+    static int shardCountFor(int taskCount, int maxShards) {
+        int wanted = (int) ((taskCount + (long) MIN_SHARD_TASKS - 1) / MIN_SHARD_TASKS);
+        return Math.max(1, Math.min(wanted, maxShards));
+    }
+
+    /**
+     * Reads every shard named by the manifest in parallel. Malformed lines are
+     * skipped as in {@link TaskFileParser}, so the rest of the list still
+     * loads. Each shard's messages are collected while it is parsed and passed
+     * on in shard order.
+     *
+     * @param manifest the manifest file
+     * @param stats    receives the bytes and records read
+     * @param messages receives a line for every line skipped
+     * @return the tasks of all shards, in order
+     * @throws IOException if the manifest or any shard cannot be read, or a
+     *                     shard holds fewer tasks than its header declares
+     */
+    public static ArrayList<Task> read(File manifest, StorageStats stats, OutputSink messages) throws IOException {
+        List<File> shards = readManifest(manifest);
+        List<ShardReader> readers = new ArrayList<>(shards.size());
+        for (File shard : shards) {
+            readers.add(new ShardReader(shard, stats));
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(readers);
+            }
+        });
+        int total = 0;
+        for (ShardReader reader : readers) {
+            total += reader.join().size();
+            messages.print(reader.messages.toString());
+        }
+        for (ShardReader reader : readers) {
+            if (reader.error != null) {
+                throw reader.error;
+            }
+        }
+        ArrayList<Task> tasks = new ArrayList<>(total);
+        for (ShardReader reader : readers) {
+            tasks.addAll(reader.join());
+        }
+        return tasks;
+    }
+
+    /**
+     * Writes the tasks as {@code shardCount} shards of nearly equal size in
+     * parallel, forces them to disk and then atomically replaces the manifest.
+     * Problems are reported to {@code messages}.
+     *
+     * @param tasks      tasks to persist, in order
+     * @param manifest   the manifest file; shards are written next to it
+     * @param shardCount number of shards, at least 1
+     * @param stats      receives the fsync times
+     * @param messages   receives errors
+     * @return true if the new snapshot is in place, false if the old one was kept
+     */
+    public static boolean write(List<Task> tasks, File manifest, int shardCount, StorageStats stats,
+            OutputSink messages) {
+        File directory = manifest.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        String prefix = prefixOf(manifest);
+        long id = readSnapshotId(manifest) + 1;
+        int count = Math.max(1, Math.min(shardCount, tasks.size()));
+        List<ShardWriter> writers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            File shard = new File(directory, prefix + "." + id + "." + i + SHARD_EXTENSION);
+            writers.add(new ShardWriter(shard, i, count, tasks.subList(
+                    (int) ((long) tasks.size() * i / count), (int) ((long) tasks.size() * (i + 1) / count)), stats));
+        }
+        File temp = new File(manifest.getPath() + ".tmp");
+        try {
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(writers);
+                }
+            });
+            try (FileOutputStream out = new FileOutputStream(temp, false)) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                writer.write(MANIFEST_HEADER + id + System.lineSeparator());
+                for (ShardWriter shard : writers) {
+                    writer.write(shard.file.getName() + System.lineSeparator());
+                }
+                writer.flush();
+                sync(out, stats);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            messages.println("Error saving task shards: " + e.getMessage());
+            temp.delete();
+            deleteShards(directory, prefix, -1, id);
+            return false;
+        }
+        if (!Storage.replace(temp, manifest, messages)) {
+            deleteShards(directory, prefix, -1, id);
+            return false;
+        }
+        deleteShards(directory, prefix, id, -1);
+        return true;
+    }
+
+    /**
+     * @param manifest the manifest file
+     * @return combined size of the manifest and its shards in bytes
+     */
+    public static long length(File manifest) {
+        long length = manifest.length();
+        try {
+            for (File shard : readManifest(manifest)) {
+                length += shard.length();
+            }
+        } catch (IOException e) {
+            // Only used for statistics.
+        }
+        return length;
+    }
+
+    /**
+     * @param manifest the manifest file
+     * @return the manifest and the shard files it names that exist; just the
+     *         manifest if it cannot be read
+     */
+    static List<File> files(File manifest) {
+        List<File> files = new ArrayList<>();
+        files.add(manifest);
+        try {
+            for (File shard : readManifest(manifest)) {
+                if (shard.exists()) {
+                    files.add(shard);
+                }
+            }
+        } catch (IOException e) {
+            // The manifest itself is all there is to keep.
+        }
+        return files;
+    }
+
+    /**
+     * @return the shard files named by the manifest, in list order
+     */
+    private static List<File> readManifest(File manifest) throws IOException {
+        File directory = manifest.getAbsoluteFile().getParentFile();
+        List<File> shards = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(manifest), StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header == null || !header.startsWith(MANIFEST_HEADER)) {
+                throw new IOException(manifest.getPath() + " is not a task shard manifest");
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    shards.add(new File(directory, line.trim()));
+                }
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * @return ID of the snapshot the manifest currently names, or 0 if there is none
+     */
+    private static long readSnapshotId(File manifest) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(manifest), StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            return header != null && header.startsWith(MANIFEST_HEADER)
+                    ? Long.parseLong(header.substring(MANIFEST_HEADER.length()).trim())
+                    : 0;
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Deletes this manifest's shard files of other snapshots (keeping
+     * {@code keepId}), or only those of {@code onlyId} when it is not -1.
+     */
+    private static void deleteShards(File directory, String prefix, long keepId, long onlyId) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix + ".")
+                && name.endsWith(SHARD_EXTENSION));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            String rest = name.substring(prefix.length() + 1, name.length() - SHARD_EXTENSION.length());
+            int dot = rest.indexOf('.');
+            long id;
+            try {
+                id = Long.parseLong(dot < 0 ? rest : rest.substring(0, dot));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (onlyId != -1 ? id == onlyId : id != keepId) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the manifest name without its extension, e.g. {@code "tasks"}
+     */
+    private static String prefixOf(File manifest) {
+        String name = manifest.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static void sync(FileOutputStream out, StorageStats stats) throws IOException {
+        long start = System.nanoTime();
+        out.getFD().sync();
+        stats.synced(System.nanoTime() - start);
+    }
+
+    /**
+     * Parses one shard into its own list, keeping its messages and any error
+     * until the shards are joined.
+     */
+    private static final class ShardReader extends RecursiveTask<ArrayList<Task>> {
+        private final File file;
+        private final StorageStats stats;
+        private final MessageBuffer messages = new MessageBuffer();
+        private IOException error;
+
+        ShardReader(File file, StorageStats stats) {
+            this.file = file;
+            this.stats = stats;
+        }
+
+        @Override
+        protected ArrayList<Task> compute() {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                int expected = readHeader(in);
+                ArrayList<Task> tasks = new ArrayList<>(expected);
+                TaskFileParser parser = new TaskFileParser(true);
+                parser.parse(new InputStreamReader(in, StandardCharsets.UTF_8), file.getPath(), 1, tasks::add,
+                        messages);
+                if (tasks.size() + parser.getMalformedCount() < expected) {
+                    throw new IOException(String.format(
+                            "shard %s holds %d of its %d tasks; it may have been cut short",
+                            file.getPath(), tasks.size() + parser.getMalformedCount(), expected));
+                }
+                stats.read(file.length(), tasks.size());
+                return tasks;
+            } catch (IOException e) {
+                error = e;
+                return new ArrayList<>();
+            }
+        }
+
+        /**
+         * Reads the header line and returns the record count it declares.
+         */
+        private int readHeader(InputStream in) throws IOException {
+            StringBuilder header = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n' && header.length() < MAX_HEADER_LENGTH) {
+                header.append((char) b);
+            }
+            int split = header.lastIndexOf(SEPARATOR);
+            if (header.indexOf(SHARD_HEADER) != 0 || split < 0) {
+                throw new IOException(file.getPath() + " is not a task shard");
+            }
+            try {
+                return Integer.parseInt(header.substring(split + SEPARATOR.length()).trim());
+            } catch (NumberFormatException e) {
+                throw new IOException(file.getPath() + " has an invalid record count");
+            }
+        }
+    }
+
+    /**
+     * Writes one shard and forces it to disk.
+     */
+    private static final class ShardWriter extends RecursiveAction {
+        private final File file;
+        private final int index;
+        private final int count;
+        private final List<Task> tasks;
+        private final StorageStats stats;
+
+        ShardWriter(File file, int index, int count, List<Task> tasks, StorageStats stats) {
+            this.file = file;
+            this.index = index;
+            this.count = count;
+            this.tasks = tasks;
+            this.stats = stats;
+        }
+
+        @Override
+        protected void compute() {
+            TaskLineWriter lines = new TaskLineWriter();
+            try (FileOutputStream out = new FileOutputStream(file, false);
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                writer.write(SHARD_HEADER + index + "/" + count + SEPARATOR + tasks.size() + System.lineSeparator());
+                for (Task t : tasks) {
+                    lines.write(t, writer);
+                }
+                writer.flush();
+                sync(out, stats);
+            } catch (IOException e) {
+                throw new UncheckedIOException(file.getPath() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Collects the messages of one shard reader, so parallel readers never
+     * write to the caller's sink at the same time.
+     */
+    private static final class MessageBuffer implements OutputSink {
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public OutputSink print(String value) {
+            text.append(value);
+            return this;
+        }
+
+        @Override
+        public OutputSink print(char c) {
+            text.append(c);
+            return this;
+        }
+
+        @Override
+        public OutputSink print(int value) {
+            text.append(value);
+            return this;
+        }
+
+        @Override
+        public OutputSink newLine() {
+            text.append(System.lineSeparator());
+            return this;
+        }
+
+        @Override
+        public void flush() {
+            // Passed on by read() once the shards are joined.
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package chattpg.storage;
+
+import chattpg.model.Task;
+import chattpg.ui.BufferedOutputSink;
+import chattpg.ui.OutputSink;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Command-line tool converting between the text task file and the binary
+ * and sharded snapshot formats.
+ * <p>
+ * Usage:
+ * <pre>
+ *   java chattpg.storage.SnapshotConverter to-binary   tasks/tasks.txt tasks/tasks.bin
+ *   java chattpg.storage.SnapshotConverter to-text     tasks/tasks.bin tasks/tasks.txt
+ *   java chattpg.storage.SnapshotConverter to-shards   tasks/tasks.txt tasks/tasks.shards [shards]
+ *   java chattpg.storage.SnapshotConverter from-shards tasks/tasks.shards tasks/tasks.txt
+ * </pre>
+ * {@code to-shards} splits the list into the given number of shards (one per
+ * core by default).
+ */
+public class SnapshotConverter {
+
+    /**
+     * Runs the conversion described by the arguments.
+     *
+     * @param args direction ({@code to-binary}, {@code to-text}, {@code to-shards} or
+     *             {@code from-shards}), source and destination paths, and for
+     *             {@code to-shards} an optional shard count
+     * @throws IOException if reading or writing fails
+     */
+    public static void main(String[] args) throws IOException {
+        OutputSink out = new BufferedOutputSink(System.out);
+        try {
+            convert(args, out);
+        } finally {
+            out.flush();
+        }
+    }
+
+    private static void convert(String[] args, OutputSink out) throws IOException {
+        if (args.length != 3 && !(args.length == 4 && args[0].equals("to-shards"))) {
+            out.println("Usage: SnapshotConverter (to-binary|to-text|to-shards|from-shards)"
+                    + " <source> <destination> [shards]");
+            return;
+        }
+        File source = new File(args[1]);
+        File destination = new File(args[2]);
+        ArrayList<Task> tasks;
+        switch (args[0]) {
+        case "to-binary":
+            tasks = readText(source, out);
+            BinarySnapshot.write(tasks, destination);
+            break;
+        case "to-text":
+            tasks = BinarySnapshot.read(source, out);
+            new Storage(destination.getPath(), StorageOptions.defaults().withJournaled(false)).save(tasks, out);
+            break;
+        case "to-shards":
+            int shards = Runtime.getRuntime().availableProcessors();
+            if (args.length == 4) {
+                try {
+                    shards = Integer.parseInt(args[3]);
+                } catch (NumberFormatException e) {
+                    out.println("Invalid shard count: " + args[3]);
+                    return;
+                }
+            }
+            tasks = readText(source, out);
+            if (!ShardedSnapshot.write(tasks, destination, shards, new StorageStats(), out)) {
+                return;
+            }
+            out.printf("Split %d tasks: %s (%,d bytes) -> %s (%d shards, %,d bytes)%n", tasks.size(),
+                    source, source.length(), destination, Math.max(1, Math.min(shards, tasks.size())),
+                    ShardedSnapshot.length(destination));
+            return;
+        case "from-shards":
+            tasks = ShardedSnapshot.read(source, new StorageStats(), out);
+            new Storage(destination.getPath(), StorageOptions.defaults().withJournaled(false)).save(tasks, out);
+            out.printf("Joined %d tasks: %s (%,d bytes) -> %s (%,d bytes)%n", tasks.size(),
+                    source, ShardedSnapshot.length(source), destination, destination.length());
+            return;
+        default:
+            out.println("Unknown direction: " + args[0]);
+            return;
+        }
+        out.printf("Converted %d tasks: %s (%,d bytes) -> %s (%,d bytes)%n", tasks.size(),
+                source, source.length(), destination, destination.length());
+    }
+
+    private static ArrayList<Task> readText(File source, OutputSink out) throws IOException {
+        ArrayList<Task> tasks = new ArrayList<>();
+        try (Reader reader = new InputStreamReader(new FileInputStream(source), StandardCharsets.UTF_8)) {
+            new TaskFileParser().parse(reader, source.getPath(), tasks::add, out);
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,28 @@
+package chattpg.storage;
+
+/**
+ * On-disk format of the task snapshot written by {@link Storage}.
+ */
+public enum SnapshotFormat {
+    /** Human-readable pipe-delimited lines ({@code tasks.txt}). */
+    TEXT,
+    /** Compact {@link BinarySnapshot} ({@code tasks.bin}) for large lists. */
+    BINARY,
+    /** Text split into {@link ShardedSnapshot} segments ({@code tasks.shards}) loaded in parallel. */
+    SHARDED;
+
+    /**
+     * Parses a user-facing format name, defaulting to {@link #TEXT}.
+     *
+     * @param value "text", "binary" or "sharded" (case-insensitive); null selects the default
+     * @return the matching format
+     */
+    public static SnapshotFormat parse(String value) {
+        if (value != null && value.trim().equalsIgnoreCase("binary")) {
+            return BINARY;
+        } else if (value != null && value.trim().equalsIgnoreCase("sharded")) {
+            return SHARDED;
+        }
+        return TEXT;
+    }
+}
@@ -0,0 +1,267 @@
+package chattpg.storage;
+
+import chattpg.model.Recurring;
+import chattpg.model.Task;
+import chattpg.ui.OutputSink;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Rewrites the done flag of single tasks inside the text snapshot instead of
+ * journaling the change, so marking a task costs one small positional write
+ * whatever the size of the list.
+ * <p>
+ * Keeps the byte offset of each task's line in the snapshot, by list
+ * position. Tasks added since the snapshot was written, and tasks whose state
+ * was also changed through the journal, have no offset: the journal is
+ * replayed on top of the snapshot, so patching such a line could be undone on
+ * the next load. Only the done flag and the checksum of a line change, so the
+ * new line is exactly as long as the old one. Before writing, the line on
+ * disk is compared byte for byte with the task in its old state; if anything
+ * differs the patch is refused and the caller journals the change instead.
+ * <p>
+ * Recurring tasks are always journaled, as their line holds more state than
+ * the flag.
+ * <p>
+ * Structural changes (adds, inserts and deletes) must be reported so the
+ * offsets stay aligned with list positions. Not thread-safe; {@link Storage}
+ * only calls it while holding the list's write lock.
+ */
+final class SnapshotPatcher {
+    private static final long NOT_IN_SNAPSHOT = -1;
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final File file;
+    private final TaskLineWriter lineWriter = new TaskLineWriter();
+    private long[] offsets;
+    private int size;
+    private FileChannel channel;
+
+    /**
+     * @param file the text snapshot
+     */
+    SnapshotPatcher(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the line offsets of a snapshot that was just written or loaded.
+     * Patching stays off until the next snapshot if the file does not hold
+     * exactly {@code taskCount} task lines (e.g. it had malformed lines).
+     *
+     * @param taskCount number of tasks the snapshot holds
+     */
+    void reset(int taskCount) {
+        disable();
+        if (!file.exists()) {
+            if (taskCount == 0) {
+                offsets = new long[16];
+            }
+            return;
+        }
+        long[] found = new long[Math.max(16, taskCount)];
+        int count = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] block = new byte[BLOCK_SIZE];
+            long blockStart = 0;
+            long lineStart = 0;
+            boolean blank = true;
+            boolean comment = false;
+            int read;
+            while ((read = in.read(block)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    byte b = block[i];
+                    if (b == '\n') {
+                        if (!blank && !comment) {
+                            if (count == found.length) {
+                                return;
+                            }
+                            found[count++] = lineStart;
+                        }
+                        lineStart = blockStart + i + 1;
+                        blank = true;
+                        comment = false;
+                    } else if (b < 0 || b > ' ') {
+                        // A line starting with '#' (the header) is not a task.
+                        comment |= blank && b == '#';
+                        blank = false;
+                    }
+                }
+                blockStart += read;
+            }
+            if (!blank && !comment) {
+                // A last line without terminator may be torn, so it is never patched.
+                if (count == found.length) {
+                    return;
+                }
+                found[count++] = NOT_IN_SNAPSHOT;
+            }
+        } catch (IOException e) {
+            return;
+        }
+        if (count == taskCount) {
+            offsets = found;
+            size = count;
+        }
+    }
+
+    /**
+     * Turns patching off until the next {@link #reset(int)}, e.g. when the
+     * list was loaded from another snapshot format.
+     */
+    void disable() {
+        offsets = null;
+        size = 0;
+        closeChannel();
+    }
+
+    /**
+     * Records that a task was appended to the list.
+     */
+    void appended() {
+        if (offsets == null) {
+            return;
+        }
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        offsets[size++] = NOT_IN_SNAPSHOT;
+    }
+
+    /**
+     * Records that a task was inserted at a 0-based position.
+     */
+    void inserted(int index) {
+        if (offsets == null) {
+            return;
+        }
+        if (index < 0 || index > size) {
+            disable();
+            return;
+        }
+        appended();
+        System.arraycopy(offsets, index, offsets, index + 1, size - 1 - index);
+        offsets[index] = NOT_IN_SNAPSHOT;
+    }
+
+    /**
+     * Records that tasks were removed.
+     *
+     * @param indexes their 0-based positions before the removal, in ascending order
+     */
+    void removed(int[] indexes) {
+        if (offsets == null) {
+            return;
+        }
+        int kept = 0;
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            if (next < indexes.length && indexes[next] == i) {
+                next++;
+            } else {
+                offsets[kept++] = offsets[i];
+            }
+        }
+        if (next < indexes.length) {
+            disable();
+            return;
+        }
+        size = kept;
+    }
+
+    /**
+     * Records that the state of tasks was changed through the journal, so
+     * their snapshot lines must not be patched any more.
+     *
+     * @param indexes their 0-based positions
+     */
+    void journaled(int[] indexes) {
+        if (offsets == null) {
+            return;
+        }
+        for (int index : indexes) {
+            if (index >= 0 && index < size) {
+                offsets[index] = NOT_IN_SNAPSHOT;
+            }
+        }
+    }
+
+    /**
+     * Rewrites the done flag of one task's line if it can be done safely.
+     *
+     * @param index 0-based position of the task
+     * @param task  the task, already in its new state
+     * @param stats receives the bytes written and the fsync time
+     * @param out   receives errors
+     * @return true if the snapshot now holds the new state; false if the
+     *         change must be journaled instead
+     */
+    boolean patch(int index, Task task, StorageStats stats, OutputSink out) {
+        if (offsets == null || index < 0 || index >= size || offsets[index] == NOT_IN_SNAPSHOT) {
+            return false;
+        }
+        if (task instanceof Recurring) {
+            // Marking changes the series' done occurrences, not its flag, so the line may change length.
+            return false;
+        }
+        CharSequence before = lineWriter.format(task, !task.isDone());
+        if (before == null) {
+            return false;
+        }
+        byte[] expected = before.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] updated = lineWriter.format(task, task.isDone()).toString().getBytes(StandardCharsets.UTF_8);
+        long offset = offsets[index];
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            // The line plus its terminator, so a longer line with the same start does not match.
+            ByteBuffer onDisk = ByteBuffer.allocate(expected.length + 1);
+            while (onDisk.hasRemaining() && channel.read(onDisk, offset + onDisk.position()) > 0) {
+                // keep reading until the line is complete or the file ends
+            }
+            byte terminator = onDisk.get(expected.length);
+            if (onDisk.hasRemaining() || (terminator != '\n' && terminator != '\r')
+                    || !Arrays.equals(onDisk.array(), 0, expected.length, expected, 0, expected.length)) {
+                offsets[index] = NOT_IN_SNAPSHOT;
+                return false;
+            }
+            ByteBuffer line = ByteBuffer.wrap(updated);
+            while (line.hasRemaining()) {
+                channel.write(line, offset + line.position());
+            }
+            long start = System.nanoTime();
+            channel.force(false);
+            stats.synced(System.nanoTime() - start);
+            stats.linePatched(updated.length);
+            return true;
+        } catch (IOException e) {
+            out.println("Error updating task file in place, journaling instead: " + e.getMessage());
+            offsets[index] = NOT_IN_SNAPSHOT;
+            closeChannel();
+            return false;
+        }
+    }
+
+    /**
+     * Closes the open snapshot file, e.g. before it is replaced.
+     */
+    void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing was pending; forced writes are already on disk.
+        }
+        channel = null;
+    }
+}
@@ -2,14 +2,30 @@ package chattpg.storage;
 
 import chattpg.model.Deadline;
 import chattpg.model.Event;
+import chattpg.model.Occurrences;
+import chattpg.model.Recurring;
 import chattpg.model.Task;
 import chattpg.model.Todo;
+import chattpg.ui.OutputSink;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  * File-backed persistence layer for ChatTPG tasks.
@@ -17,95 +33,1077 @@ import java.util.Scanner;
  * Format per line (pipe-delimited with spaces around the delimiter):
  * <pre>
  *   T | done(0|1) | description
- *   D | done(0|1) | description | by
- *   E | done(0|1) | description | from | to
+ *   D | done(0|1) | description | by [| recurrence]
+ *   E | done(0|1) | description | from | to [| recurrence]
  * </pre>
- * Missing file is treated as an empty task list. IO errors are logged to stdout.
+ * A recurring deadline or event has a last field holding its repeat rule and
+ * its done occurrences (see {@link Occurrences}), e.g. {@code every week; done 0-3};
+ * its done flag is always 0.
+ * Missing file is treated as an empty task list. IO errors and skipped lines
+ * are reported to the {@link OutputSink} each call is given, so they appear
+ * with the output of the command that caused them.
+ * Lines are decoded by {@link TaskFileParser}; malformed lines are reported
+ * with their line number and skipped. A saved file starts with the line
+ * {@value LineChecksum#SNAPSHOT_HEADER} and each task line ends with a CRC-32C
+ * checksum ({@code " #xxxxxxxx"}, see {@link LineChecksum}), so a corrupted
+ * line is detected and skipped instead of being read as a wrong task.
+ * <p>
+ * In journaled mode every mutation is appended as a single record to a
+ * companion journal file ({@code <file>.journal}) instead of rewriting the whole
+ * task file. Journal records use 0-based list positions:
+ * <pre>
+ *   + | T | 0 | description      (task appended, encoded as above)
+ *   I | index | T | 0 | desc     (task inserted at a position, e.g. an undone delete)
+ *   M | index                    (task marked done)
+ *   U | index                    (task marked undone)
+ *   - | index                    (task deleted)
+ * </pre>
+ * {@code M}, {@code U} and {@code -} also accept a selection of positions such
+ * as {@code 3,7,9} or {@code 10-500,612} (all relative to the list before the
+ * record), so a bulk command is persisted as one record.
+ * Journal records carry the same checksums. {@link #load(OutputSink)} replays the journal on top of the
+ * snapshot, and the journal is compacted into a fresh snapshot once it grows
+ * as large as the task list, so the amortised cost of a mutation stays
+ * constant regardless of list size. Replay stops at the first record that
+ * is torn by a crash or otherwise cannot be applied, since the positions in
+ * later records would hit the wrong tasks: the journal is then moved to
+ * {@code <file>.journal.corrupt} and the tasks up to that record are written
+ * as the new snapshot.
+ * <p>
+ * Journal records are committed according to the configured {@link Durability}:
+ * either forced to disk per record, or group-committed by a background writer
+ * every few milliseconds / every batch of records. Call {@link #close(OutputSink)} on
+ * shutdown so buffered records are not lost.
+ * <p>
+ * With {@link SnapshotFormat#BINARY} the snapshot is written as a compact
+ * {@link BinarySnapshot} next to the text file ({@code tasks.bin}); an existing
+ * text file is still read once as the starting point when no binary snapshot exists.
+ * {@link SnapshotFormat#SHARDED} works the same way with a {@link ShardedSnapshot}
+ * ({@code tasks.shards} plus its segment files), which is loaded and saved
+ * in parallel.
+ * A binary or sharded snapshot that cannot be read (for sharded snapshots,
+ * the manifest and its shards) is moved to {@code <file>.corrupt} and
+ * the journal is replayed onto an empty list but kept: nothing is saved and
+ * the journal not compacted, so the records stay next to the snapshot they
+ * were written against. The first change the user makes moves the journal
+ * to {@code <journal>.corrupt} as well and saves the list as the new snapshot.
+ * <p>
+ * For instant startup on very large text files, {@link #loadMapped(Function, OutputSink)}
+ * maps the snapshot instead of reading it (see {@link MappedTaskFile}) and
+ * applies the journal on top.
+ * <p>
+ * With {@link StorageOptions#withInPlaceUpdates(boolean)} and a text snapshot,
+ * marking or unmarking a task that is in the snapshot rewrites just its line
+ * in place (see {@link SnapshotPatcher}) instead of appending a journal record,
+ * so it never counts towards compaction. Other changes, and bulk changes of
+ * more than {@value #MAX_IN_PLACE_BATCH} tasks, are journaled as usual, as are
+ * marks made while group commit still buffers earlier records: a patch is
+ * forced to disk at once and would otherwise survive a crash that loses the
+ * changes made before it. Other processes reload the snapshot after such a
+ * change.
+ * <p>
+ * Snapshots are written to a temporary file, forced to disk and atomically
+ * renamed over the old one, so a crash or I/O error mid-save leaves the previous
+ * snapshot intact and readers (and mappings) never see a half-written file.
+ * <p>
+ * Several processes may share the same files. Mutations are bracketed by
+ * {@link #beginWrite(List, OutputSink)} and {@link #endWrite(OutputSink)}, which hold a
+ * cross-process lock (see {@link TaskFileLock}) and first bring the in-memory
+ * list up to date: if another process only appended journal records, just
+ * that tail is replayed; if it wrote a new snapshot, the list is reloaded.
+ * <p>
+ * Bytes read and written, records parsed and load, save and fsync times are
+ * counted in a {@link StorageStats} (see {@link #getStats()}).
  */
 public class Storage {
+    private static final String SEPARATOR = " | ";
+    private static final int MIN_COMPACTION_THRESHOLD = 1024;
+    private static final int MAX_IN_PLACE_BATCH = 32;
+
     private final File file;
+    private final File binaryFile;
+    private final File shardManifest;
+    private final File journal;
+    private final StorageOptions options;
+    private final JournalWriter journalWriter;
+    private int journalRecords = 0;
+    private boolean deferred = false;
+    private boolean dirty = false;
+    private boolean replayStopped = false;
+    private boolean snapshotUnreadable = false;
+    private String optionsWarning;
+    private final TaskFileLock fileLock;
+    private final LineChecksum checksum = new LineChecksum();
+    private final TaskLineWriter lineWriter = new TaskLineWriter();
+    private final SnapshotPatcher patcher;
+    private final StorageStats stats = new StorageStats();
 
     /**
-     * Creates storage pointing at the given path. The parent directory will be
-     * created on save if it doesn't exist.
+     * Creates journaled storage pointing at the given path, configured from
+     * system properties (see {@link StorageOptions#fromSystemProperties()}).
+     * The parent directory will be created on save if it doesn't exist.
      *
      * @param filePath path to the task file (e.g., "tasks/tasks.txt")
      */
     public Storage(String filePath) {
+        this(filePath, StorageOptions.fromSystemProperties());
+    }
+
+    /**
+     * Creates storage pointing at the given path with per-record durability.
+     *
+     * @param filePath  path to the task file (e.g., "tasks/tasks.txt")
+     * @param journaled true to append mutations to a journal, false to rewrite
+     *                  the whole file on every mutation
+     */
+    public Storage(String filePath, boolean journaled) {
+        this(filePath, StorageOptions.defaults().withJournaled(journaled).withDurability(Durability.SYNC));
+    }
+
+    /**
+     * Creates storage pointing at the given path.
+     *
+     * @param filePath path to the task file (e.g., "tasks/tasks.txt"); a binary
+     *                 snapshot lives next to it with a {@code .bin} extension,
+     *                 a sharded one with a {@code .shards} extension
+     * @param options  journaling, durability and snapshot format settings
+     */
+    public Storage(String filePath, StorageOptions options) {
         this.file = new File(filePath);
+        String base = filePath.endsWith(".txt") ? filePath.substring(0, filePath.length() - ".txt".length()) : filePath;
+        this.binaryFile = new File(base + ".bin");
+        this.shardManifest = new File(base + ".shards");
+        this.journal = new File(filePath + ".journal");
+        this.options = options;
+        this.optionsWarning = options.getWarning();
+        this.fileLock = new TaskFileLock(new File(filePath + ".lock"), journal);
+        this.patcher = new SnapshotPatcher(file);
+        this.journalWriter = options.isJournaled()
+                ? new JournalWriter(journal, options.getDurability(), options.getFlushWindowMillis(),
+                        options.getFlushBatch(), fileLock::journalFlushed, stats)
+                : null;
     }
 
     /**
-     * Loads all tasks from the file into memory.
+     * Loads all tasks from the file into memory, replaying any journal records
+     * written since the last snapshot. A non-empty journal is compacted right
+     * away so the next start only has to read the snapshot, unless the
+     * snapshot could not be read and was set aside.
      *
+     * @param out receives errors, skipped lines and the number of replayed records
      * @return mutable list of tasks; empty if file is missing or unreadable
      */
-    public ArrayList<Task> load() {
+    public ArrayList<Task> load(OutputSink out) {
+        reportOptionsWarning(out);
+        boolean acquired = fileLock.acquire(out);
+        try {
+            return loadLocked(out);
+        } finally {
+            if (acquired) {
+                fileLock.releaseIfIdle(out);
+            }
+        }
+    }
+
+    private ArrayList<Task> loadLocked(OutputSink out) {
+        long start = System.nanoTime();
         ArrayList<Task> tasks = new ArrayList<>();
-        if (!file.exists()) {
-            System.out.println("No existing task file found. Starting with an empty task list.");
-            return tasks;
-        }
-        try (Scanner fileScanner = new Scanner(file)) {
-            while (fileScanner.hasNextLine()) {
-                String line = fileScanner.nextLine();
-                if (line.trim().isEmpty()) continue;
-                String[] parts = line.split(" \\| ");
-                String type = parts[0];
-                boolean isDone = parts[1].equals("1");
-                String description = parts[2];
-                Task task;
-                switch (type) {
-                case "T":
-                    task = new Todo(description);
-                    break;
-                case "D":
-                    String by = parts[3];
-                    task = new Deadline(description, by);
-                    break;
-                case "E":
-                    String from = parts[3];
-                    String to = parts[4];
-                    task = new Event(description, from, to);
-                    break;
-                default:
-                    // Unknown type; skip
-                    continue;
-                }
-                if (isDone) {
-                    task.markTaskAsDone();
+        patcher.disable();
+        snapshotUnreadable = false;
+        if (options.getSnapshotFormat() == SnapshotFormat.BINARY && binaryFile.exists()) {
+            try {
+                tasks = BinarySnapshot.read(binaryFile, out);
+                stats.read(binaryFile.length(), tasks.size());
+            } catch (IOException e) {
+                out.println("Error loading binary task snapshot: " + e.getMessage());
+                snapshotUnreadable = true;
+                setAsideSnapshot(List.of(binaryFile), out);
+            }
+        } else if (options.getSnapshotFormat() == SnapshotFormat.SHARDED && shardManifest.exists()) {
+            try {
+                tasks = ShardedSnapshot.read(shardManifest, stats, out);
+            } catch (IOException e) {
+                out.println("Error loading task shards: " + e.getMessage());
+                snapshotUnreadable = true;
+                setAsideSnapshot(ShardedSnapshot.files(shardManifest), out);
+            }
+        } else if (!file.exists()) {
+            out.println("No existing task file found. Starting with an empty task list.");
+            if (patchesInPlace()) {
+                patcher.reset(0);
+            }
+        } else {
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                int parsed = new TaskFileParser().parse(reader, file.getPath(), tasks::add, out);
+                stats.read(file.length(), parsed);
+                if (patchesInPlace()) {
+                    patcher.reset(parsed);
                 }
-                tasks.add(task);
+            } catch (IOException e) {
+                out.println("Error loading tasks from file: " + e.getMessage());
             }
-        } catch (FileNotFoundException e) {
-            System.out.println("Error loading tasks from file: " + e.getMessage());
-        } catch (IllegalStateException e) {
-            System.out.println("Error marking task as done: " + e.getMessage());
+        }
+        int replayed = replayJournal(tasks, 0, out);
+        fileLock.markCurrent();
+        stats.loaded(System.nanoTime() - start);
+        if (replayed > 0) {
+            out.printf("Replayed %d journal records.%n", replayed);
+        }
+        if (replayed > 0 && !replayStopped && !snapshotUnreadable) {
+            save(tasks, out);
         }
         return tasks;
     }
 
     /**
-     * Saves the provided list of tasks to disk, overwriting the file.
+     * Memory-maps the text snapshot for lazy loading and replays the journal
+     * onto the list the caller builds over it. Unlike {@link #load(OutputSink)} the
+     * journal is not compacted, so startup never rewrites the snapshot.
+     *
+     * @param attach receives the mapped snapshot (empty if there is no task file
+     *               yet) and returns the positional task list to replay the
+     *               journal onto; it must support {@code add} and {@code addAll} (also at an
+     *               index), {@code remove(int)} and {@code set}
+     * @param out    receives errors and skipped lines
+     * @return number of journal records replayed, or -1 if the snapshot cannot
+     *         be mapped (including binary and sharded snapshots), in which case
+     *         use {@link #load(OutputSink)}
+     */
+    public int loadMapped(Function<MappedTaskFile, List<Task>> attach, OutputSink out) {
+        if (options.getSnapshotFormat() != SnapshotFormat.TEXT) {
+            return -1;
+        }
+        reportOptionsWarning(out);
+        long start = System.nanoTime();
+        boolean acquired = fileLock.acquire(out);
+        patcher.disable();
+        try {
+            MappedTaskFile snapshot;
+            if (!file.exists()) {
+                out.println("No existing task file found. Starting with an empty task list.");
+                snapshot = MappedTaskFile.empty();
+            } else {
+                try {
+                    snapshot = MappedTaskFile.open(file, out);
+                } catch (IOException e) {
+                    out.println("Error mapping task file, loading it fully instead: " + e.getMessage());
+                    return -1;
+                }
+            }
+            int replayed = replayJournal(attach.apply(snapshot), 0, out);
+            fileLock.markCurrent();
+            stats.loaded(System.nanoTime() - start);
+            return replayed;
+        } finally {
+            if (acquired) {
+                fileLock.releaseIfIdle(out);
+            }
+        }
+    }
+
+    /**
+     * Reports, on the first load, an option that was out of range (see
+     * {@link StorageOptions#getWarning()}).
+     */
+    private void reportOptionsWarning(OutputSink out) {
+        if (optionsWarning != null) {
+            out.println(optionsWarning);
+            optionsWarning = null;
+        }
+    }
+
+    /**
+     * Takes the cross-process lock ahead of a mutation and applies the changes
+     * other processes made since this one last read or wrote the files. The
+     * lock is kept until {@link #endWrite(OutputSink)} (or, with group commit, until the
+     * buffered journal records are flushed).
+     *
+     * @param tasks positional view of the in-memory list; must support
+     *              {@code add} and {@code addAll} (also at an index), {@code remove(int)}, {@code set}
+     *              and {@code clear}
+     * @param out   receives errors and skipped lines of the changes applied
+     */
+    public void beginWrite(List<Task> tasks, OutputSink out) {
+        boolean acquired = fileLock.acquire(out);
+        fileLock.beginWrite();
+        if (!acquired) {
+            return;
+        }
+        switch (fileLock.detectChange()) {
+        case JOURNAL_TAIL:
+            replayJournal(tasks, fileLock.getKnownJournalLength(), out);
+            fileLock.markCurrent();
+            break;
+        case SNAPSHOT:
+            if (journalWriter != null) {
+                // Our open journal may be the one the other process deleted.
+                journalWriter.reopen(out);
+            }
+            ArrayList<Task> reloaded = loadLocked(out);
+            tasks.clear();
+            tasks.addAll(reloaded);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Ends a mutation started with {@link #beginWrite(List, OutputSink)}.
+     *
+     * @param out receives errors
+     */
+    public void endWrite(OutputSink out) {
+        if (journalWriter != null) {
+            journalWriter.endWrite(fileLock, out);
+        } else {
+            fileLock.endWrite(false, out);
+        }
+    }
+
+    /**
+     * Cheaply checks whether another process changed the files since this one
+     * last read or wrote them. Use {@link #beginWrite(List, OutputSink)} and
+     * {@link #endWrite(OutputSink)} to apply the changes.
+     *
+     * @return true if the in-memory list may be out of date
+     */
+    public boolean hasExternalChanges() {
+        return !fileLock.isHeld() && fileLock.detectChange() != TaskFileLock.Change.NONE;
+    }
+
+    /**
+     * @return this storage's I/O counters
+     */
+    public StorageStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Saves the provided list of tasks to disk, overwriting the file, and
+     * truncates the journal since the snapshot now contains every change.
      * The parent directory will be created if necessary.
      *
      * @param tasks tasks to persist
+     * @param out   receives errors
      */
-    public void save(ArrayList<Task> tasks) {
-        file.getParentFile().mkdirs();
-        try (FileWriter writer = new FileWriter(file, false)) {
+    public void save(List<Task> tasks, OutputSink out) {
+        if (snapshotUnreadable) {
+            out.println("Not saving the task list until it is changed, since its snapshot could not be read.");
+            return;
+        }
+        ensureParentDirectory();
+        long start = System.nanoTime();
+        boolean acquired = fileLock.acquire(out);
+        try {
+            boolean saved;
+            long length;
+            switch (options.getSnapshotFormat()) {
+            case BINARY:
+                saved = saveBinary(tasks, out);
+                length = binaryFile.length();
+                break;
+            case SHARDED:
+                saved = ShardedSnapshot.write(tasks, shardManifest,
+                        ShardedSnapshot.shardCountFor(tasks.size(), options.getMaxShards()), stats, out);
+                length = ShardedSnapshot.length(shardManifest);
+                break;
+            default:
+                saved = saveText(tasks, out);
+                length = file.length();
+                if (saved && patchesInPlace()) {
+                    patcher.reset(tasks.size());
+                }
+                break;
+            }
+            if (saved) {
+                clearJournal(out);
+                fileLock.snapshotWritten(out);
+                stats.snapshotWritten(length, System.nanoTime() - start);
+            }
+        } finally {
+            if (acquired) {
+                fileLock.releaseIfIdle(out);
+            }
+        }
+    }
+
+    /**
+     * @return true if mark/unmark should be written into the text snapshot in place
+     */
+    private boolean patchesInPlace() {
+        return options.isInPlaceUpdates() && options.getSnapshotFormat() == SnapshotFormat.TEXT;
+    }
+
+    private boolean saveBinary(List<Task> tasks, OutputSink out) {
+        File target = new File(binaryFile.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(target, false)) {
+            BinarySnapshot.write(tasks, stream);
+            sync(stream);
+        } catch (IOException e) {
+            out.println("Error saving binary task snapshot: " + e.getMessage());
+            target.delete();
+            return false;
+        }
+        return replace(target, binaryFile, out);
+    }
+
+    private boolean saveText(List<Task> tasks, OutputSink out) {
+        File target = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(target, false);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+            writer.write(LineChecksum.SNAPSHOT_HEADER);
+            writer.write(System.lineSeparator());
             for (Task t : tasks) {
-                String doneFlag = t.isDone() ? "1" : "0";
-                if (t instanceof Todo) {
-                    writer.write("T | " + doneFlag + " | " + t.getDescription() + System.lineSeparator());
-                } else if (t instanceof Deadline d) {
-                    writer.write("D | " + doneFlag + " | " + d.getDescription() + " | " + d.getBy() + System.lineSeparator());
-                } else if (t instanceof Event e) {
-                    writer.write("E | " + doneFlag + " | " + e.getDescription() + " | " + e.getFrom() + " | " + e.getTo() + System.lineSeparator());
+                lineWriter.write(t, writer);
+            }
+            writer.flush();
+            sync(stream);
+        } catch (IOException e) {
+            out.println("Error saving tasks to file: " + e.getMessage());
+            target.delete();
+            return false;
+        }
+        return replace(target, file, out);
+    }
+
+    private void sync(FileOutputStream out) throws IOException {
+        long start = System.nanoTime();
+        out.getFD().sync();
+        stats.synced(System.nanoTime() - start);
+    }
+
+    /**
+     * Renames a fully written temporary snapshot over the real one, so other
+     * processes (and memory mappings) only ever see a complete file, then
+     * forces the directory so the rename itself survives a crash. If the rename
+     * fails the temporary file is removed and the old snapshot stays in place.
+     */
+    static boolean replace(File source, File target, OutputSink out) {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            out.println("Error replacing task file: " + e.getMessage());
+            source.delete();
+            return false;
+        }
+        File directory = target.getAbsoluteFile().getParentFile();
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms (e.g. Windows) cannot open or force directories.
+        }
+        return true;
+    }
+
+    /**
+     * Truncates the journal after a snapshot, which now contains every change.
+     */
+    private void clearJournal(OutputSink out) {
+        boolean cleared = journalWriter != null ? journalWriter.reset(out) : !journal.exists() || journal.delete();
+        if (!cleared) {
+            out.println("Error clearing task journal: " + journal.getPath());
+        }
+        journalRecords = 0;
+    }
+
+    /**
+     * Starts a batch: mutations recorded from now on are not written until
+     * {@link #endBatch(List, OutputSink)}, which persists them all with one snapshot write.
+     * The cross-process lock is held for the whole batch (see {@link #beginWrite(List, OutputSink)}).
+     *
+     * @param tasks positional view of the in-memory list, as for {@link #beginWrite(List, OutputSink)}
+     * @param out   receives errors, as for {@link #beginWrite(List, OutputSink)}
+     */
+    public void beginBatch(List<Task> tasks, OutputSink out) {
+        beginWrite(tasks, out);
+        deferred = true;
+        dirty = false;
+    }
+
+    /**
+     * Ends a batch started with {@link #beginBatch(List, OutputSink)}, saving a single snapshot
+     * if anything changed during the batch.
+     *
+     * @param tasks the full task list after the batch
+     * @param out   receives errors
+     */
+    public void endBatch(List<Task> tasks, OutputSink out) {
+        deferred = false;
+        try {
+            if (dirty) {
+                save(tasks, out);
+                dirty = false;
+            }
+        } finally {
+            endWrite(out);
+        }
+    }
+
+    /**
+     * Commits any journal records still buffered by the group-commit writer.
+     * Called when the user leaves the organiser so a {@code bye} never loses work.
+     *
+     * @param out receives errors
+     */
+    public void flush(OutputSink out) {
+        if (journalWriter == null) {
+            return;
+        }
+        journalWriter.reportBackgroundError(out);
+        try {
+            journalWriter.flush();
+        } catch (IOException e) {
+            out.println("Error flushing task journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes buffered journal records and stops the background writer.
+     *
+     * @param out receives errors
+     */
+    public void close(OutputSink out) {
+        if (journalWriter != null) {
+            try {
+                journalWriter.close(out);
+            } catch (IOException e) {
+                out.println("Error closing task journal: " + e.getMessage());
+            }
+        }
+        patcher.closeChannel();
+        fileLock.close(out);
+    }
+
+    /**
+     * Persists a newly appended task.
+     *
+     * @param tasks the full task list, already containing {@code task} as its last element
+     * @param task  the task that was added
+     * @param out   receives errors
+     */
+    public void recordAdd(List<Task> tasks, Task task, OutputSink out) {
+        patcher.appended();
+        record(tasks, "+" + SEPARATOR + encode(task), 1, out);
+    }
+
+    /**
+     * Persists a task inserted in the middle of the list, e.g. a deletion that
+     * was undone.
+     *
+     * @param tasks the full task list, already containing {@code task}
+     * @param index 0-based position the task was inserted at
+     * @param task  the inserted task
+     * @param out   receives errors
+     */
+    public void recordInsert(List<Task> tasks, int index, Task task, OutputSink out) {
+        patcher.inserted(index);
+        record(tasks, "I" + SEPARATOR + index + SEPARATOR + encode(task), 1, out);
+    }
+
+    /**
+     * Persists a done/undone transition.
+     *
+     * @param tasks the full task list after the change
+     * @param index 0-based position of the changed task
+     * @param done  the new state of the task
+     * @param out   receives errors
+     */
+    public void recordStateChange(List<Task> tasks, int index, boolean done, OutputSink out) {
+        recordStateChange(tasks, new int[] {index}, done, out);
+    }
+
+    /**
+     * Persists a done/undone transition of several tasks as one record.
+     *
+     * @param tasks   the full task list after the change
+     * @param indexes 0-based positions of the changed tasks, in ascending order
+     * @param done    the new state of the tasks
+     * @param out     receives errors
+     */
+    public void recordStateChange(List<Task> tasks, int[] indexes, boolean done, OutputSink out) {
+        int[] unpatched = indexes;
+        // A patch is on disk at once, so it must not overtake records the group commit still buffers.
+        boolean journalPending = journalWriter != null && journalWriter.hasPending();
+        if (!deferred && !journalPending && indexes.length <= MAX_IN_PLACE_BATCH) {
+            unpatched = patchInPlace(tasks, indexes, out);
+        }
+        if (unpatched.length > 0) {
+            patcher.journaled(unpatched);
+            record(tasks, (done ? "M" : "U") + SEPARATOR + formatPositions(unpatched), unpatched.length, out);
+        }
+    }
+
+    /**
+     * Writes the new state of each task into its snapshot line where possible.
+     *
+     * @return the positions that could not be patched, in ascending order
+     */
+    private int[] patchInPlace(List<Task> tasks, int[] indexes, OutputSink out) {
+        int[] unpatched = new int[indexes.length];
+        int count = 0;
+        for (int index : indexes) {
+            if (!patcher.patch(index, tasks.get(index), stats, out)) {
+                unpatched[count++] = index;
+            }
+        }
+        if (count < indexes.length) {
+            fileLock.snapshotPatched(out);
+        }
+        return Arrays.copyOf(unpatched, count);
+    }
+
+    /**
+     * Persists a deletion.
+     *
+     * @param tasks the full task list, with the task already removed
+     * @param index 0-based position the task occupied before removal
+     * @param out   receives errors
+     */
+    public void recordDelete(List<Task> tasks, int index, OutputSink out) {
+        patcher.removed(new int[] {index});
+        record(tasks, "-" + SEPARATOR + index, 1, out);
+    }
+
+    /**
+     * Persists the deletion of several tasks as one record.
+     *
+     * @param tasks   the full task list, with the tasks already removed
+     * @param indexes 0-based positions the tasks occupied before removal, in ascending order
+     * @param out     receives errors
+     */
+    public void recordDelete(List<Task> tasks, int[] indexes, OutputSink out) {
+        patcher.removed(indexes);
+        record(tasks, "-" + SEPARATOR + formatPositions(indexes), indexes.length, out);
+    }
+
+    /**
+     * Appends one journal record, or rewrites the snapshot when journaling is
+     * disabled. Triggers compaction once the journal outgrows the task list.
+     *
+     * @param changes number of task changes the record stands for, counted
+     *                towards compaction since each costs a step on replay
+     */
+    private void record(List<Task> tasks, String entry, int changes, OutputSink out) {
+        if (snapshotUnreadable && adoptRecoveredList(out)) {
+            if (!deferred) {
+                save(tasks, out);
+            } else {
+                dirty = true;
+            }
+            return;
+        }
+        if (deferred) {
+            dirty = true;
+            return;
+        }
+        if (!options.isJournaled()) {
+            save(tasks, out);
+            return;
+        }
+        ensureParentDirectory();
+        try {
+            journalWriter.append(entry);
+        } catch (IOException e) {
+            out.println("Error writing to task journal: " + e.getMessage());
+            save(tasks, out);
+            return;
+        }
+        journalRecords += changes;
+        if (!snapshotUnreadable && journalRecords >= Math.max(MIN_COMPACTION_THRESHOLD, tasks.size())) {
+            save(tasks, out);
+        }
+    }
+
+    /**
+     * Applies the journal records from the given byte offset to the list in
+     * order. The list must support {@code add} and {@code addAll} (also at an
+     * index), {@code remove(int)} and {@code set}; done/undone records write
+     * the changed task back with {@code set}, and consecutive {@code I} records
+     * that insert one task after another (a grouped undo) are added together
+     * with {@code addAll}.
+     * <p>
+     * Replay stops at the first record that cannot be applied, because later
+     * records refer to positions in a list that record should have changed;
+     * the journal is then set aside (see {@link #setAsideJournal(List, OutputSink)})
+     * instead of being compacted, and {@link #replayStopped} is set.
+     *
+     * @param tasks the tasks the records apply to, in list order
+     * @param from  byte offset of the first record to apply
+     * @param out   receives skipped records and errors
+     * @return number of records applied
+     */
+    private int replayJournal(List<Task> tasks, long from, OutputSink out) {
+        if (!journal.exists()) {
+            return 0;
+        }
+        int applied = 0;
+        int lineNumber = 0;
+        boolean stopped = false;
+        long length = journal.length();
+        boolean checked = isChecksummedJournal();
+        PendingInserts inserts = new PendingInserts(tasks);
+        try (FileInputStream in = new FileInputStream(journal);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            in.getChannel().position(from);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) continue;
+                try {
+                    applyJournalRecord(tasks, verifyRecord(line, checked), inserts);
+                    applied++;
+                } catch (MalformedTaskLineException | RuntimeException e) {
+                    out.printf("Stopped replaying the task journal at invalid record on line %d: %s%n", lineNumber,
+                            e.getMessage());
+                    stopped = true;
+                    break;
                 }
             }
         } catch (IOException e) {
-            System.out.println("Error saving tasks to file: " + e.getMessage());
+            out.println("Error loading task journal: " + e.getMessage());
+        }
+        inserts.flush();
+        journalRecords = from == 0 ? applied : journalRecords + applied;
+        stats.read(Math.max(0, length - from), applied);
+        replayStopped = stopped;
+        if (stopped) {
+            setAsideJournal(tasks, out);
+        }
+        return applied;
+    }
+
+    /**
+     * Moves a journal whose replay stopped at an invalid record to
+     * {@code <journal>.corrupt} (numbered if that exists), so the records it
+     * could not apply are kept for inspection, then writes the tasks applied so
+     * far as the new snapshot. If the journal cannot be moved it is left in
+     * place and nothing is written.
+     */
+    private void setAsideJournal(List<Task> tasks, OutputSink out) {
+        if (journalWriter != null) {
+            journalWriter.reopen(out);
+        }
+        File backup;
+        try {
+            backup = setAside(journal);
+        } catch (IOException e) {
+            out.println("Error setting aside the task journal, leaving it in place: " + e.getMessage());
+            return;
+        }
+        out.printf("Moved the task journal to %s; the records from the invalid one on were not applied.%n",
+                backup.getPath());
+        save(tasks, out);
+    }
+
+    /**
+     * Accepts the list loaded without its unreadable snapshot once the user
+     * changes it: the journal, which belongs with the set-aside snapshot, is
+     * set aside too, so the list can be saved as a new snapshot.
+     *
+     * @return true if the list may now be saved; false if the snapshot or the
+     *         journal could not be moved, in which case records keep being
+     *         appended to the journal
+     */
+    private boolean adoptRecoveredList(OutputSink out) {
+        File snapshot = options.getSnapshotFormat() == SnapshotFormat.SHARDED ? shardManifest : binaryFile;
+        if (snapshot.exists()) {
+            out.println("Not saving over the unreadable task snapshot " + snapshot.getPath() + "; move it away first.");
+            return false;
+        }
+        if (journal.exists()) {
+            if (journalWriter != null) {
+                journalWriter.reopen(out);
+            }
+            try {
+                out.printf("Moved the task journal to %s, next to the unreadable snapshot.%n",
+                        setAside(journal).getPath());
+            } catch (IOException e) {
+                out.println("Error setting aside the task journal, leaving it in place: " + e.getMessage());
+                return false;
+            }
+        }
+        snapshotUnreadable = false;
+        return true;
+    }
+
+    /**
+     * Moves the files of a snapshot that could not be read to
+     * {@code <file>.corrupt} (numbered if that exists), so a later save does
+     * not replace them. A file that cannot be moved is left in place, and
+     * the list is then never saved over it.
+     */
+    private void setAsideSnapshot(List<File> files, OutputSink out) {
+        for (File snapshot : files) {
+            try {
+                out.printf("Moved the unreadable task snapshot to %s.%n",
+                        setAside(snapshot).getPath());
+            } catch (IOException e) {
+                out.println("Error setting aside the task snapshot, leaving it in place: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Renames a file to {@code <file>.corrupt}, or {@code <file>.corrupt.<n>}
+     * if that exists.
+     *
+     * @return the new location
+     */
+    private static File setAside(File source) throws IOException {
+        File backup = new File(source.getPath() + ".corrupt");
+        for (int n = 1; backup.exists(); n++) {
+            backup = new File(source.getPath() + ".corrupt." + n);
+        }
+        Files.move(source.toPath(), backup.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        return backup;
+    }
+
+    /**
+     * Strips and checks a journal record's checksum. In a checksummed journal
+     * every record must carry one; a record without it was torn by a crash.
+     * In an older journal only a suffix that matches is stripped, so a task
+     * text that merely ends like a checksum is kept whole.
+     *
+     * @return the record without its checksum
+     */
+    private String verifyRecord(String record, boolean checked) throws MalformedTaskLineException {
+        char[] chars = record.toCharArray();
+        int suffix = LineChecksum.suffixStart(chars, chars.length);
+        if (suffix < 0) {
+            if (checked) {
+                throw new MalformedTaskLineException("record is incomplete (missing checksum)");
+            }
+            return record;
+        }
+        if (checksum.compute(chars, 0, suffix) != LineChecksum.storedValue(chars, suffix)) {
+            if (checked) {
+                throw new MalformedTaskLineException("checksum mismatch, the record is corrupted");
+            }
+            return record;
+        }
+        return record.substring(0, suffix);
+    }
+
+    /**
+     * @return true if the journal starts with {@link JournalWriter#HEADER}
+     */
+    private boolean isChecksummedJournal() {
+        byte[] header = JournalWriter.HEADER.getBytes(StandardCharsets.UTF_8);
+        try (FileInputStream in = new FileInputStream(journal)) {
+            return Arrays.equals(in.readNBytes(header.length), header);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Applies a single journal record such as {@code "M | 3"} to the list.
+     * Inserted tasks are collected in {@code inserts}, which is flushed before
+     * any other record is applied.
+     */
+    private void applyJournalRecord(List<Task> tasks, String line, PendingInserts inserts)
+            throws MalformedTaskLineException {
+        if (line.length() < 5 || !line.startsWith(SEPARATOR, 1)) {
+            throw new MalformedTaskLineException("expected '<op> | <argument>' but found '" + line + "'");
+        }
+        String argument = line.substring(1 + SEPARATOR.length());
+        if (line.charAt(0) != 'I') {
+            inserts.flush();
+        }
+        switch (line.charAt(0)) {
+        case '+':
+            tasks.add(TaskFileParser.decode(argument));
+            patcher.appended();
+            break;
+        case 'I':
+            int split = argument.indexOf(SEPARATOR);
+            if (split < 0) {
+                throw new MalformedTaskLineException("expected 'I | <index> | <task>' but found '" + line + "'");
+            }
+            int position = Integer.parseInt(argument.substring(0, split));
+            inserts.add(position, TaskFileParser.decode(argument.substring(split + SEPARATOR.length())));
+            patcher.inserted(position);
+            break;
+        case 'M':
+        case 'U':
+            int[] changed = parsePositions(argument);
+            checkPositions(tasks, changed, line.charAt(0));
+            for (int index : changed) {
+                Task task = tasks.get(index);
+                if (line.charAt(0) == 'M') {
+                    task.markTaskAsDone();
+                } else {
+                    task.markTaskAsUndone();
+                }
+                tasks.set(index, task);
+            }
+            patcher.journaled(changed);
+            break;
+        case '-':
+            int[] indexes = parsePositions(argument);
+            checkPositions(tasks, indexes, '-');
+            // Positions refer to the list before the record, so remove from the back.
+            for (int i = indexes.length - 1; i >= 0; i--) {
+                tasks.remove(indexes[i]);
+            }
+            patcher.removed(indexes);
+            break;
+        default:
+            throw new MalformedTaskLineException("unknown journal operation '" + line.charAt(0) + "'");
+        }
+    }
+
+    /**
+     * Checks that a record's positions are ascending, inside the list and, for
+     * {@code M} and {@code U}, that every task can change to that state, so
+     * an invalid record is rejected before it changes any task.
+     *
+     * @param op the record's operation, {@code M}, {@code U} or {@code -}
+     */
+    private static void checkPositions(List<Task> tasks, int[] positions, char op)
+            throws MalformedTaskLineException {
+        for (int i = 0; i < positions.length; i++) {
+            int index = positions[i];
+            if (i > 0 && index <= positions[i - 1]) {
+                throw new MalformedTaskLineException("positions are not ascending at " + index);
+            }
+            if (index < 0 || index >= tasks.size()) {
+                throw new MalformedTaskLineException("position " + index + " is outside the list of "
+                        + tasks.size() + " tasks");
+            }
+            if (op == '-') {
+                continue;
+            }
+            Task task = tasks.get(index);
+            boolean canChange = task instanceof Recurring r
+                    ? op == 'M' || r.getOccurrences().hasDone()
+                    : task.isDone() == (op == 'U');
+            if (!canChange) {
+                throw new MalformedTaskLineException("task at position " + index + " is already marked "
+                        + (op == 'M' ? "done" : "undone"));
+            }
+        }
+    }
+
+    /**
+     * Writes ascending positions compactly, collapsing runs into ranges:
+     * {@code [3, 4, 5, 9]} becomes {@code "3-5,9"}.
+     */
+    static String formatPositions(int[] positions) {
+        StringBuilder text = new StringBuilder();
+        int i = 0;
+        while (i < positions.length) {
+            int j = i;
+            while (j + 1 < positions.length && positions[j + 1] == positions[j] + 1) {
+                j++;
+            }
+            if (text.length() > 0) {
+                text.append(',');
+            }
+            text.append(positions[i]);
+            if (j > i) {
+                text.append('-').append(positions[j]);
+            }
+            i = j + 1;
+        }
+        return text.toString();
+    }
+
+    /**
+     * Parses positions written by {@link #formatPositions(int[])}.
+     *
+     * @return the positions in the order written
+     * @throws NumberFormatException if a part is not a number or range
+     */
+    static int[] parsePositions(String text) {
+        int count = 0;
+        int[] positions = new int[8];
+        for (String part : text.split(",")) {
+            int dash = part.indexOf('-');
+            int from = Integer.parseInt(dash < 0 ? part.trim() : part.substring(0, dash).trim());
+            int to = dash < 0 ? from : Integer.parseInt(part.substring(dash + 1).trim());
+            if (to < from) {
+                throw new NumberFormatException("descending range " + part);
+            }
+            for (int position = from; position <= to; position++) {
+                if (count == positions.length) {
+                    positions = Arrays.copyOf(positions, count * 2);
+                }
+                positions[count++] = position;
+            }
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    /**
+     * Formats one task as a snapshot line (without line terminator).
+     *
+     * @return the encoded line, or null for unsupported task types
+     */
+    private String encode(Task t) {
+        String doneFlag = t.isDone() ? "1" : "0";
+        String recurrence = t instanceof Recurring r ? SEPARATOR + r.getOccurrences() : "";
+        if (t instanceof Todo) {
+            return "T" + SEPARATOR + doneFlag + SEPARATOR + t.getDescription();
+        } else if (t instanceof Deadline d) {
+            return "D" + SEPARATOR + doneFlag + SEPARATOR + d.getDescription() + SEPARATOR + d.getBy() + recurrence;
+        } else if (t instanceof Event e) {
+            return "E" + SEPARATOR + doneFlag + SEPARATOR + e.getDescription() + SEPARATOR + e.getFrom()
+                    + SEPARATOR + e.getTo() + recurrence;
+        }
+        return null;
+    }
+
+    private void ensureParentDirectory() {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+    }
+
+    /**
+     * Tasks of consecutive {@code I} records, each inserted right after the one
+     * before, that are yet to be added to the list. Adding them in one call
+     * lets a store that has to renumber tasks to make room do so once for the
+     * whole run rather than once per task.
+     */
+    private static final class PendingInserts {
+        private final List<Task> tasks;
+        private final List<Task> run = new ArrayList<>();
+        private int start;
+
+        PendingInserts(List<Task> tasks) {
+            this.tasks = tasks;
+        }
+
+        /**
+         * Queues a task, first adding the queued ones if it does not follow them.
+         *
+         * @param position 0-based position the task is inserted at
+         * @param task     the task
+         * @throws IndexOutOfBoundsException if the position is outside the list
+         */
+        void add(int position, Task task) {
+            if (!run.isEmpty() && position == start + run.size()) {
+                run.add(task);
+                return;
+            }
+            flush();
+            if (position < 0 || position > tasks.size()) {
+                throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + tasks.size());
+            }
+            start = position;
+            run.add(task);
+        }
+
+        /** Adds the queued tasks to the list. */
+        void flush() {
+            if (!run.isEmpty()) {
+                tasks.addAll(start, run);
+                run.clear();
+            }
         }
     }
-}
\ No newline at end of file
+}
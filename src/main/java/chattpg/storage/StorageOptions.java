@@ -0,0 +1,151 @@
+package chattpg.storage;
+
+/**
+ * Immutable set of tuning options for {@link Storage}. Start from
+ * {@link #defaults()} or {@link #fromSystemProperties()} and adjust with the
+ * {@code with...} methods, each of which returns a modified copy.
+ */
+public final class StorageOptions {
+    static final long DEFAULT_FLUSH_WINDOW_MILLIS = 50;
+    static final int DEFAULT_FLUSH_BATCH = 256;
+
+    private final boolean journaled;
+    private final Durability durability;
+    private final long flushWindowMillis;
+    private final int flushBatch;
+    private final SnapshotFormat snapshotFormat;
+    private final int maxShards;
+    private final boolean inPlaceUpdates;
+    private final String warning;
+
+    private StorageOptions(boolean journaled, Durability durability, long flushWindowMillis, int flushBatch,
+            SnapshotFormat snapshotFormat, int maxShards, boolean inPlaceUpdates, String warning) {
+        this.journaled = journaled;
+        this.durability = durability;
+        this.flushWindowMillis = flushWindowMillis;
+        this.flushBatch = flushBatch;
+        this.snapshotFormat = snapshotFormat;
+        this.maxShards = maxShards;
+        this.inPlaceUpdates = inPlaceUpdates;
+        this.warning = warning;
+    }
+
+    /**
+     * Journaled, group-committed storage with a text snapshot. Sharded
+     * snapshots use up to one shard per available core.
+     *
+     * @return the default options
+     */
+    public static StorageOptions defaults() {
+        return new StorageOptions(true, Durability.GROUP, DEFAULT_FLUSH_WINDOW_MILLIS, DEFAULT_FLUSH_BATCH,
+                SnapshotFormat.TEXT, Runtime.getRuntime().availableProcessors(), false, null);
+    }
+
+    /**
+     * Reads options from system properties, falling back to {@link #defaults()}:
+     * {@code chattpg.durability} (sync|group), {@code chattpg.flush.millis},
+     * {@code chattpg.flush.batch}, {@code chattpg.snapshot} (text|binary|sharded),
+     * {@code chattpg.shards} and {@code chattpg.inplace} (true|false).
+     *
+     * @return options reflecting the current system properties
+     */
+    public static StorageOptions fromSystemProperties() {
+        return defaults()
+                .withDurability(Durability.parse(System.getProperty("chattpg.durability")))
+                .withFlushWindow(Long.getLong("chattpg.flush.millis", DEFAULT_FLUSH_WINDOW_MILLIS),
+                        Integer.getInteger("chattpg.flush.batch", DEFAULT_FLUSH_BATCH))
+                .withSnapshotFormat(SnapshotFormat.parse(System.getProperty("chattpg.snapshot")))
+                .withMaxShards(Integer.getInteger("chattpg.shards", Runtime.getRuntime().availableProcessors()))
+                .withInPlaceUpdates(Boolean.getBoolean("chattpg.inplace"));
+    }
+
+    public StorageOptions withJournaled(boolean journaled) {
+        return new StorageOptions(journaled, durability, flushWindowMillis, flushBatch, snapshotFormat, maxShards,
+                inPlaceUpdates, warning);
+    }
+
+    public StorageOptions withDurability(Durability durability) {
+        return new StorageOptions(journaled, durability, flushWindowMillis, flushBatch, snapshotFormat, maxShards,
+                inPlaceUpdates, warning);
+    }
+
+    /**
+     * Values below 1 count as 1, and {@link #getWarning()} then says so.
+     *
+     * @param flushWindowMillis longest time a record stays buffered in group mode
+     * @param flushBatch        number of buffered records that forces a group commit
+     * @return a copy with the new group-commit window
+     */
+    public StorageOptions withFlushWindow(long flushWindowMillis, int flushBatch) {
+        String adjusted = warning;
+        if (flushWindowMillis < 1 || flushBatch < 1) {
+            adjusted = String.format("Invalid group commit window of %d ms and %d records; using %d ms and %d records.",
+                    flushWindowMillis, flushBatch, Math.max(1, flushWindowMillis), Math.max(1, flushBatch));
+        }
+        return new StorageOptions(journaled, durability, Math.max(1, flushWindowMillis), Math.max(1, flushBatch),
+                snapshotFormat, maxShards, inPlaceUpdates, adjusted);
+    }
+
+    public StorageOptions withSnapshotFormat(SnapshotFormat snapshotFormat) {
+        return new StorageOptions(journaled, durability, flushWindowMillis, flushBatch, snapshotFormat, maxShards,
+                inPlaceUpdates, warning);
+    }
+
+    /**
+     * @param maxShards most shards a sharded snapshot is split into; values
+     *                  below 1 count as 1
+     * @return a copy with the new shard limit
+     */
+    public StorageOptions withMaxShards(int maxShards) {
+        return new StorageOptions(journaled, durability, flushWindowMillis, flushBatch, snapshotFormat,
+                Math.max(1, maxShards), inPlaceUpdates, warning);
+    }
+
+    /**
+     * @param inPlaceUpdates true to write single mark/unmark changes straight
+     *                       into the text snapshot (see {@link SnapshotPatcher})
+     *                       instead of journaling them; ignored for other
+     *                       snapshot formats and lazily mapped lists
+     * @return a copy with the new setting
+     */
+    public StorageOptions withInPlaceUpdates(boolean inPlaceUpdates) {
+        return new StorageOptions(journaled, durability, flushWindowMillis, flushBatch, snapshotFormat, maxShards,
+                inPlaceUpdates, warning);
+    }
+
+    public boolean isJournaled() {
+        return journaled;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public long getFlushWindowMillis() {
+        return flushWindowMillis;
+    }
+
+    public int getFlushBatch() {
+        return flushBatch;
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    public int getMaxShards() {
+        return maxShards;
+    }
+
+    public boolean isInPlaceUpdates() {
+        return inPlaceUpdates;
+    }
+
+    /**
+     * @return a message about a value that was out of range and replaced, or
+     *         null if every value was used as given
+     */
+    public String getWarning() {
+        return warning;
+    }
+}
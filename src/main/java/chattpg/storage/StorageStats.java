@@ -0,0 +1,103 @@
+package chattpg.storage;
+
+import chattpg.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running I/O counters of one {@link Storage}: bytes read and written,
+ * records parsed, and how long loads, snapshot saves and fsyncs take.
+ * <p>
+ * Counters only ever grow and may be updated from the journal flusher thread
+ * while being read elsewhere, so they use {@link LongAdder}s. A lazily mapped
+ * snapshot (see {@link MappedTaskFile}) is not counted as read, since its
+ * pages are only touched as tasks are shown.
+ */
+public final class StorageStats {
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder recordsParsed = new LongAdder();
+    private final LongAdder snapshotsWritten = new LongAdder();
+    private final LongAdder journalRecordsWritten = new LongAdder();
+    private final LongAdder linesPatched = new LongAdder();
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+    private final LatencyHistogram saveLatency = new LatencyHistogram();
+    private final LatencyHistogram syncLatency = new LatencyHistogram();
+
+    void read(long bytes, long records) {
+        bytesRead.add(bytes);
+        recordsParsed.add(records);
+    }
+
+    void wrote(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    void snapshotWritten(long bytes, long nanos) {
+        bytesWritten.add(bytes);
+        snapshotsWritten.increment();
+        saveLatency.record(nanos);
+    }
+
+    void journalRecordWritten() {
+        journalRecordsWritten.increment();
+    }
+
+    void linePatched(long bytes) {
+        bytesWritten.add(bytes);
+        linesPatched.increment();
+    }
+
+    void loaded(long nanos) {
+        loadLatency.record(nanos);
+    }
+
+    void synced(long nanos) {
+        syncLatency.record(nanos);
+    }
+
+    /** @return bytes read from the snapshot and journal */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /** @return bytes written to snapshots and the journal, and patched in place */
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /** @return snapshot lines and journal records decoded */
+    public long getRecordsParsed() {
+        return recordsParsed.sum();
+    }
+
+    /** @return number of snapshots written */
+    public long getSnapshotsWritten() {
+        return snapshotsWritten.sum();
+    }
+
+    /** @return number of records appended to the journal */
+    public long getJournalRecordsWritten() {
+        return journalRecordsWritten.sum();
+    }
+
+    /** @return number of snapshot lines updated in place (see {@link StorageOptions#withInPlaceUpdates}) */
+    public long getLinesPatched() {
+        return linesPatched.sum();
+    }
+
+    /** @return durations of full loads (snapshot read plus journal replay) */
+    public LatencyHistogram getLoadLatency() {
+        return loadLatency;
+    }
+
+    /** @return durations of snapshot saves, including the fsync and rename */
+    public LatencyHistogram getSaveLatency() {
+        return saveLatency;
+    }
+
+    /** @return durations of fsync calls on the journal and snapshots */
+    public LatencyHistogram getSyncLatency() {
+        return syncLatency;
+    }
+}
@@ -0,0 +1,268 @@
+package chattpg.storage;
+
+import chattpg.ui.OutputSink;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Cross-process lock and change tracker for one task file, kept in a small
+ * companion file ({@code <file>.lock}).
+ * <p>
+ * The lock is taken with {@link FileChannel#lock()} before a process reads or
+ * writes the snapshot or journal and is held as a lease: while it is held, no
+ * other process can change the files, so the holder's view stays current.
+ * <p>
+ * The lock file also stores a generation number that is incremented whenever a
+ * snapshot is written. Together with the journal length this process last saw,
+ * it tells a process what others changed since: nothing, only records
+ * appended to the journal (replay just the tail), or a new snapshot (reload).
+ * <p>
+ * Methods are synchronized because the lease may be released by the
+ * group-commit flusher thread. Errors are reported to the {@link OutputSink}
+ * the caller passes; an error on the flusher thread, which has none, is kept
+ * and reported with the output of the next call that does.
+ */
+final class TaskFileLock {
+    /** What changed on disk since this process last read or wrote the files. */
+    enum Change {
+        NONE, JOURNAL_TAIL, SNAPSHOT
+    }
+
+    private final File lockFile;
+    private final File journal;
+    private FileChannel channel;
+    private FileLock lock;
+    private int writers = 0;
+    private long knownGeneration = 0;
+    private long knownJournalLength = 0;
+    private String backgroundError;
+
+    TaskFileLock(File lockFile, File journal) {
+        this.lockFile = lockFile;
+        this.journal = journal;
+    }
+
+    /**
+     * Takes the lock if this process does not already hold it.
+     *
+     * @param out receives errors
+     * @return true if the lock was newly taken, meaning other processes may
+     *         have changed the files since this process last held it
+     */
+    synchronized boolean acquire(OutputSink out) {
+        reportBackgroundError(out);
+        if (lock != null) {
+            return false;
+        }
+        try {
+            if (channel == null) {
+                File parent = lockFile.getAbsoluteFile().getParentFile();
+                if (parent != null) {
+                    parent.mkdirs();
+                }
+                channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+            }
+            lock = channel.lock();
+            return true;
+        } catch (IOException | OverlappingFileLockException e) {
+            out.println("Could not lock " + lockFile.getPath() + ", continuing unlocked: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Marks the start of a mutation (or batch of mutations, which may nest):
+     * the lease must not be released until the matching {@link #endWrite(boolean)}.
+     */
+    synchronized void beginWrite() {
+        writers++;
+    }
+
+    /**
+     * Marks the end of a mutation and, once no mutation is running, releases
+     * the lease unless journal records are still buffered, in which case the
+     * flush releases it. With group commit, call it through
+     * {@link JournalWriter#endWrite(TaskFileLock, OutputSink)} so that no flush
+     * can run between checking for buffered records and this call.
+     *
+     * @param pendingRecords true if the journal writer still buffers records
+     * @param out            receives errors
+     */
+    synchronized void endWrite(boolean pendingRecords, OutputSink out) {
+        reportBackgroundError(out);
+        writers = Math.max(0, writers - 1);
+        if (writers == 0 && !pendingRecords) {
+            release(out);
+        }
+    }
+
+    /**
+     * Called after buffered journal records reached the file. Records the new
+     * journal length as seen and releases the lease unless a mutation is running.
+     * Runs on the flusher thread, so an error is reported by the next call.
+     */
+    synchronized void journalFlushed() {
+        knownJournalLength = journal.length();
+        if (writers == 0) {
+            release(null);
+        }
+    }
+
+    /**
+     * Releases the lock if it is held and no mutation is running.
+     *
+     * @param out receives errors
+     */
+    synchronized void releaseIfIdle(OutputSink out) {
+        if (writers == 0) {
+            release(out);
+        }
+    }
+
+    /**
+     * @return true if this process currently holds the lock
+     */
+    synchronized boolean isHeld() {
+        return lock != null;
+    }
+
+    /**
+     * Compares the files with what this process last saw. Cheap enough to call
+     * before every command: one small read of the lock file and one stat.
+     * The answer is only reliable while holding the lock.
+     *
+     * @return the kind of external change
+     */
+    synchronized Change detectChange() {
+        if (readGeneration() != knownGeneration) {
+            return Change.SNAPSHOT;
+        }
+        long length = journal.length();
+        if (length < knownJournalLength) {
+            return Change.SNAPSHOT;
+        }
+        return length > knownJournalLength ? Change.JOURNAL_TAIL : Change.NONE;
+    }
+
+    /**
+     * @return journal offset up to which this process has applied records
+     */
+    synchronized long getKnownJournalLength() {
+        return knownJournalLength;
+    }
+
+    /**
+     * Records that this process has read the snapshot and journal as they are now.
+     */
+    synchronized void markCurrent() {
+        knownGeneration = readGeneration();
+        knownJournalLength = journal.length();
+    }
+
+    /**
+     * Records that this process wrote a new snapshot and emptied the journal.
+     * Must be called while holding the lock.
+     *
+     * @param out receives errors
+     */
+    synchronized void snapshotWritten(OutputSink out) {
+        knownGeneration = readGeneration() + 1;
+        writeGeneration(knownGeneration, out);
+        knownJournalLength = 0;
+    }
+
+    /**
+     * Records that this process changed the snapshot in place, so that other
+     * processes reload it. The journal is untouched. Must be called while
+     * holding the lock.
+     *
+     * @param out receives errors
+     */
+    synchronized void snapshotPatched(OutputSink out) {
+        knownGeneration = readGeneration() + 1;
+        writeGeneration(knownGeneration, out);
+    }
+
+    /**
+     * Releases the lock and closes the lock file.
+     *
+     * @param out receives errors
+     */
+    synchronized void close(OutputSink out) {
+        reportBackgroundError(out);
+        release(out);
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                out.println("Error closing task lock file: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * @param out receives errors, or null on the flusher thread to report them later
+     */
+    private void release(OutputSink out) {
+        if (lock == null) {
+            return;
+        }
+        try {
+            lock.release();
+        } catch (IOException e) {
+            String message = "Error releasing task lock: " + e.getMessage();
+            if (out != null) {
+                out.println(message);
+            } else {
+                backgroundError = message;
+            }
+        }
+        lock = null;
+    }
+
+    private void reportBackgroundError(OutputSink out) {
+        if (backgroundError != null) {
+            out.println(backgroundError);
+            backgroundError = null;
+        }
+    }
+
+    private long readGeneration() {
+        if (channel == null && !lockFile.exists()) {
+            return 0;
+        }
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+                // keep reading until the long is complete or the file ends
+            }
+            return buffer.position() == Long.BYTES ? buffer.flip().getLong() : 0;
+        } catch (IOException e) {
+            return knownGeneration;
+        }
+    }
+
+    private void writeGeneration(long generation, OutputSink out) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(generation).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, buffer.position());
+            }
+        } catch (IOException e) {
+            out.println("Error updating task lock file: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package chattpg.storage;
+
+import chattpg.model.Deadline;
+import chattpg.model.Event;
+import chattpg.model.Occurrences;
+import chattpg.model.Recurring;
+import chattpg.model.RecurringDeadline;
+import chattpg.model.RecurringEvent;
+import chattpg.model.Task;
+import chattpg.model.Todo;
+import chattpg.ui.OutputSink;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * Streaming parser for the pipe-delimited task format used by {@link Storage}.
+ * <p>
+ * The parser reads through a fixed-size character buffer, splits lines and
+ * fields by scanning for {@code " | "} by hand, and only allocates the strings
+ * that end up inside the created tasks. No {@link java.util.Scanner} or regex
+ * is involved. Malformed lines are reported with their line number and
+ * skipped, so one bad record never aborts the whole load.
+ * <p>
+ * In a file that starts with {@link LineChecksum#SNAPSHOT_HEADER}, every
+ * line must end in a checksum and is skipped as corrupted if it does not
+ * match or is missing (e.g. a line torn by a crash). In other files a
+ * matching checksum is stripped and anything else is read as part of the
+ * line (see {@link LineChecksum}).
+ */
+public final class TaskFileParser {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_FIELDS = 6;
+
+    /** Read buffer, allocated by the first {@link #parse} so that {@link #decode(String)} stays cheap. */
+    private char[] buffer;
+    private char[] line = new char[256];
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private final LineChecksum checksum = new LineChecksum();
+    private final boolean alwaysChecksummed;
+    private boolean checksummed;
+    private boolean atStart;
+    private OutputSink messages;
+    private int lineNumber;
+    private int malformed;
+
+    /**
+     * Creates a parser for task files that mark checksummed lines with a header.
+     */
+    public TaskFileParser() {
+        this(false);
+    }
+
+    /**
+     * @param alwaysChecksummed true if every line of the input was written with
+     *                          a checksum, even without the header (e.g. a shard)
+     */
+    TaskFileParser(boolean alwaysChecksummed) {
+        this.alwaysChecksummed = alwaysChecksummed;
+    }
+
+    /**
+     * Parses every line from the reader and hands each decoded task to the sink.
+     * Blank lines are ignored; malformed lines are reported and skipped.
+     *
+     * @param reader   source of task lines; not closed by this method
+     * @param source   name used in error messages (e.g., the file path)
+     * @param sink     receives each successfully decoded task in file order
+     * @param messages receives a line for every malformed line skipped
+     * @return number of tasks passed to the sink
+     * @throws IOException if reading fails
+     */
+    public int parse(Reader reader, String source, Consumer<Task> sink, OutputSink messages) throws IOException {
+        return parse(reader, source, 0, sink, messages);
+    }
+
+    /**
+     * Parses the rest of a file whose first lines the caller already consumed
+     * (e.g. a header), so reported line numbers still match the file.
+     *
+     * @param reader      source of task lines; not closed by this method
+     * @param source      name used in error messages (e.g., the file path)
+     * @param linesBefore number of lines already read from the file
+     * @param sink        receives each successfully decoded task in file order
+     * @param messages    receives a line for every malformed line skipped
+     * @return number of tasks passed to the sink
+     * @throws IOException if reading fails
+     */
+    public int parse(Reader reader, String source, int linesBefore, Consumer<Task> sink, OutputSink messages)
+            throws IOException {
+        if (buffer == null) {
+            buffer = new char[BUFFER_SIZE];
+        }
+        this.messages = messages;
+        checksummed = alwaysChecksummed;
+        atStart = true;
+        lineNumber = linesBefore;
+        malformed = 0;
+        int parsed = 0;
+        int lineLength = 0;
+        int read;
+        while ((read = reader.read(buffer, 0, BUFFER_SIZE)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (c == '\n') {
+                    parsed += consumeLine(lineLength, source, sink);
+                    lineLength = 0;
+                } else {
+                    if (lineLength == line.length) {
+                        char[] grown = new char[line.length * 2];
+                        System.arraycopy(line, 0, grown, 0, lineLength);
+                        line = grown;
+                    }
+                    line[lineLength++] = c;
+                }
+            }
+        }
+        if (lineLength > 0) {
+            parsed += consumeLine(lineLength, source, sink);
+        }
+        return parsed;
+    }
+
+    /**
+     * Returns the number of lines skipped as malformed by the last {@link #parse} call.
+     *
+     * @return malformed line count
+     */
+    public int getMalformedCount() {
+        return malformed;
+    }
+
+    /**
+     * Decodes a single task line.
+     *
+     * @param text a line such as {@code "D | 0 | return book | Sunday"}
+     * @return the decoded task
+     * @throws MalformedTaskLineException if the line does not follow the format
+     */
+    public static Task decode(String text) throws MalformedTaskLineException {
+        TaskFileParser parser = new TaskFileParser();
+        char[] chars = text.toCharArray();
+        return parser.decode(chars, stripCarriageReturn(chars, chars.length));
+    }
+
+    private int consumeLine(int length, String source, Consumer<Task> sink) {
+        lineNumber++;
+        length = stripCarriageReturn(line, length);
+        if (isBlank(line, length)) {
+            return 0;
+        }
+        if (atStart) {
+            atStart = false;
+            if (LineChecksum.isSnapshotHeader(line, length)) {
+                checksummed = true;
+                return 0;
+            }
+        }
+        try {
+            int suffix = LineChecksum.suffixStart(line, length);
+            if (suffix < 0 && checksummed) {
+                throw new MalformedTaskLineException("missing checksum");
+            }
+            if (suffix >= 0) {
+                if (checksum.verifySnapshotLine(line, 0, suffix)) {
+                    length = suffix;
+                } else if (checksummed) {
+                    throw new MalformedTaskLineException("checksum mismatch, the line is corrupted");
+                }
+            }
+            sink.accept(decode(line, length));
+            return 1;
+        } catch (MalformedTaskLineException e) {
+            malformed++;
+            messages.printf("Skipping malformed line %d in %s: %s%n", lineNumber, source, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Splits {@code chars[0, length)} into fields and builds the task.
+     */
+    private Task decode(char[] chars, int length) throws MalformedTaskLineException {
+        int fields = split(chars, length);
+        if (fields < 3) {
+            throw new MalformedTaskLineException("expected at least 3 fields but found " + fields);
+        }
+        if (fieldEnd[0] - fieldStart[0] != 1) {
+            throw new MalformedTaskLineException("task type must be a single letter");
+        }
+        if (fieldEnd[1] - fieldStart[1] != 1 || (chars[fieldStart[1]] != '0' && chars[fieldStart[1]] != '1')) {
+            throw new MalformedTaskLineException("done flag must be 0 or 1");
+        }
+        char type = chars[fieldStart[0]];
+        boolean isDone = chars[fieldStart[1]] == '1';
+        try {
+            Task task;
+            switch (type) {
+            case 'T':
+                // A todo has no field after its description, so a " | " typed into it is part of it.
+                task = new Todo(rest(chars, 2, fields));
+                break;
+            case 'D': {
+                Occurrences occurrences = fields == 5 ? Occurrences.parseIfRule(field(chars, 4)) : null;
+                if (occurrences != null) {
+                    task = new RecurringDeadline(field(chars, 2), field(chars, 3), occurrences);
+                } else {
+                    requireFields(type, Math.min(fields, 4), 4);
+                    task = new Deadline(field(chars, 2), rest(chars, 3, fields));
+                }
+                break;
+            }
+            case 'E': {
+                Occurrences occurrences = fields == 6 ? Occurrences.parseIfRule(field(chars, 5)) : null;
+                if (occurrences != null) {
+                    task = new RecurringEvent(field(chars, 2), field(chars, 3), field(chars, 4), occurrences);
+                } else {
+                    requireFields(type, Math.min(fields, 5), 5);
+                    task = new Event(field(chars, 2), field(chars, 3), rest(chars, 4, fields));
+                }
+                break;
+            }
+            default:
+                throw new MalformedTaskLineException("unknown task type '" + type + "'");
+            }
+            // A series keeps its done occurrences in its last field instead.
+            if (isDone && !(task instanceof Recurring)) {
+                task.markTaskAsDone();
+            }
+            return task;
+        } catch (IllegalArgumentException e) {
+            throw new MalformedTaskLineException(e.getMessage());
+        }
+    }
+
+    /**
+     * Records the boundaries of up to {@link #MAX_FIELDS} fields separated by
+     * {@code " | "}. Any separators beyond the last field are kept as part of it.
+     *
+     * @return number of fields found
+     */
+    private int split(char[] chars, int length) {
+        int fields = 0;
+        int start = 0;
+        int i = 0;
+        while (i + 2 < length && fields < MAX_FIELDS - 1) {
+            if (chars[i] == ' ' && chars[i + 1] == '|' && chars[i + 2] == ' ') {
+                fieldStart[fields] = start;
+                fieldEnd[fields] = i;
+                fields++;
+                i += 3;
+                start = i;
+            } else {
+                i++;
+            }
+        }
+        fieldStart[fields] = start;
+        fieldEnd[fields] = length;
+        return fields + 1;
+    }
+
+    private String field(char[] chars, int index) {
+        return new String(chars, fieldStart[index], fieldEnd[index] - fieldStart[index]);
+    }
+
+    /**
+     * Returns the fields from {@code index} on as one string, separators
+     * included, for the last field of a task, which may itself contain them.
+     */
+    private String rest(char[] chars, int index, int fields) {
+        return new String(chars, fieldStart[index], fieldEnd[fields - 1] - fieldStart[index]);
+    }
+
+    private static void requireFields(char type, int actual, int expected) throws MalformedTaskLineException {
+        if (actual != expected) {
+            throw new MalformedTaskLineException(
+                    "type " + type + " expects " + expected + " fields but found " + actual);
+        }
+    }
+
+    private static int stripCarriageReturn(char[] chars, int length) {
+        return length > 0 && chars[length - 1] == '\r' ? length - 1 : length;
+    }
+
+    private static boolean isBlank(char[] chars, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!Character.isWhitespace(chars[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,73 @@
+package chattpg.storage;
+
+import chattpg.model.Deadline;
+import chattpg.model.Event;
+import chattpg.model.Recurring;
+import chattpg.model.Task;
+import chattpg.model.Todo;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streams tasks as checksummed snapshot lines (see {@link Storage} for the
+ * format), reusing one line buffer instead of building a string per task.
+ * <p>
+ * Not thread-safe; snapshot writers that work in parallel use one each.
+ */
+final class TaskLineWriter {
+    private static final String SEPARATOR = " | ";
+
+    private final LineChecksum checksum = new LineChecksum();
+    private final StringBuilder lineBuffer = new StringBuilder();
+
+    /**
+     * Writes one task as a line, terminated by the platform line separator.
+     * Unsupported task types are skipped.
+     *
+     * @param t      the task
+     * @param writer destination
+     * @throws IOException if writing fails
+     */
+    void write(Task t, Writer writer) throws IOException {
+        CharSequence line = format(t, t.isDone());
+        if (line == null) {
+            return;
+        }
+        writer.append(line);
+        writer.write(System.lineSeparator());
+    }
+
+    /**
+     * Formats one task as a checksummed line with the given done flag,
+     * without a line terminator. The result is only valid until the next call.
+     *
+     * @param t    the task
+     * @param done the done flag to write, whatever the task's current state
+     * @return the line, or null for unsupported task types
+     */
+    CharSequence format(Task t, boolean done) {
+        char type;
+        if (t instanceof Todo) {
+            type = 'T';
+        } else if (t instanceof Deadline) {
+            type = 'D';
+        } else if (t instanceof Event) {
+            type = 'E';
+        } else {
+            return null;
+        }
+        lineBuffer.setLength(0);
+        lineBuffer.append(type).append(SEPARATOR).append(done ? '1' : '0').append(SEPARATOR)
+                .append(t.getDescription());
+        if (t instanceof Deadline d) {
+            lineBuffer.append(SEPARATOR).append(d.getBy());
+        } else if (t instanceof Event e) {
+            lineBuffer.append(SEPARATOR).append(e.getFrom()).append(SEPARATOR).append(e.getTo());
+        }
+        if (t instanceof Recurring r) {
+            lineBuffer.append(SEPARATOR).append(r.getOccurrences());
+        }
+        checksum.appendSuffix(lineBuffer);
+        return lineBuffer;
+    }
+}
@@ -0,0 +1,85 @@
+package chattpg.ui;
+
+import java.io.PrintStream;
+
+/**
+ * {@link OutputSink} that accumulates output in a reusable buffer and writes it
+ * to the underlying stream in a single call per {@link #flush()}, instead of
+ * one synchronized {@link PrintStream#println(String)} per line. Very large
+ * outputs are written out early once the buffer exceeds its limit, so memory
+ * stays bounded when listing huge task lists.
+ */
+public class BufferedOutputSink implements OutputSink {
+    private static final String NEWLINE = System.lineSeparator();
+    private static final int DEFAULT_LIMIT = 1 << 16;
+
+    private final PrintStream out;
+    private final int limit;
+    private final StringBuilder buffer;
+
+    /**
+     * Creates a sink writing to the given stream.
+     *
+     * @param out destination stream, typically {@code System.out}
+     */
+    public BufferedOutputSink(PrintStream out) {
+        this(out, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Creates a sink writing to the given stream.
+     *
+     * @param out   destination stream
+     * @param limit number of buffered characters that triggers an early write
+     */
+    public BufferedOutputSink(PrintStream out, int limit) {
+        this.out = out;
+        this.limit = limit;
+        this.buffer = new StringBuilder(Math.min(limit, 1024));
+    }
+
+    @Override
+    public OutputSink print(String text) {
+        buffer.append(text);
+        return spillIfFull();
+    }
+
+    @Override
+    public OutputSink print(char c) {
+        buffer.append(c);
+        return spillIfFull();
+    }
+
+    @Override
+    public OutputSink print(int value) {
+        buffer.append(value);
+        return spillIfFull();
+    }
+
+    @Override
+    public OutputSink newLine() {
+        buffer.append(NEWLINE);
+        return spillIfFull();
+    }
+
+    @Override
+    public void flush() {
+        write();
+        out.flush();
+    }
+
+    private OutputSink spillIfFull() {
+        if (buffer.length() >= limit) {
+            write();
+        }
+        return this;
+    }
+
+    private void write() {
+        if (buffer.length() == 0) {
+            return;
+        }
+        out.append(buffer);
+        buffer.setLength(0);
+    }
+}
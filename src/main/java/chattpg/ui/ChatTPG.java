@@ -2,6 +2,16 @@ package chattpg.ui;
 
 import chattpg.logic.TaskOrganiser;
 import chattpg.logic.exceptions.InvalidCommandException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Scanner;
 
 /**
@@ -13,8 +23,9 @@ import java.util.Scanner;
  *   <li>Delegate the "task organiser" flow to {@link TaskOrganiser}</li>
  *   <li>Handle unknown commands via {@link InvalidCommandException}</li>
  * </ul>
- * This class intentionally keeps I/O simple (System.in/System.out) and leaves
- * task management concerns to the organiser module.
+ * This class intentionally keeps I/O simple (System.in and a buffered
+ * {@link OutputSink} over System.out) and leaves task management concerns to
+ * the organiser module.
  */
 public class ChatTPG {
 
@@ -26,53 +37,57 @@ public class ChatTPG {
     ********************************************
     """;
     private static final String LINE = "---------------------------------------------";
+    private static final int DEFAULT_PORT = 7070;
 
     private final Scanner scanner;
+    private final OutputSink out;
     private final TaskOrganiser organiser;
 
     /**
      * Constructs a new ChatTPG shell with a shared scanner passed to
-     * the Task Organiser so both layers read from the same input stream.
+     * the Task Organiser so both layers read from the same input stream, and a
+     * shared output sink so their output is flushed in order.
      */
     public ChatTPG() {
         this.scanner = new Scanner(System.in);
-        this.organiser = new TaskOrganiser(scanner);
+        this.out = new BufferedOutputSink(System.out);
+        this.organiser = new TaskOrganiser(scanner, out);
     }
 
     /**
      * Prints the list of valid top-level commands followed by the prompt.
      */
     private void printOptions() {
-        System.out.println("- open task organiser");
-        System.out.println("- bye (to exit)");
-        System.out.println(LINE);
-        System.out.println("Please enter your command:");
+        out.println("- open task organiser");
+        out.println("- bye (to exit)");
+        out.println(LINE);
+        out.println("Please enter your command:");
     }
 
     /**
      * Prints the main menu banner and the available options.
      */
     private void printMainMenu() {
-        System.out.println(MAIN_MENU);
+        out.println(MAIN_MENU);
         printOptions();
-        System.out.println(LINE);
+        out.println(LINE);
     }
 
     /**
      * Greets the user and prints a horizontal separator.
      */
     private void greetUser() {
-        System.out.println("Hello! I'm ChatTPG.");
-        System.out.println("What can I do for you?");
-        System.out.println(LINE);
+        out.println("Hello! I'm ChatTPG.");
+        out.println("What can I do for you?");
+        out.println(LINE);
     }
 
     /**
      * Prints the farewell message before terminating the application.
      */
     private void printGoodbye() {
-        System.out.println("You shut me down... how sad. Maybe we will meet again...");
-        System.out.println(LINE);
+        out.println("You shut me down... how sad. Maybe we will meet again...");
+        out.println(LINE);
     }
 
     /**
@@ -95,8 +110,9 @@ public class ChatTPG {
         greetUser();
         printMainMenu();
         while (true) {
+            out.flush();
             final String input = scanner.nextLine().trim().toLowerCase();
-            System.out.println(LINE);
+            out.println(LINE);
             try {
                 switch (input) {
                 case "open task organiser":
@@ -104,31 +120,83 @@ public class ChatTPG {
                         organiser.run();
                         printMainMenu();
                     } catch (RuntimeException ex) {
-                        System.out.println("Something went wrong in Task Organiser: " + ex.getMessage());
+                        out.println("Something went wrong in Task Organiser: " + ex.getMessage());
                     }
                     break;
                 case "bye":
+                    organiser.shutdown();
                     printGoodbye();
+                    out.flush();
                     return;
                 default:
                     printUnknownCommand();
                     break;
                 }
             } catch (InvalidCommandException ice) {
-                System.out.println(ice.getMessage());
+                out.println(ice.getMessage());
                 printOptions();
-                System.out.println(LINE);
+                out.println(LINE);
             }
         }
     }
 
     /**
-     * Application entry point.
+     * Application entry point. With no arguments the interactive menu starts.
+     * {@code --batch <file>} (or {@code --batch -} for standard input) runs a
+     * command file non-interactively instead; adding {@code --quiet} suppresses
+     * per-command output and prints only errors and the summary.
+     * {@code --serve [port]} shares the task list with concurrent clients over
+     * loopback TCP instead (default port {@value #DEFAULT_PORT}).
      *
-     * @param args CLI arguments (unused)
+     * @param args CLI arguments
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(args);
+            return;
+        } else if (args.length > 0 && args[0].equals("--serve")) {
+            runServer(args);
+            return;
+        }
         new ChatTPG().run();
     }
+
+    /**
+     * Runs the server mode described in {@link #main(String[])}.
+     */
+    private static void runServer(String[] args) {
+        OutputSink log = new BufferedOutputSink(System.out);
+        try {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+            new TaskOrganiser(new Scanner(InputStream.nullInputStream()), log).runServer(port);
+        } catch (NumberFormatException e) {
+            log.println("Please enter a valid port number.");
+        } catch (IOException e) {
+            log.println("Error running task server: " + e.getMessage());
+        }
+        log.flush();
+    }
+
+    /**
+     * Runs the batch mode described in {@link #main(String[])}.
+     */
+    private static void runBatch(String[] args) {
+        boolean quiet = Arrays.asList(args).contains("--quiet");
+        String source = args.length > 1 && !args[1].equals("--quiet") ? args[1] : "-";
+        OutputSink report = new BufferedOutputSink(System.out);
+        OutputSink commandOutput = quiet
+                ? new BufferedOutputSink(new PrintStream(OutputStream.nullOutputStream()))
+                : report;
+        Scanner unused = new Scanner(InputStream.nullInputStream());
+        TaskOrganiser organiser = new TaskOrganiser(unused, commandOutput);
+        try (BufferedReader input = source.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(source), StandardCharsets.UTF_8)) {
+            organiser.runBatch(input, report);
+        } catch (IOException e) {
+            report.println("Error reading batch input: " + e.getMessage());
+            report.flush();
+        }
+    }
 }
 
@@ -0,0 +1,70 @@
+package chattpg.ui;
+
+/**
+ * Destination for console output produced by ChatTPG.
+ * <p>
+ * Commands write their output through a sink instead of {@code System.out} so
+ * that implementations can collect a whole command's output and emit it in one
+ * write (see {@link BufferedOutputSink}), or redirect it elsewhere entirely.
+ * Callers must {@link #flush()} before blocking on user input so prompts are
+ * visible.
+ */
+public interface OutputSink {
+
+    /**
+     * Appends text without a line terminator.
+     *
+     * @param text text to append
+     * @return this sink, for chaining
+     */
+    OutputSink print(String text);
+
+    /**
+     * Appends a single character.
+     *
+     * @param c character to append
+     * @return this sink, for chaining
+     */
+    OutputSink print(char c);
+
+    /**
+     * Appends the decimal form of a number without boxing or formatting.
+     *
+     * @param value number to append
+     * @return this sink, for chaining
+     */
+    OutputSink print(int value);
+
+    /**
+     * Appends the platform line separator.
+     *
+     * @return this sink, for chaining
+     */
+    OutputSink newLine();
+
+    /**
+     * Appends text followed by the platform line separator.
+     *
+     * @param text text to append
+     * @return this sink, for chaining
+     */
+    default OutputSink println(String text) {
+        return print(text).newLine();
+    }
+
+    /**
+     * Appends formatted text, as {@link String#format(String, Object...)}.
+     *
+     * @param format format string
+     * @param args   format arguments
+     * @return this sink, for chaining
+     */
+    default OutputSink printf(String format, Object... args) {
+        return print(String.format(format, args));
+    }
+
+    /**
+     * Emits everything appended since the last flush.
+     */
+    void flush();
+}
@@ -0,0 +1,45 @@
+package chattpg.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import chattpg.storage.Durability;
+import chattpg.storage.Storage;
+import chattpg.storage.StorageOptions;
+import chattpg.ui.RecordingSink;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Commands a batch handles itself instead of passing on to the task list.
+ */
+class BatchRunnerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void helpPrintsCommandsAndByeStopsReading() throws Exception {
+        Path file = Files.createFile(dir.resolve("tasks.txt"));
+        RecordingSink out = new RecordingSink();
+        RecordingSink report = new RecordingSink();
+        TaskActions actions = new TaskActions(new IndexedTaskStore(), new Storage(file.toString(),
+                StorageOptions.defaults().withDurability(Durability.SYNC)), "--", out);
+        actions.loadFromFile();
+        out.take();
+
+        new BatchRunner(actions, report).run(new BufferedReader(new StringReader(
+                "todo read book\nhelp\nbye\ntodo return book\n")));
+        String printed = out.take();
+        String summary = report.take();
+        actions.close();
+
+        assertTrue(printed.contains(BatchRunner.COMMANDS), printed);
+        assertTrue(summary.contains("3 commands (0 failed)"), summary);
+        assertEquals(1, actions.size());
+        assertTrue(Files.readString(file).contains("read book"));
+    }
+}
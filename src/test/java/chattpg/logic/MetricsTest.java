@@ -0,0 +1,33 @@
+package chattpg.logic;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import chattpg.storage.StorageStats;
+import chattpg.ui.RecordingSink;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Where errors of the metrics exports are reported.
+ */
+class MetricsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void reportFileErrorsGoToTheCallersSink() {
+        Path file = dir.resolve("missing").resolve("metrics.txt");
+        System.setProperty("chattpg.metrics.file", file.toString());
+        RecordingSink out = new RecordingSink();
+        try {
+            Metrics metrics = new Metrics(new StorageStats(), () -> 0);
+            metrics.export(out);
+            metrics.close(out);
+        } finally {
+            System.clearProperty("chattpg.metrics.file");
+        }
+        String messages = out.take();
+        assertTrue(messages.startsWith("Error writing metrics file"), messages);
+    }
+}
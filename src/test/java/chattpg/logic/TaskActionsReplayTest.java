@@ -0,0 +1,191 @@
+package chattpg.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import chattpg.storage.Durability;
+import chattpg.storage.Storage;
+import chattpg.storage.StorageOptions;
+import chattpg.ui.RecordingSink;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Order of the list after deletions are undone and redone, in the session
+ * that made them and when another session replays their journal records,
+ * including inserts where the store has to renumber tasks to make room.
+ */
+class TaskActionsReplayTest {
+    private static final Pattern LISTED = Pattern.compile("^\\t\\d+\\. \\[.]\\[.] (.*)$", Pattern.MULTILINE);
+    private static final int COUNT = 60;
+
+    @TempDir
+    Path dir;
+
+    static Stream<Arguments> stores() {
+        return Stream.of(
+                Arguments.of("indexed", (Supplier<TaskStore>) IndexedTaskStore::new),
+                Arguments.of("columnar", (Supplier<TaskStore>) ColumnarTaskStore::new),
+                Arguments.of("lazy", (Supplier<TaskStore>) LazyTaskStore::new));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void undoAndRedoOfRangeDeleteKeepOrder(String name, Supplier<TaskStore> store) throws Exception {
+        Path file = writeTasks(COUNT);
+        Session session = new Session(store.get(), file);
+        List<String> original = session.listed();
+
+        session.actions.deleteTasks("10-30");
+        List<String> deleted = new ArrayList<>(original);
+        deleted.subList(9, 30).clear();
+        assertEquals(deleted, session.listed());
+
+        session.actions.undo();
+        assertEquals(original, session.listed());
+        session.actions.redo();
+        assertEquals(deleted, session.listed());
+        session.actions.undo();
+        assertEquals(original, session.listed());
+        session.actions.close();
+
+        assertEquals(original, new Session(store.get(), file).listed());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void groupedUndoReplaysInOrderAfterSnapshot(String name, Supplier<TaskStore> store) throws Exception {
+        Path file = writeTasks(COUNT);
+        Session writer = new Session(new IndexedTaskStore(), file);
+        List<String> original = writer.listed();
+        writer.actions.deleteTasks("5-40");
+        // The deletion is now in the snapshot, so its tasks' neighbours have consecutive IDs.
+        writer.actions.saveToFile();
+
+        Session reader = new Session(store.get(), file);
+        reader.actions.searchTasks("chapter");
+        writer.actions.undo();
+
+        assertEquals(original, reader.listed(), "journal tail replayed into a loaded store");
+        assertEquals(original, new Session(store.get(), file).listed(), "journal replayed on load");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void undoAfterRenumberingNeverRemovesAnotherTask(String name, Supplier<TaskStore> store) throws Exception {
+        Path file = writeTasks(COUNT);
+        Session writer = new Session(new IndexedTaskStore(), file);
+        List<String> original = writer.listed();
+        writer.actions.deleteTasks("20-50");
+        writer.actions.saveToFile();
+
+        Session reader = new Session(store.get(), file);
+        reader.actions.addTask("todo added by reader");
+        writer.actions.undo();
+        List<String> expected = new ArrayList<>(original);
+        expected.add("added by reader");
+        assertEquals(expected, reader.listed());
+
+        // The replay moved tasks to new IDs; undoing the add must not remove whatever took its old ID.
+        reader.actions.undo();
+        List<String> after = reader.listed();
+        assertEquals(original, after.subList(0, original.size()));
+    }
+
+    @Test
+    void randomJournalsReplayLikeAPlainLoad() throws Exception {
+        Random random = new Random(16);
+        for (int round = 0; round < 40; round++) {
+            int count = random.nextInt(200);
+            Path file = writeTasks(count);
+            Files.write(Path.of(file + ".journal"), randomJournal(random, count));
+            Path copy = dir.resolve("copy.txt");
+            Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(Path.of(file + ".journal"), Path.of(copy + ".journal"),
+                    StandardCopyOption.REPLACE_EXISTING);
+
+            // A lazy store replays into the store itself, the indexed store into a plain list first.
+            List<String> replayed = new Session(new LazyTaskStore(), file).listed();
+            assertEquals(new Session(new IndexedTaskStore(), copy).listed(), replayed, "round " + round);
+        }
+    }
+
+    /**
+     * Random inserts (single and in runs at consecutive positions, as a
+     * grouped undo writes them), range deletions, marks and appends.
+     */
+    private static List<String> randomJournal(Random random, int count) {
+        List<String> journal = new ArrayList<>();
+        int size = count;
+        int next = 0;
+        for (int k = 0; k < 60; k++) {
+            int op = random.nextInt(4);
+            if (op <= 1) {
+                int position = random.nextInt(size + 1);
+                int run = 1 + random.nextInt(op == 0 ? 1 : 40);
+                for (int i = 0; i < run; i++) {
+                    journal.add("I | " + (position + i) + " | T | 0 | inserted " + next++);
+                    size++;
+                }
+            } else if (op == 2 && size > 0) {
+                int from = random.nextInt(size);
+                int length = 1 + random.nextInt(Math.min(size - from, 20));
+                journal.add("- | " + from + "-" + (from + length - 1));
+                size -= length;
+            } else if (size > 0) {
+                journal.add("M | " + random.nextInt(size));
+                journal.add("+ | T | 0 | appended " + next++);
+                size++;
+            }
+        }
+        return journal;
+    }
+
+    private Path writeTasks(int count) throws IOException {
+        Path file = Files.createTempFile(dir, "tasks", ".txt");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add("T | 0 | read chapter " + i);
+        }
+        Files.write(file, lines);
+        return file;
+    }
+
+    /** One TaskActions over a file, with its output recorded. */
+    private static final class Session {
+        private final RecordingSink out = new RecordingSink();
+        private final TaskActions actions;
+
+        Session(TaskStore store, Path file) {
+            // Synchronous commits release the file lock after every change, so sessions can take turns.
+            actions = new TaskActions(store, new Storage(file.toString(),
+                    StorageOptions.defaults().withDurability(Durability.SYNC)), "--", out);
+            actions.loadFromFile();
+        }
+
+        /** @return the descriptions shown by {@code list}, in order */
+        List<String> listed() {
+            out.take();
+            actions.listTasks();
+            List<String> descriptions = new ArrayList<>();
+            Matcher matcher = LISTED.matcher(out.take());
+            while (matcher.find()) {
+                descriptions.add(matcher.group(1));
+            }
+            return descriptions;
+        }
+    }
+}
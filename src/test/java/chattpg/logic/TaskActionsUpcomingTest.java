@@ -0,0 +1,76 @@
+package chattpg.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import chattpg.storage.Durability;
+import chattpg.storage.Storage;
+import chattpg.storage.StorageOptions;
+import chattpg.ui.RecordingSink;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * How many occurrences date queries list for a recurring task, which never
+ * runs out of them.
+ */
+class TaskActionsUpcomingTest {
+    private static final Pattern LISTED = Pattern.compile("^\\t\\d+\\. ", Pattern.MULTILINE);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void hugeCountStopsAtTheLimitPerSeries() throws Exception {
+        Path file = Files.createFile(dir.resolve("tasks.txt"));
+        RecordingSink out = new RecordingSink();
+        TaskActions actions = new TaskActions(new IndexedTaskStore(), new Storage(file.toString(),
+                StorageOptions.defaults().withDurability(Durability.SYNC)), "--", out);
+        actions.loadFromFile();
+        actions.addTask("deadline pay rent /by 2025-10-01 /every day");
+        out.take();
+
+        actions.upcoming(2_000_000_000);
+        String printed = out.take();
+        actions.close();
+
+        assertTrue(printed.startsWith("Here are your next " + TimeIndex.MAX_OCCURRENCES_PER_SERIES + " dated"),
+                printed.lines().findFirst().orElse(""));
+        assertTrue(printed.contains("(showing the first " + TimeIndex.MAX_OCCURRENCES_PER_SERIES + ")"), printed);
+        Matcher matcher = LISTED.matcher(printed);
+        int listed = 0;
+        while (matcher.find()) {
+            listed++;
+        }
+        assertEquals(TimeIndex.MAX_OCCURRENCES_PER_SERIES, listed);
+    }
+
+    @Test
+    void betweenListsEveryOccurrenceInRange() throws Exception {
+        Path file = Files.createFile(dir.resolve("tasks.txt"));
+        RecordingSink out = new RecordingSink();
+        TaskActions actions = new TaskActions(new IndexedTaskStore(), new Storage(file.toString(),
+                StorageOptions.defaults().withDurability(Durability.SYNC)), "--", out);
+        actions.loadFromFile();
+        actions.addTask("deadline pay rent /by 2025-10-01 /every day");
+        out.take();
+
+        actions.between("2025-10-01 2030-12-31");
+        String printed = out.take();
+        actions.close();
+
+        Matcher matcher = LISTED.matcher(printed);
+        int listed = 0;
+        while (matcher.find()) {
+            listed++;
+        }
+        // Every day from 2025-10-01 to 2030-12-31.
+        assertEquals(1918, listed);
+        assertFalse(printed.contains("showing the first"), printed);
+    }
+}
@@ -0,0 +1,137 @@
+package chattpg.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import chattpg.logic.IndexedTaskStore;
+import chattpg.logic.LazyTaskStore;
+import chattpg.logic.TaskActions;
+import chattpg.logic.TaskStore;
+import chattpg.model.Task;
+import chattpg.ui.RecordingSink;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Replay of a journal that contains a record which cannot be applied.
+ */
+class StorageJournalTest {
+    private static final Pattern LISTED = Pattern.compile("^\\t\\d+\\. \\[.]\\[.] (.*)$", Pattern.MULTILINE);
+    private static final List<String> JOURNAL = List.of("+ | T | 0 | appended", "- | not a position", "- | 0");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void loadStopsAtInvalidRecordAndKeepsJournal() throws Exception {
+        Path file = writeTasks();
+        Path journal = Path.of(file + ".journal");
+        Files.write(journal, JOURNAL);
+        RecordingSink out = new RecordingSink();
+
+        List<Task> tasks = new Storage(file.toString(), StorageOptions.defaults()).load(out);
+
+        String messages = out.take();
+        assertEquals(List.of("one", "two", "three", "appended"), descriptions(tasks), messages);
+        assertTrue(messages.contains("Stopped replaying the task journal at invalid record on line 2"), messages);
+        assertFalse(Files.exists(journal));
+        assertEquals(JOURNAL, Files.readAllLines(Path.of(journal + ".corrupt")));
+        // The applied records were saved, and nothing is replayed twice.
+        assertEquals(descriptions(tasks), descriptions(new Storage(file.toString()).load(out)));
+    }
+
+    @Test
+    void invalidRangeChangesNoTask() throws Exception {
+        Path file = writeTasks();
+        Files.write(Path.of(file + ".journal"), List.of("M | 1", "M | 0-2"));
+        RecordingSink out = new RecordingSink();
+
+        List<Task> tasks = new Storage(file.toString(), StorageOptions.defaults()).load(out);
+
+        String messages = out.take();
+        assertTrue(messages.contains("task at position 1 is already marked done"), messages);
+        List<Boolean> done = List.of(false, true, false);
+        assertEquals(done, doneFlags(tasks), messages);
+        assertEquals(done, doneFlags(new Storage(file.toString()).load(out)));
+    }
+
+    @Test
+    void lazyLoadStopsAtInvalidRecordAndKeepsJournal() throws Exception {
+        Path file = writeTasks();
+        Path journal = Path.of(file + ".journal");
+        Files.write(journal, JOURNAL);
+        Files.write(Path.of(journal + ".corrupt"), List.of("older backup"));
+
+        assertEquals(List.of("one", "two", "three", "appended"), listed(new LazyTaskStore(), file));
+        assertFalse(Files.exists(journal));
+        assertEquals(List.of("older backup"), Files.readAllLines(Path.of(journal + ".corrupt")));
+        assertEquals(JOURNAL, Files.readAllLines(Path.of(journal + ".corrupt.1")));
+        assertEquals(List.of("one", "two", "three", "appended"), listed(new IndexedTaskStore(), file));
+    }
+
+    @Test
+    void journalTailStopsAtInvalidRecord() throws Exception {
+        Path file = writeTasks();
+        Path journal = Path.of(file + ".journal");
+        RecordingSink out = new RecordingSink();
+        TaskActions actions = new TaskActions(new IndexedTaskStore(),
+                new Storage(file.toString(), StorageOptions.defaults().withDurability(Durability.SYNC)), "--", out);
+        actions.loadFromFile();
+
+        // Another process appends records, one of them damaged.
+        Files.write(journal, JOURNAL, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        actions.addTask("todo added");
+
+        String messages = out.take();
+        assertTrue(messages.contains("Stopped replaying the task journal"), messages);
+        assertEquals(JOURNAL, Files.readAllLines(Path.of(journal + ".corrupt")));
+        List<String> expected = List.of("one", "two", "three", "appended", "added");
+        assertEquals(expected, listed(new IndexedTaskStore(), file));
+        actions.close();
+    }
+
+    private Path writeTasks() throws Exception {
+        Path file = dir.resolve("tasks.txt");
+        Files.write(file, List.of("T | 0 | one", "T | 0 | two", "T | 0 | three"));
+        return file;
+    }
+
+    private static List<String> listed(TaskStore store, Path file) {
+        RecordingSink out = new RecordingSink();
+        TaskActions actions = new TaskActions(store, new Storage(file.toString()), "--", out);
+        actions.loadFromFile();
+        out.take();
+        actions.listTasks();
+        List<String> descriptions = new ArrayList<>();
+        Matcher matcher = LISTED.matcher(out.take());
+        while (matcher.find()) {
+            descriptions.add(matcher.group(1));
+        }
+        actions.close();
+        return descriptions;
+    }
+
+    private static List<String> descriptions(List<Task> tasks) {
+        List<String> descriptions = new ArrayList<>();
+        for (Task task : tasks) {
+            descriptions.add(task.getDescription());
+        }
+        return descriptions;
+    }
+
+    private static List<Boolean> doneFlags(List<Task> tasks) {
+        List<Boolean> done = new ArrayList<>();
+        for (Task task : tasks) {
+            done.add(task.isDone());
+        }
+        return done;
+    }
+}
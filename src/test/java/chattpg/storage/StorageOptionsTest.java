@@ -0,0 +1,50 @@
+package chattpg.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import chattpg.model.Task;
+import chattpg.model.Todo;
+import chattpg.ui.RecordingSink;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Group-commit settings out of range.
+ */
+class StorageOptionsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void flushWindowBelowOneIsReplacedAndReported() throws Exception {
+        System.setProperty("chattpg.flush.millis", "0");
+        System.setProperty("chattpg.flush.batch", "-5");
+        StorageOptions options;
+        try {
+            options = StorageOptions.fromSystemProperties();
+        } finally {
+            System.clearProperty("chattpg.flush.millis");
+            System.clearProperty("chattpg.flush.batch");
+        }
+        assertEquals(1, options.getFlushWindowMillis());
+        assertEquals(1, options.getFlushBatch());
+
+        Path file = dir.resolve("tasks.txt");
+        Storage storage = new Storage(file.toString(), options.withDurability(Durability.GROUP));
+        RecordingSink out = new RecordingSink();
+        List<Task> tasks = new ArrayList<>(storage.load(out));
+        String messages = out.take();
+        assertTrue(messages.contains("Invalid group commit window of 0 ms and -5 records; using 1 ms and 1 records."),
+                messages);
+
+        tasks.add(new Todo("written"));
+        storage.recordAdd(tasks, tasks.get(0), out);
+        storage.close(out);
+        assertEquals(1, Files.readAllLines(Path.of(file + ".journal")).size() - 1, out.take());
+    }
+}
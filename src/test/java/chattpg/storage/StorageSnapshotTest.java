@@ -0,0 +1,130 @@
+package chattpg.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import chattpg.model.Task;
+import chattpg.model.Todo;
+import chattpg.ui.RecordingSink;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Loading a snapshot that cannot be read must never replace it.
+ */
+class StorageSnapshotTest {
+    private static final List<String> JOURNAL = List.of("+ | T | 0 | appended");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void unreadableBinarySnapshotIsSetAsideAndKept() throws Exception {
+        Path file = dir.resolve("tasks.txt");
+        Path binary = dir.resolve("tasks.bin");
+        StorageOptions options = StorageOptions.defaults().withSnapshotFormat(SnapshotFormat.BINARY)
+                .withDurability(Durability.SYNC);
+        Storage writer = new Storage(file.toString(), options);
+        writer.save(tasks("one", "two", "three"), new RecordingSink());
+        writer.close(new RecordingSink());
+        byte[] corrupted = Files.readAllBytes(binary);
+        corrupted[BinarySnapshot.MAGIC.length] = 99;
+        Files.write(binary, corrupted);
+        Path journal = Path.of(file + ".journal");
+        Files.write(journal, JOURNAL);
+        RecordingSink out = new RecordingSink();
+
+        Storage storage = new Storage(file.toString(), options);
+        List<Task> loaded = storage.load(out);
+        storage.close(out);
+
+        String messages = out.take();
+        assertTrue(messages.contains("unsupported snapshot version 99"), messages);
+        assertEquals(1, loaded.size(), messages);
+        assertFalse(Files.exists(binary), "the replayed journal was saved as the snapshot");
+        assertArrayEquals(corrupted, Files.readAllBytes(Path.of(binary + ".corrupt")));
+        assertEquals(JOURNAL, Files.readAllLines(journal));
+    }
+
+    @Test
+    void unreadableSnapshotAndJournalAreKeptUntilTheListChanges() throws Exception {
+        Path file = dir.resolve("tasks.txt");
+        Path binary = dir.resolve("tasks.bin");
+        StorageOptions options = StorageOptions.defaults().withSnapshotFormat(SnapshotFormat.BINARY)
+                .withDurability(Durability.SYNC);
+        Storage writer = new Storage(file.toString(), options);
+        writer.save(tasks("one", "two", "three"), new RecordingSink());
+        writer.close(new RecordingSink());
+        byte[] corrupted = Files.readAllBytes(binary);
+        corrupted[BinarySnapshot.MAGIC.length] = 99;
+        Files.write(binary, corrupted);
+        Path journal = Path.of(file + ".journal");
+        List<String> damaged = List.of("+ | T | 0 | appended", "- | 0-5");
+        Files.write(journal, damaged);
+        RecordingSink out = new RecordingSink();
+
+        Storage storage = new Storage(file.toString(), options);
+        List<Task> loaded = storage.load(out);
+
+        String messages = out.take();
+        assertTrue(messages.contains("Stopped replaying the task journal"), messages);
+        assertEquals(1, loaded.size(), messages);
+        assertFalse(Files.exists(binary), "the replayed records were saved as the snapshot");
+        assertArrayEquals(corrupted, Files.readAllBytes(Path.of(binary + ".corrupt")));
+        assertEquals(damaged, Files.readAllLines(Path.of(journal + ".corrupt")));
+
+        loaded.add(new Todo("added"));
+        storage.recordAdd(loaded, loaded.get(1), out);
+        storage.close(out);
+        assertArrayEquals(corrupted, Files.readAllBytes(Path.of(binary + ".corrupt")));
+        assertEquals(damaged, Files.readAllLines(Path.of(journal + ".corrupt")));
+        List<String> reloaded = new ArrayList<>();
+        for (Task task : new Storage(file.toString(), options).load(out)) {
+            reloaded.add(task.getDescription());
+        }
+        assertEquals(List.of("appended", "added"), reloaded, out.take());
+    }
+
+    @Test
+    void corruptShardSetsAsideTheShardedSnapshot() throws Exception {
+        Path file = dir.resolve("tasks.txt");
+        Path manifest = dir.resolve("tasks.shards");
+        StorageOptions options = StorageOptions.defaults().withSnapshotFormat(SnapshotFormat.SHARDED)
+                .withDurability(Durability.SYNC);
+        Storage writer = new Storage(file.toString(), options);
+        writer.save(tasks("one", "two", "three"), new RecordingSink());
+        writer.close(new RecordingSink());
+        List<String> manifestLines = Files.readAllLines(manifest);
+        Path shard = dir.resolve(manifestLines.get(1));
+        Files.write(shard, List.of("not a shard"));
+        Path journal = Path.of(file + ".journal");
+        Files.write(journal, JOURNAL);
+        RecordingSink out = new RecordingSink();
+
+        Storage storage = new Storage(file.toString(), options);
+        List<Task> loaded = storage.load(out);
+        storage.close(out);
+
+        String messages = out.take();
+        assertTrue(messages.contains("Error loading task shards"), messages);
+        assertEquals(1, loaded.size(), messages);
+        assertFalse(Files.exists(manifest), "the replayed journal was saved as the snapshot");
+        assertEquals(manifestLines, Files.readAllLines(Path.of(manifest + ".corrupt")));
+        assertEquals(List.of("not a shard"), Files.readAllLines(Path.of(shard + ".corrupt")));
+        assertEquals(JOURNAL, Files.readAllLines(journal));
+    }
+
+    private static List<Task> tasks(String... descriptions) {
+        List<Task> tasks = new ArrayList<>();
+        for (String description : descriptions) {
+            tasks.add(new Todo(description));
+        }
+        return tasks;
+    }
+}
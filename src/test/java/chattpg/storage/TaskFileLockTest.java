@@ -0,0 +1,65 @@
+package chattpg.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import chattpg.ui.RecordingSink;
+import java.io.File;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Release of the lease around group-committed journal records, and where lock errors are reported.
+ */
+class TaskFileLockTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void leaseIsReleasedByWhicheverOfEndWriteAndFlushComesLast() throws Exception {
+        File journal = dir.resolve("tasks.txt.journal").toFile();
+        TaskFileLock lock = new TaskFileLock(dir.resolve("tasks.txt.lock").toFile(), journal);
+        JournalWriter writer = new JournalWriter(journal, Durability.GROUP, 60_000, 1_000, lock::journalFlushed,
+                new StorageStats());
+        RecordingSink out = new RecordingSink();
+
+        assertTrue(lock.acquire(out));
+        lock.beginWrite();
+        writer.append("+ | T | 0 | buffered");
+        writer.endWrite(lock, out);
+        assertTrue(lock.isHeld(), "released with records still buffered");
+        writer.flush();
+        assertFalse(lock.isHeld());
+
+        assertTrue(lock.acquire(out));
+        lock.beginWrite();
+        writer.append("+ | T | 0 | flushed mid-write");
+        writer.flush();
+        assertTrue(lock.isHeld(), "released while a mutation was running");
+        writer.endWrite(lock, out);
+        assertFalse(lock.isHeld());
+
+        writer.close(out);
+        lock.close(out);
+        assertEquals("", out.take());
+    }
+
+    @Test
+    void lockErrorsGoToTheCallersSink() {
+        File lockFile = dir.resolve("tasks.txt.lock").toFile();
+        File journal = dir.resolve("tasks.txt.journal").toFile();
+        TaskFileLock holder = new TaskFileLock(lockFile, journal);
+        TaskFileLock other = new TaskFileLock(lockFile, journal);
+        RecordingSink out = new RecordingSink();
+
+        assertTrue(holder.acquire(out));
+        // In one JVM the second lock on the same file fails instead of waiting.
+        assertFalse(other.acquire(out));
+        assertTrue(out.take().startsWith("Could not lock " + lockFile.getPath()));
+
+        holder.close(out);
+        other.close(out);
+    }
+}
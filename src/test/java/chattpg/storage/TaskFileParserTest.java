@@ -0,0 +1,113 @@
+package chattpg.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import chattpg.logic.IndexedTaskStore;
+import chattpg.logic.TaskActions;
+import chattpg.model.Deadline;
+import chattpg.model.Task;
+import chattpg.model.Todo;
+import chattpg.ui.RecordingSink;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Decoding of task lines, in particular descriptions that contain the field separator.
+ */
+class TaskFileParserTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void todoDescriptionRunsToEndOfLine() throws Exception {
+        Task task = TaskFileParser.decode("T | 1 | a | b | c");
+        assertInstanceOf(Todo.class, task);
+        assertEquals("a | b | c", task.getDescription());
+        assertTrue(task.isDone());
+    }
+
+    @Test
+    void deadlineStillSplitsItsFields() throws Exception {
+        Task task = TaskFileParser.decode("D | 0 | return book | Sunday");
+        assertInstanceOf(Deadline.class, task);
+        assertEquals("return book", task.getDescription());
+        assertThrows(MalformedTaskLineException.class, () -> TaskFileParser.decode("T | 0 |  "));
+    }
+
+    @Test
+    void parserAndMappedViewReadTheSameTodos() throws Exception {
+        String text = "T | 0 | a | b\nT | 0 | plain\nT | 1 | x | y | z | w | v\n";
+        List<String> parsed = new ArrayList<>();
+        RecordingSink messages = new RecordingSink();
+        new TaskFileParser().parse(new StringReader(text), "test", task -> parsed.add(task.getDescription()),
+                messages);
+        assertEquals(List.of("a | b", "plain", "x | y | z | w | v"), parsed);
+
+        Path file = dir.resolve("tasks.txt");
+        Files.writeString(file, text);
+        MappedTaskFile mapped = MappedTaskFile.open(file.toFile(), messages);
+        List<String> viewed = new ArrayList<>();
+        for (int i = 0; i < mapped.size(); i++) {
+            viewed.add(mapped.get(i).getDescription());
+        }
+        assertEquals(parsed, viewed);
+        assertEquals("", messages.take());
+    }
+
+    @Test
+    void checksummedLineWithoutSuffixIsSkipped() throws Exception {
+        String intact = "T | 0 | read book";
+        String text = LineChecksum.SNAPSHOT_HEADER + "\n" + intact + " #" + checksumOf(intact) + "\n"
+                + "D | 0 | return bo";
+        List<String> parsed = new ArrayList<>();
+        RecordingSink messages = new RecordingSink();
+        TaskFileParser parser = new TaskFileParser();
+        parser.parse(new StringReader(text), "test", task -> parsed.add(task.getDescription()), messages);
+        assertEquals(List.of("read book"), parsed);
+        assertEquals(1, parser.getMalformedCount());
+        String skipped = messages.take();
+        assertTrue(skipped.contains("line 3 in test: missing checksum"), skipped);
+
+        Path file = dir.resolve("tasks.txt");
+        Files.writeString(file, text);
+        MappedTaskFile mapped = MappedTaskFile.open(file.toFile(), messages);
+        assertEquals(1, mapped.size());
+        assertEquals("read book", mapped.get(0).getDescription());
+        skipped = messages.take();
+        assertTrue(skipped.contains("missing checksum"), skipped);
+    }
+
+    @Test
+    void journaledTodoWithSeparatorSurvivesReload() throws Exception {
+        Path file = dir.resolve("tasks.txt");
+        RecordingSink out = new RecordingSink();
+        TaskActions writer = new TaskActions(new IndexedTaskStore(), new Storage(file.toString()), "--", out);
+        writer.loadFromFile();
+        writer.addTask("todo first");
+        writer.addTask("todo a | b");
+        writer.addTask("todo last");
+        writer.deleteTasks("1");
+        writer.close();
+
+        TaskActions reader = new TaskActions(new IndexedTaskStore(), new Storage(file.toString()), "--", out);
+        reader.loadFromFile();
+        out.take();
+        reader.listTasks();
+        String listed = out.take();
+        assertEquals(2, reader.size(), listed);
+        assertTrue(listed.contains("1. [T][ ] a | b"), listed);
+        assertTrue(listed.contains("2. [T][ ] last"), listed);
+    }
+
+    private static String checksumOf(String line) {
+        return String.format("%08x", new LineChecksum().compute(line));
+    }
+}
@@ -0,0 +1,47 @@
+package chattpg.ui;
+
+/**
+ * Output sink that keeps everything printed, for tests to inspect.
+ */
+public final class RecordingSink implements OutputSink {
+    private final StringBuilder text = new StringBuilder();
+
+    @Override
+    public OutputSink print(String value) {
+        text.append(value);
+        return this;
+    }
+
+    @Override
+    public OutputSink print(char c) {
+        text.append(c);
+        return this;
+    }
+
+    @Override
+    public OutputSink print(int value) {
+        text.append(value);
+        return this;
+    }
+
+    @Override
+    public OutputSink newLine() {
+        text.append('\n');
+        return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Returns what was printed since the last call and forgets it.
+     *
+     * @return the printed text
+     */
+    public String take() {
+        String taken = text.toString();
+        text.setLength(0);
+        return taken;
+    }
+}